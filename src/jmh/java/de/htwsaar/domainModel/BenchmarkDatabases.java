@@ -0,0 +1,126 @@
+package de.htwsaar.domainModel;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Databases the benchmarks run against. Each dataset is prepared once into {@code target/jmh-data}
+ * (migrated or generated) and every trial works on a fresh temporary copy of it.
+ */
+final class BenchmarkDatabases {
+    private static final Path BUNDLED_DB = Paths.get("data", "Exchange_Rates.db");
+    private static final Path DATA_DIR = Paths.get("target", "jmh-data");
+    private static final int SYNTHETIC_YEARS = 50;
+    private static final int SYNTHETIC_CURRENCIES = 500;
+    private static final int SYNTHETIC_DAYS_PER_BATCH = 365;
+    private static final List<String> MAJOR_CODES = List.of("USD", "EUR", "JPY", "GBP", "CHF");
+
+    enum Dataset {
+        /** Copy of the bundled {@code data/Exchange_Rates.db}, migrated to the current schema. */
+        BUNDLED,
+        /** Generated database with 50 years of daily rates for 500 currencies. */
+        SYNTHETIC
+    }
+
+    private BenchmarkDatabases() {
+    }
+
+    /**
+     * @param dataset Dataset to copy
+     * @return Path of a temporary copy, deleted on exit
+     * @throws IOException If the copy fails
+     * @throws SQLException If preparing the dataset fails
+     */
+    static synchronized Path copyOf(Dataset dataset) throws IOException, SQLException {
+        Path template = DATA_DIR.resolve(dataset.name().toLowerCase(Locale.ROOT) + ".db");
+        if (!Files.exists(template)) {
+            Files.createDirectories(DATA_DIR);
+            Path partial = Files.createTempFile(DATA_DIR, dataset.name(), ".partial");
+            if (dataset == Dataset.BUNDLED) {
+                Files.copy(BUNDLED_DB, partial, StandardCopyOption.REPLACE_EXISTING);
+                try (DatabaseManager db = new DatabaseManager(url(partial))) {
+                    db.getLatestDate(); // Runs the schema migration once
+                }
+            } else {
+                generateSynthetic(partial);
+            }
+            Files.move(partial, template, StandardCopyOption.REPLACE_EXISTING);
+        }
+        Path copy = Files.createTempFile("exchange-rates-" + dataset.name().toLowerCase(Locale.ROOT), ".db");
+        Files.copy(template, copy, StandardCopyOption.REPLACE_EXISTING);
+        copy.toFile().deleteOnExit();
+        return copy;
+    }
+
+    /**
+     * @param path Database file
+     * @return JDBC URL of the file
+     */
+    static String url(Path path) {
+        return "jdbc:sqlite:" + path.toAbsolutePath();
+    }
+
+    /**
+     * @return Codes of the synthetic dataset: the major currencies, then generated three-letter codes
+     */
+    static List<String> syntheticCodes() {
+        List<String> codes = new ArrayList<>(MAJOR_CODES);
+        for (int i = 0; codes.size() < SYNTHETIC_CURRENCIES; i++) {
+            codes.add("Q" + (char) ('A' + i / 26) + (char) ('A' + i % 26));
+        }
+        return codes;
+    }
+
+    /**
+     * Writes a random walk per currency through {@link DatabaseManager#upsertRates(Map)}.
+     * Generated currencies start at staggered dates so first-valid-date lookups are not trivial.
+     */
+    private static void generateSynthetic(Path path) throws SQLException {
+        Random random = new Random(20250101L);
+        List<String> codes = syntheticCodes();
+        LocalDate end = LocalDate.of(2025, 6, 1);
+        LocalDate start = end.minusYears(SYNTHETIC_YEARS);
+        double[] rates = new double[codes.size()];
+        long[] firstDay = new long[codes.size()];
+        for (int i = 0; i < rates.length; i++) {
+            rates[i] = i == 0 ? 1.0 : Math.pow(10, random.nextDouble() * 4 - 1);
+            firstDay[i] = i < MAJOR_CODES.size() ? start.toEpochDay() : start.toEpochDay() + random.nextInt(365 * 20);
+        }
+
+        try (DatabaseManager db = new DatabaseManager(url(path))) {
+            try (Statement stmt = db.getConnection().createStatement()) {
+                stmt.executeUpdate("CREATE TABLE IF NOT EXISTS Currency_Names (code TEXT PRIMARY KEY, full_name TEXT)");
+            }
+            for (String code : codes) {
+                db.addCurrency(code);
+                db.addCurrencyName(code, "Currency " + code);
+            }
+            Map<LocalDate, Map<String, Double>> batch = new LinkedHashMap<>();
+            for (LocalDate date = start; !date.isAfter(end); date = date.plusDays(1)) {
+                Map<String, Double> day = new HashMap<>();
+                for (int i = 0; i < rates.length; i++) {
+                    if (date.toEpochDay() < firstDay[i]) {
+                        continue;
+                    }
+                    if (i > 0) {
+                        rates[i] *= Math.exp(random.nextGaussian() * 0.005);
+                    }
+                    day.put(codes.get(i), rates[i]);
+                }
+                batch.put(date, day);
+                if (batch.size() == SYNTHETIC_DAYS_PER_BATCH) {
+                    db.upsertRates(batch);
+                    batch.clear();
+                }
+            }
+            db.upsertRates(batch);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package de.htwsaar.domainModel;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link BulkConverter} against a naive per-value loop on batches of amounts.
+ * <p>
+ * Run with {@code mvn -Pbenchmarks compile exec:exec -Djmh.args="BulkConverterBenchmark"}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector", "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn"})
+@State(Scope.Benchmark)
+public class BulkConverterBenchmark {
+    private static final double RATE = 1.0836;
+
+    @Param({"100000"})
+    public int size;
+
+    private double[] amounts;
+    private long[] minorUnits;
+    private int[] fromIds;
+    private int[] toIds;
+    private LatestRates rates;
+    private double[] out;
+    private long[] outUnits;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(11);
+        CurrencyRegistry registry = CurrencyRegistry.of(Map.of("USD", 0, "EUR", 1, "PLN", 2, "RUB", 3, "JPY", 4));
+        rates = LatestRates.of(registry, new double[]{1.0, 0.92, 4.0, 30.0, 100.0}, new long[5]);
+        amounts = new double[size];
+        minorUnits = new long[size];
+        fromIds = new int[size];
+        toIds = new int[size];
+        for (int i = 0; i < size; i++) {
+            amounts[i] = random.nextDouble() * 10_000;
+            minorUnits[i] = random.nextLong(1_000_000);
+            fromIds[i] = random.nextInt(5);
+            toIds[i] = random.nextInt(5);
+        }
+        out = new double[size];
+        outUnits = new long[size];
+    }
+
+    @Benchmark
+    public double[] naiveLoop() {
+        for (int i = 0; i < amounts.length; i++) {
+            out[i] = amounts[i] * RATE;
+        }
+        return out;
+    }
+
+    @Benchmark
+    public double[] bulk() {
+        BulkConverter.convert(amounts, RATE, out);
+        return out;
+    }
+
+    @Benchmark
+    public long[] naiveLoopMinorUnits() {
+        for (int i = 0; i < minorUnits.length; i++) {
+            outUnits[i] = Math.round(minorUnits[i] * RATE);
+        }
+        return outUnits;
+    }
+
+    @Benchmark
+    public long[] bulkMinorUnits() {
+        BulkConverter.convert(minorUnits, RATE, outUnits);
+        return outUnits;
+    }
+
+    @Benchmark
+    public double[] naiveLoopManyPairs() {
+        for (int i = 0; i < amounts.length; i++) {
+            out[i] = amounts[i] * rates.crossRate(fromIds[i], toIds[i]);
+        }
+        return out;
+    }
+
+    @Benchmark
+    public double[] bulkManyPairs() {
+        BulkConverter.convert(amounts, fromIds, toIds, rates, out);
+        return out;
+    }
+}
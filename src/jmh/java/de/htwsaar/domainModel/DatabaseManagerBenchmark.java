@@ -0,0 +1,186 @@
+package de.htwsaar.domainModel;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the public query and write methods of {@link DatabaseManager} against a copy of the
+ * bundled database and a synthetic 50-year, 500-currency database.
+ * <p>
+ * Reports throughput and sampled latency (percentiles). Allocation rates need the gc profiler:
+ * run {@code mvn -Pbenchmarks compile exec:exec -Djmh.args="DatabaseManagerBenchmark -prof gc"},
+ * or start {@link #main} which adds it.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+@State(Scope.Benchmark)
+public class DatabaseManagerBenchmark {
+    private static final int CHART_MAX_POINTS = 300;
+
+    @Param({"BUNDLED", "SYNTHETIC"})
+    public String dataset;
+
+    private Path file;
+    private DatabaseManager db;
+    private List<String> codes;
+    private String[] sampleCodes;
+    private String firstDate;
+    private String latestDate;
+    private String lastMonth;
+    private String lastYear;
+    private long firstDay;
+    private long latestDay;
+    private Map<String, Double> latestRates;
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, SQLException {
+        file = BenchmarkDatabases.copyOf(BenchmarkDatabases.Dataset.valueOf(dataset));
+        db = new DatabaseManager(BenchmarkDatabases.url(file));
+        codes = db.getAllCurrencyCodes();
+        latestDate = db.getLatestDate();
+        firstDate = db.getFirstValidDate("USD");
+        LocalDate latest = LocalDate.parse(latestDate);
+        lastMonth = latest.minusMonths(1).toString();
+        lastYear = latest.minusYears(1).toString();
+
+        // Spread lookups over currencies with data, so results are not a single cached page
+        List<String> withData = new ArrayList<>();
+        for (String code : codes) {
+            if (db.getFirstValidDate(code) != null) {
+                withData.add(code);
+            }
+        }
+        Collections.shuffle(withData, new Random(7));
+        sampleCodes = withData.subList(0, Math.min(64, withData.size())).toArray(new String[0]);
+
+        latestRates = new HashMap<>();
+        latestDay = latest.toEpochDay();
+        firstDay = LocalDate.parse(firstDate).toEpochDay();
+        db.scanRates(lastMonth, codes, (day, rates) -> {
+            if (day == latestDay) {
+                for (int i = 0; i < rates.length; i++) {
+                    if (!Double.isNaN(rates[i])) {
+                        latestRates.put(codes.get(i), rates[i]);
+                    }
+                }
+            }
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        db.close();
+        Files.deleteIfExists(file);
+    }
+
+    private String nextCode() {
+        next = (next + 1) % sampleCodes.length;
+        return sampleCodes[next];
+    }
+
+    @Benchmark
+    public List<String> getAllCurrencyCodes() throws SQLException {
+        return db.getAllCurrencyCodes();
+    }
+
+    @Benchmark
+    public Map<String, String> getCurrencyNames() throws SQLException {
+        return db.getCurrencyNames();
+    }
+
+    @Benchmark
+    public String getFirstValidDate() throws SQLException {
+        return db.getFirstValidDate(nextCode());
+    }
+
+    @Benchmark
+    public String getLastValidDate() throws SQLException {
+        return db.getLastValidDate(nextCode());
+    }
+
+    @Benchmark
+    public String getLatestDate() throws SQLException {
+        return db.getLatestDate();
+    }
+
+    @Benchmark
+    public double getLatestExchangeRate() throws SQLException {
+        return db.getLatestExchangeRate("USD", nextCode());
+    }
+
+    @Benchmark
+    public Map<String, Double> getDownsampledRatesAllTime() throws SQLException {
+        return db.getDownsampledRates(nextCode(), firstDate, latestDate, CHART_MAX_POINTS);
+    }
+
+    @Benchmark
+    public Map<String, Double> getDownsampledRatesLastYear() throws SQLException {
+        return db.getDownsampledRates(nextCode(), lastYear, latestDate, CHART_MAX_POINTS);
+    }
+
+    @Benchmark
+    public RateSeries getCrossRateSeriesAllTime() throws SQLException {
+        return db.getCrossRateSeries("USD", nextCode(), RateTier.DAY, firstDay, latestDay);
+    }
+
+    @Benchmark
+    public RateSeries getCrossRateSeriesAllTimeMonthly() throws SQLException {
+        return db.getCrossRateSeries("USD", nextCode(), RateTier.MONTH, firstDay, latestDay);
+    }
+
+    @Benchmark
+    public void scanRatesLastMonth(Blackhole blackhole) throws SQLException {
+        db.scanRates(lastMonth, codes, (day, rates) -> blackhole.consume(rates));
+    }
+
+    @Benchmark
+    public void addCurrencyExisting() throws SQLException {
+        db.addCurrency(nextCode());
+    }
+
+    @Benchmark
+    public void addCurrencyNameExisting() throws SQLException {
+        db.addCurrencyName(nextCode(), "Benchmark");
+    }
+
+    @Benchmark
+    public void upsertRate() throws SQLException {
+        String code = nextCode();
+        db.upsertRate(code, latestDay, latestRates.getOrDefault(code, 1.0));
+    }
+
+    @Benchmark
+    public void upsertRatesDay() throws SQLException {
+        db.upsertRates(latestDay, latestRates);
+    }
+
+    /**
+     * Runs this benchmark with the gc profiler.
+     * @param args Unused
+     * @throws RunnerException If JMH fails
+     */
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(DatabaseManagerBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,52 @@
+package de.htwsaar.domainModel;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the downsamplers on a 20,000-point series reduced to the chart size; both should stay well under 1 ms.
+ * <p>
+ * Run with {@code mvn -Pbenchmarks compile exec:exec -Djmh.args="DownsamplerBenchmark -prof gc"}.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DownsamplerBenchmark {
+    private static final int CHART_MAX_POINTS = 300;
+
+    @Param({"20000"})
+    public int size;
+
+    private RateSeries series;
+    private final Downsampler lttb = new LttbDownsampler();
+    private final Downsampler minMax = new MinMaxDownsampler();
+
+    @Setup
+    public void setup() {
+        Random random = new Random(1);
+        int[] days = new int[size];
+        double[] rates = new double[size];
+        double rate = 1.0;
+        for (int i = 0; i < size; i++) {
+            rate *= Math.exp(random.nextGaussian() * 0.005);
+            days[i] = i;
+            rates[i] = rate;
+        }
+        series = new RateSeries(days, rates);
+    }
+
+    @Benchmark
+    public RateSeries lttb() {
+        return lttb.downsample(series, CHART_MAX_POINTS);
+    }
+
+    @Benchmark
+    public RateSeries minMax() {
+        return minMax.downsample(series, CHART_MAX_POINTS);
+    }
+}
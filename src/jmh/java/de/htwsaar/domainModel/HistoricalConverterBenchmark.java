@@ -0,0 +1,76 @@
+package de.htwsaar.domainModel;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures warm as-of lookups of {@link HistoricalConverter}; a single lookup should stay under 1 µs.
+ * <p>
+ * Run with {@code mvn -Pbenchmarks compile exec:exec -Djmh.args="HistoricalConverterBenchmark"}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+@State(Scope.Benchmark)
+public class HistoricalConverterBenchmark {
+    private static final int BULK_SIZE = 10_000;
+
+    @Param({"BUNDLED", "SYNTHETIC"})
+    public String dataset;
+
+    private Path file;
+    private DatabaseManager db;
+    private HistoricalConverter converter;
+    private int fromId;
+    private int toId;
+    private long[] days;
+    private double[] amounts;
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, SQLException {
+        file = BenchmarkDatabases.copyOf(BenchmarkDatabases.Dataset.valueOf(dataset));
+        db = new DatabaseManager(BenchmarkDatabases.url(file));
+        converter = new HistoricalConverter(db);
+        List<String> codes = db.getCurrencyRegistry().codes();
+        fromId = db.getCurrencyRegistry().id(codes.contains("EUR") ? "EUR" : codes.get(0));
+        toId = db.getCurrencyRegistry().id(codes.contains("JPY") ? "JPY" : codes.get(1));
+
+        DatabaseManager.ValidRange range = db.getValidRange(fromId);
+        Random random = new Random(3);
+        days = new long[BULK_SIZE];
+        amounts = new double[BULK_SIZE];
+        for (int i = 0; i < BULK_SIZE; i++) {
+            days[i] = range.firstDay() + random.nextInt((int) (range.lastDay() - range.firstDay() + 1));
+            amounts[i] = 1 + random.nextInt(10_000);
+        }
+        converter.convert(fromId, toId, days, amounts); // Loads both histories
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        db.close();
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public double rateAsOf() throws SQLException {
+        next = (next + 1) % BULK_SIZE;
+        return converter.getRate(fromId, toId, days[next]);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BULK_SIZE)
+    public double[] convertBulk() throws SQLException {
+        return converter.convert(fromId, toId, days, amounts);
+    }
+}
@@ -0,0 +1,131 @@
+package de.htwsaar.domainModel;
+
+import okio.Buffer;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares parsing a response body with {@link JSONObject} (String, tree, then map)
+ * against streaming it with {@link RatesJsonReader}, for one historical day and a 31-day time series.
+ * <p>
+ * Run with {@code mvn -Pbenchmarks compile exec:exec -Djmh.args="RatesJsonParsing -prof gc"}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RatesJsonParsingBenchmark {
+    private static final int CURRENCY_COUNT = 170;
+    private static final int RANGE_DAYS = 31;
+
+    private String[] codes;
+    private Map<String, Integer> codeIndex;
+    private byte[] dayBody;
+    private byte[] rangeBody;
+    private double[] row;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        codes = new String[CURRENCY_COUNT];
+        codeIndex = new HashMap<>();
+        for (int i = 0; i < CURRENCY_COUNT; i++) {
+            codes[i] = "" + (char) ('A' + i / 26 % 26) + (char) ('A' + i % 26) + (char) ('A' + i * 7 % 26);
+            codeIndex.put(codes[i], i);
+        }
+        row = new double[CURRENCY_COUNT];
+
+        String header = "{\"disclaimer\":\"Usage subject to terms: https://openexchangerates.org/terms\"," +
+                "\"license\":\"https://openexchangerates.org/license\",\"timestamp\":1577836800,\"base\":\"USD\",";
+        dayBody = (header + "\"rates\":" + rateObject(random) + "}").getBytes(StandardCharsets.UTF_8);
+
+        StringBuilder range = new StringBuilder(header)
+                .append("\"start_date\":\"2024-01-01\",\"end_date\":\"2024-01-31\",\"rates\":{");
+        LocalDate date = LocalDate.of(2024, 1, 1);
+        for (int i = 0; i < RANGE_DAYS; i++) {
+            range.append(i == 0 ? "" : ",").append('"').append(date.plusDays(i)).append("\":").append(rateObject(random));
+        }
+        rangeBody = range.append("}}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private String rateObject(Random random) {
+        StringBuilder rates = new StringBuilder("{");
+        for (int i = 0; i < CURRENCY_COUNT; i++) {
+            double rate = Math.round(Math.pow(10, random.nextDouble() * 8 - 3) * 1e6) / 1e6;
+            rates.append(i == 0 ? "" : ",").append('"').append(codes[i]).append("\":").append(rate);
+        }
+        return rates.append('}').toString();
+    }
+
+    @Benchmark
+    public Map<String, Double> dayJsonObject() throws IOException {
+        JSONObject rates = new JSONObject(new Buffer().write(dayBody).readUtf8()).getJSONObject("rates");
+        Map<String, Double> result = new HashMap<>();
+        for (String currency : rates.keySet()) {
+            result.put(currency, rates.getDouble(currency));
+        }
+        return result;
+    }
+
+    @Benchmark
+    public Map<String, Double> dayStreamingMap() throws IOException {
+        Map<String, Double> result = new HashMap<>();
+        new RatesJsonReader(new Buffer().write(dayBody)).readRates(result::put);
+        return result;
+    }
+
+    @Benchmark
+    public double[] dayStreamingArray() throws IOException {
+        new RatesJsonReader(new Buffer().write(dayBody)).readRates((currency, rate) -> {
+            Integer index = codeIndex.get(currency);
+            if (index != null) {
+                row[index] = rate;
+            }
+        });
+        return row;
+    }
+
+    @Benchmark
+    public void rangeJsonObject(Blackhole blackhole) throws IOException {
+        JSONObject days = new JSONObject(new Buffer().write(rangeBody).readUtf8()).getJSONObject("rates");
+        for (String day : days.keySet()) {
+            JSONObject rates = days.getJSONObject(day);
+            Map<String, Double> result = new HashMap<>();
+            for (String currency : rates.keySet()) {
+                result.put(currency, rates.getDouble(currency));
+            }
+            blackhole.consume(LocalDate.parse(day));
+            blackhole.consume(result);
+        }
+    }
+
+    @Benchmark
+    public void rangeStreamingArray(Blackhole blackhole) throws IOException {
+        new RatesJsonReader(new Buffer().write(rangeBody)).readRatesByDay(new RateSink() {
+            @Override
+            public void rate(String currency, double rate) {
+                Integer index = codeIndex.get(currency);
+                if (index != null) {
+                    row[index] = rate;
+                }
+            }
+
+            @Override
+            public void endDay(LocalDate date) {
+                blackhole.consume(date);
+                blackhole.consume(row);
+            }
+        });
+    }
+}
@@ -0,0 +1,201 @@
+package de.htwsaar.domainModel;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Converts arrays of amounts without the UI, for batches of many values.
+ * <p>
+ * The single-pair loops run on the JDK Vector API when the vector kernel is on the class path (it is only
+ * compiled by the {@code benchmarks} profile) and the JVM is started with {@code --add-modules jdk.incubator.vector},
+ * and on plain scalar loops otherwise; both give the same results.
+ * Amounts as {@code long} are in minor units (e.g. cents) and are rounded half away from zero.
+ * The output array may be the input array. Thread-safe.
+ */
+public final class BulkConverter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BulkConverter.class);
+    private static final String VECTOR_KERNEL = "de.htwsaar.domainModel.VectorKernel";
+    static final Kernel SCALAR = new ScalarKernel();
+    private static final Kernel KERNEL = selectKernel();
+
+    private BulkConverter() {
+        // Prevent instantiation
+    }
+
+    /**
+     * Conversion loops, implemented once scalar and once vectorized.
+     */
+    interface Kernel {
+        void convert(double[] amounts, double rate, double[] out);
+
+        void convert(long[] amounts, double rate, long[] out);
+    }
+
+    private static Kernel selectKernel() {
+        Kernel kernel = loadVectorKernel();
+        if (kernel == null) {
+            return SCALAR;
+        }
+        LOGGER.info("Bulk conversion vectorized with {}", kernel);
+        return kernel;
+    }
+
+    /**
+     * Loads the vector kernel by name, so the default build compiles without the incubator module.
+     * @return Vector kernel, or null if it is not compiled in or the module is missing
+     */
+    static Kernel loadVectorKernel() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return null;
+        }
+        try {
+            return (Kernel) Class.forName(VECTOR_KERNEL).getDeclaredConstructor().newInstance();
+        } catch (ClassNotFoundException e) {
+            return null;
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+            LOGGER.warn("Vector API unavailable, bulk conversion stays scalar", e);
+            return null;
+        }
+    }
+
+    /**
+     * @return True if the loops run on the Vector API
+     */
+    public static boolean isVectorized() {
+        return KERNEL != SCALAR;
+    }
+
+    /**
+     * @param amounts Amounts in the source currency
+     * @param rate Exchange rate (to/from)
+     * @return Amounts in the target currency
+     */
+    public static double[] convert(double[] amounts, double rate) {
+        double[] out = new double[amounts.length];
+        KERNEL.convert(amounts, rate, out);
+        return out;
+    }
+
+    /**
+     * @param amounts Amounts in the source currency
+     * @param rate Exchange rate (to/from)
+     * @param out Amounts in the target currency; may be amounts
+     * @throws IllegalArgumentException If the arrays differ in length
+     */
+    public static void convert(double[] amounts, double rate, double[] out) {
+        checkLength(amounts.length, out.length);
+        KERNEL.convert(amounts, rate, out);
+    }
+
+    /**
+     * @param amounts Amounts in minor units of the source currency
+     * @param rate Exchange rate (to/from)
+     * @return Rounded amounts in minor units of the target currency
+     */
+    public static long[] convert(long[] amounts, double rate) {
+        long[] out = new long[amounts.length];
+        KERNEL.convert(amounts, rate, out);
+        return out;
+    }
+
+    /**
+     * @param amounts Amounts in minor units of the source currency
+     * @param rate Exchange rate (to/from)
+     * @param out Rounded amounts in minor units of the target currency; may be amounts
+     * @throws IllegalArgumentException If the arrays differ in length
+     */
+    public static void convert(long[] amounts, double rate, long[] out) {
+        checkLength(amounts.length, out.length);
+        KERNEL.convert(amounts, rate, out);
+    }
+
+    /**
+     * @param amounts Amounts in the source currency
+     * @param from Source currency
+     * @param to Target currency
+     * @param rates Latest rates
+     * @return Amounts in the target currency, NaN if either side has no valid rate
+     * @throws IllegalArgumentException If invalid currency
+     */
+    public static double[] convert(double[] amounts, String from, String to, LatestRates rates) {
+        CurrencyRegistry registry = rates.getRegistry();
+        return convert(amounts, rates.crossRate(registry.id(from), registry.id(to)));
+    }
+
+    /**
+     * Converts each amount across its own pair, e.g. a batch of transactions in mixed currencies.
+     * @param amounts Amounts in their source currency
+     * @param fromIds Source currency id of each amount
+     * @param toIds Target currency id of each amount
+     * @param rates Latest rates
+     * @return Amounts in their target currency, NaN where either side has no valid rate
+     * @throws IllegalArgumentException If invalid id or the arrays differ in length
+     */
+    public static double[] convert(double[] amounts, int[] fromIds, int[] toIds, LatestRates rates) {
+        double[] out = new double[amounts.length];
+        convert(amounts, fromIds, toIds, rates, out);
+        return out;
+    }
+
+    /**
+     * Converts each amount across its own pair. Stays a scalar loop: a gather of the rates is not faster
+     * than reading them one by one from the cross matrix.
+     * @param amounts Amounts in their source currency
+     * @param fromIds Source currency id of each amount
+     * @param toIds Target currency id of each amount
+     * @param rates Latest rates
+     * @param out Amounts in their target currency, NaN where either side has no valid rate; may be amounts
+     * @throws IllegalArgumentException If invalid id or the arrays differ in length
+     */
+    public static void convert(double[] amounts, int[] fromIds, int[] toIds, LatestRates rates, double[] out) {
+        checkLength(amounts.length, fromIds.length);
+        checkLength(amounts.length, toIds.length);
+        checkLength(amounts.length, out.length);
+        CurrencyRegistry registry = rates.getRegistry();
+        int stride = registry.idLimit();
+        double[] cross = rates.crossMatrix();
+        for (int i = 0; i < amounts.length; i++) {
+            int fromId = fromIds[i];
+            int toId = toIds[i];
+            if (!registry.contains(fromId) || !registry.contains(toId)) {
+                throw new IllegalArgumentException("Invalid currency id: " + (registry.contains(fromId) ? toId : fromId));
+            }
+            out[i] = amounts[i] * cross[fromId * stride + toId];
+        }
+    }
+
+    private static void checkLength(int expected, int actual) {
+        if (expected != actual) {
+            throw new IllegalArgumentException("Arrays differ in length: " + expected + " != " + actual);
+        }
+    }
+
+    /**
+     * Rounds half away from zero, like the vector kernel; NaN becomes 0 and overflow saturates.
+     */
+    static long round(double value) {
+        long rounded = (long) (Math.abs(value) + 0.5);
+        return value < 0 ? -rounded : rounded;
+    }
+
+    private static final class ScalarKernel implements Kernel {
+        @Override
+        public void convert(double[] amounts, double rate, double[] out) {
+            for (int i = 0; i < amounts.length; i++) {
+                out[i] = amounts[i] * rate;
+            }
+        }
+
+        @Override
+        public void convert(long[] amounts, double rate, long[] out) {
+            for (int i = 0; i < amounts.length; i++) {
+                out[i] = round(amounts[i] * rate);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "scalar";
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package de.htwsaar.domainModel;
+
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs chart loads on one named background thread, newest request wins.
+ * <p>
+ * Submitting a load cancels the one in flight (interrupting its thread) and drops it from the queue
+ * if it has not started, so rapid clicking never piles up scans. A request equal to the one still in
+ * flight is coalesced into it. {@link #isCurrent} tells a finishing task whether its result may still
+ * be shown. Meant to be driven from the JavaFX application thread, but safe from any thread.
+ * <p>
+ * Prefetches run on a second worker at minimum priority, so they only use otherwise idle CPU; when its
+ * queue is full the oldest prefetch is dropped.
+ */
+final class ChartLoader implements AutoCloseable {
+    private static final long IDLE_TIMEOUT_SECONDS = 30;
+    private static final int PREFETCH_QUEUE_SIZE = 8;
+    private static final AtomicInteger LOADER_COUNT = new AtomicInteger();
+
+    private final ThreadPoolExecutor executor;
+    private final ThreadPoolExecutor prefetcher;
+    private Object currentKey = null;
+    private RunnableFuture<?> current = null;
+
+    /**
+     * @param name Name prefix of the worker threads
+     */
+    ChartLoader(String name) {
+        String threadName = name + "-" + LOADER_COUNT.incrementAndGet();
+        // A single worker and one queue slot: only the newest request can be waiting, older ones are cancelled
+        this.executor = singleWorker(threadName, Thread.NORM_PRIORITY, 1);
+        this.prefetcher = singleWorker(threadName + "-prefetch", Thread.MIN_PRIORITY, PREFETCH_QUEUE_SIZE);
+    }
+
+    private static ThreadPoolExecutor singleWorker(String threadName, int priority, int queueSize) {
+        ThreadPoolExecutor worker = new ThreadPoolExecutor(1, 1, IDLE_TIMEOUT_SECONDS, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize), runnable -> {
+                    Thread thread = new Thread(runnable, threadName);
+                    thread.setDaemon(true);
+                    thread.setPriority(priority);
+                    return thread;
+                }, new ThreadPoolExecutor.DiscardOldestPolicy());
+        worker.allowCoreThreadTimeOut(true);
+        return worker;
+    }
+
+    /**
+     * Supersedes the load in flight with the given one, unless that load has an equal key and is not done.
+     * @param key Identifies what the task loads; equal keys load the same result
+     * @param task Task to run
+     * @return True if the task was scheduled, false if it was coalesced into the load in flight
+     */
+    synchronized boolean submit(Object key, RunnableFuture<?> task) {
+        Objects.requireNonNull(task);
+        if (current != null && !current.isDone() && Objects.equals(currentKey, key)) {
+            return false;
+        }
+        if (current != null) {
+            current.cancel(true);
+            executor.remove(current);
+        }
+        currentKey = key;
+        current = task;
+        executor.execute(task);
+        return true;
+    }
+
+    /**
+     * Runs background work on the idle-priority worker; it is never cancelled by {@link #submit}.
+     * @param task Task to run
+     */
+    void prefetch(Runnable task) {
+        prefetcher.execute(task);
+    }
+
+    /**
+     * @param task Task submitted to this loader
+     * @return True if no newer task has been submitted since
+     */
+    synchronized boolean isCurrent(RunnableFuture<?> task) {
+        return current == task;
+    }
+
+    /**
+     * Cancels the load in flight and stops the worker threads.
+     */
+    @Override
+    public synchronized void close() {
+        if (current != null) {
+            current.cancel(true);
+        }
+        executor.shutdownNow();
+        prefetcher.shutdownNow();
+    }
+}
@@ -0,0 +1,102 @@
+package de.htwsaar.domainModel;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Memory-bounded LRU cache of computed chart series for one data epoch
+ * (see {@link DatabaseManager#getDataVersion()}).
+ * <p>
+ * Entries are weighed by their points; the least recently used ones are dropped once the total
+ * exceeds the budget. Seeing a newer epoch drops everything, and results computed under an older
+ * epoch are not stored. Thread-safe.
+ */
+final class ChartSeriesCache {
+    // An int day and a double rate per point, plus the arrays, series and map entry objects
+    private static final long BYTES_PER_POINT = 12;
+    private static final long BYTES_PER_ENTRY = 128;
+
+    private final long maxBytes;
+    private final LinkedHashMap<Object, RateSeries> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes = 0;
+    private long epoch = Long.MIN_VALUE;
+
+    /**
+     * @param maxBytes Memory budget of the cached series
+     */
+    ChartSeriesCache(long maxBytes) {
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException("maxBytes must be positive");
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @param key Chart key, e.g. pair, period and downsampler
+     * @param epoch Current data epoch
+     * @return Cached series for the key and epoch, or null
+     */
+    synchronized RateSeries get(Object key, long epoch) {
+        advance(epoch);
+        return epoch == this.epoch ? entries.get(key) : null;
+    }
+
+    /**
+     * @param key Chart key
+     * @param epoch Data epoch the series was computed under
+     * @param series Computed series; not stored if older than the cached epoch or larger than the budget
+     */
+    synchronized void put(Object key, long epoch, RateSeries series) {
+        advance(epoch);
+        long weight = weigh(series);
+        if (epoch != this.epoch || weight > maxBytes) {
+            return;
+        }
+        RateSeries previous = entries.put(key, series);
+        if (previous != null) {
+            bytes -= weigh(previous);
+        }
+        bytes += weight;
+        Iterator<Map.Entry<Object, RateSeries>> eldest = entries.entrySet().iterator();
+        while (bytes > maxBytes) {
+            bytes -= weigh(eldest.next().getValue());
+            eldest.remove();
+        }
+    }
+
+    /**
+     * @param key Chart key
+     * @param epoch Current data epoch
+     * @return True if the key is cached for the epoch; does not count as a use
+     */
+    synchronized boolean contains(Object key, long epoch) {
+        return epoch == this.epoch && entries.containsKey(key);
+    }
+
+    private void advance(long epoch) {
+        if (epoch > this.epoch) {
+            entries.clear();
+            bytes = 0;
+            this.epoch = epoch;
+        }
+    }
+
+    /**
+     * @return Number of cached series
+     */
+    synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return Estimated memory of the cached series in bytes
+     */
+    synchronized long bytes() {
+        return bytes;
+    }
+
+    private static long weigh(RateSeries series) {
+        return BYTES_PER_ENTRY + BYTES_PER_POINT * series.size();
+    }
+}
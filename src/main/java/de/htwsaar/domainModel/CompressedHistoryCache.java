@@ -0,0 +1,116 @@
+package de.htwsaar.domainModel;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * Optional cache tier in front of {@link DatabaseManager} holding the full daily history of each
+ * requested currency as a {@link CompressedRateBlock}.
+ * <p>
+ * A currency is read from the database on first use; later daily series and cross series are decoded
+ * from memory until new rates are committed (see {@link EpochCache}). Thread-safe.
+ */
+public class CompressedHistoryCache {
+    private final DatabaseManager db;
+    private final EpochCache<CompressedRateBlock> blocks;
+
+    /**
+     * Memory use of the cache.
+     * @param currencies Number of cached currencies
+     * @param points Number of cached points
+     * @param bytes Estimated heap size of the blocks
+     */
+    public record Stats(int currencies, long points, long bytes) {
+        /**
+         * @return Bytes per cached point, 0 if empty
+         */
+        public double bytesPerPoint() {
+            return points == 0 ? 0 : (double) bytes / points;
+        }
+    }
+
+    /**
+     * @param db Database the histories are read from
+     */
+    public CompressedHistoryCache(DatabaseManager db) {
+        this.db = db;
+        this.blocks = new EpochCache<>(db);
+    }
+
+    /**
+     * @param currencyId Currency id
+     * @return Compressed valid daily rates of the currency
+     * @throws SQLException If DB error
+     * @throws IllegalArgumentException If invalid id
+     */
+    public CompressedRateBlock getHistory(int currencyId) throws SQLException {
+        return blocks.get(currencyId,
+                id -> CompressedRateBlock.of(db.getRateSeries(id, Long.MIN_VALUE, Long.MAX_VALUE)));
+    }
+
+    /**
+     * @param currencyId Currency id
+     * @param startDay Inclusive start epoch day
+     * @param endDay Inclusive end epoch day
+     * @return Valid daily rates of the currency in the period
+     * @throws SQLException If DB error
+     * @throws IllegalArgumentException If invalid id
+     * @see DatabaseManager#getRateSeries(int, long, long)
+     */
+    public RateSeries getRateSeries(int currencyId, long startDay, long endDay) throws SQLException {
+        return getHistory(currencyId).toSeries(startDay, endDay);
+    }
+
+    /**
+     * Same result as {@link DatabaseManager#getCrossRateSeries(int, int, RateTier, long, long)} with
+     * {@link RateTier#DAY}, merged from the two decoded histories.
+     * @param fromId Source currency id
+     * @param toId Target currency id
+     * @param startDay Inclusive start epoch day
+     * @param endDay Inclusive end epoch day
+     * @return Daily cross rates (to/from) on days where both currencies have a valid rate
+     * @throws SQLException If DB error
+     * @throws IllegalArgumentException If invalid id
+     */
+    public RateSeries getCrossRateSeries(int fromId, int toId, long startDay, long endDay) throws SQLException {
+        CompressedRateBlock.Cursor from = getHistory(fromId).cursor();
+        CompressedRateBlock.Cursor to = getHistory(toId).cursor();
+        int[] days = new int[64];
+        double[] rates = new double[64];
+        int count = 0;
+        boolean hasFrom = from.next();
+        boolean hasTo = to.next();
+        while (hasFrom && hasTo && from.time() <= endDay) {
+            if (from.time() < to.time() || from.time() < startDay) {
+                hasFrom = from.next();
+            } else if (to.time() < from.time()) {
+                hasTo = to.next();
+            } else {
+                if (count == days.length) {
+                    days = Arrays.copyOf(days, count * 2);
+                    rates = Arrays.copyOf(rates, count * 2);
+                }
+                days[count] = (int) from.time();
+                rates[count++] = to.value() / from.value();
+                hasFrom = from.next();
+                hasTo = to.next();
+            }
+        }
+        return new RateSeries(Arrays.copyOf(days, count), Arrays.copyOf(rates, count));
+    }
+
+    /**
+     * @return Memory use of the blocks of the current data epoch
+     */
+    public Stats getStats() {
+        int currencies = 0;
+        long points = 0;
+        long bytes = 0;
+        for (CompressedRateBlock block : blocks.values()) {
+            currencies++;
+            points += block.size();
+            bytes += block.bytes();
+        }
+        return new Stats(currencies, points, bytes);
+    }
+}
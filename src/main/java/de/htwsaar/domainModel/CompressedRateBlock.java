@@ -0,0 +1,372 @@
+package de.htwsaar.domainModel;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable, compressed time series of rates, encoded like Facebook's Gorilla:
+ * timestamps as delta-of-delta, values as the XOR with the previous value.
+ * <p>
+ * The first point is stored raw (64-bit time, 64-bit value). Each following point stores
+ * <ul>
+ *     <li>its delta-of-delta: {@code 0} for zero, else {@code 10}, {@code 110}, {@code 1110} with 7, 12 or 20
+ *     signed bits, or {@code 11110} with 64 bits;</li>
+ *     <li>its value: {@code 0} if unchanged, {@code 10} with the meaningful XOR bits if they fit the previous
+ *     leading/trailing zero window, else {@code 11}, 5 bits leading zeros, 6 bits length and the bits.</li>
+ * </ul>
+ * A run of at least {@value #MIN_RUN} points with the same delta and value (e.g. weekends in minute data)
+ * is stored once as {@code 11111} and a 16-bit count. Encoding is lossless, NaN payloads included.
+ * Times are any strictly increasing longs: epoch days, minutes, etc.
+ */
+public final class CompressedRateBlock {
+    // A run costs 5 + 16 bits, a single unchanged point 2 bits
+    static final int MIN_RUN = 11;
+    private static final int MAX_RUN = 0xFFFF;
+    // Rough size of the block object and its array header
+    private static final long OVERHEAD_BYTES = 48;
+
+    private final long[] words;
+    private final long bitLength;
+    private final int size;
+    private final long firstTime;
+    private final long lastTime;
+
+    private CompressedRateBlock(long[] words, long bitLength, int size, long firstTime, long lastTime) {
+        this.words = words;
+        this.bitLength = bitLength;
+        this.size = size;
+        this.firstTime = firstTime;
+        this.lastTime = lastTime;
+    }
+
+    /**
+     * @return Encoder for a new block
+     */
+    public static Encoder encoder() {
+        return new Encoder();
+    }
+
+    /**
+     * @param series Series to compress, days as times
+     * @return Compressed block of the series
+     */
+    public static CompressedRateBlock of(RateSeries series) {
+        Encoder encoder = new Encoder();
+        for (int i = 0; i < series.size(); i++) {
+            encoder.add(series.days()[i], series.rates()[i]);
+        }
+        return encoder.build();
+    }
+
+    /**
+     * @return Number of points
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return Time of the first point
+     * @throws NoSuchElementException If empty
+     */
+    public long firstTime() {
+        if (size == 0) {
+            throw new NoSuchElementException("Empty block");
+        }
+        return firstTime;
+    }
+
+    /**
+     * @return Time of the last point
+     * @throws NoSuchElementException If empty
+     */
+    public long lastTime() {
+        if (size == 0) {
+            throw new NoSuchElementException("Empty block");
+        }
+        return lastTime;
+    }
+
+    /**
+     * @return Estimated heap size of the block in bytes
+     */
+    public long bytes() {
+        return OVERHEAD_BYTES + (long) words.length * Long.BYTES;
+    }
+
+    /**
+     * @return Encoded bits per point, 0 if empty
+     */
+    public double bitsPerPoint() {
+        return size == 0 ? 0 : (double) bitLength / size;
+    }
+
+    /**
+     * @return Cursor positioned before the first point
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Decodes the points with times between the given bounds; times must be epoch days.
+     * @param startTime Inclusive start
+     * @param endTime Inclusive end
+     * @return Decoded series
+     */
+    public RateSeries toSeries(long startTime, long endTime) {
+        int[] days = new int[64];
+        double[] rates = new double[64];
+        int count = 0;
+        Cursor cursor = cursor();
+        while (cursor.next() && cursor.time() <= endTime) {
+            if (cursor.time() < startTime) {
+                continue;
+            }
+            if (count == days.length) {
+                days = Arrays.copyOf(days, count * 2);
+                rates = Arrays.copyOf(rates, count * 2);
+            }
+            days[count] = Math.toIntExact(cursor.time());
+            rates[count++] = cursor.value();
+        }
+        return new RateSeries(Arrays.copyOf(days, count), Arrays.copyOf(rates, count));
+    }
+
+    /**
+     * Sequential decoder. Not thread-safe; each thread takes its own cursor.
+     */
+    public final class Cursor {
+        private long position = 0;
+        private int remaining = size;
+        private int run = 0;
+        private long time;
+        private long delta = 0;
+        private long bits;
+        private int leading = 0;
+        private int trailing = 0;
+
+        private Cursor() {
+        }
+
+        /**
+         * Advances to the next point.
+         * @return False if there is none
+         */
+        public boolean next() {
+            if (remaining == 0) {
+                return false;
+            }
+            if (remaining-- == size) {
+                time = read(64);
+                bits = read(64);
+                return true;
+            }
+            if (run > 0) {
+                run--;
+                time += delta;
+                return true;
+            }
+            int ones = 0;
+            while (ones < 5 && read(1) == 1) {
+                ones++;
+            }
+            switch (ones) {
+                case 0 -> { }
+                case 1 -> delta += signed(read(7), 7);
+                case 2 -> delta += signed(read(12), 12);
+                case 3 -> delta += signed(read(20), 20);
+                case 4 -> delta += read(64);
+                default -> {
+                    run = (int) read(16) - 1;
+                    time += delta;
+                    return true;
+                }
+            }
+            time += delta;
+            readValue();
+            return true;
+        }
+
+        private void readValue() {
+            if (read(1) == 0) {
+                return;
+            }
+            if (read(1) == 1) {
+                leading = (int) read(5);
+                int length = (int) read(6) + 1;
+                trailing = Long.SIZE - leading - length;
+            }
+            int length = Long.SIZE - leading - trailing;
+            bits ^= read(length) << trailing;
+        }
+
+        /**
+         * @return Time of the current point
+         */
+        public long time() {
+            return time;
+        }
+
+        /**
+         * @return Value of the current point
+         */
+        public double value() {
+            return Double.longBitsToDouble(bits);
+        }
+
+        private long read(int count) {
+            int index = (int) (position >>> 6);
+            int offset = (int) (position & 63);
+            int free = Long.SIZE - offset;
+            long value = (words[index] << offset) >>> (Long.SIZE - count);
+            if (count > free) {
+                value |= words[index + 1] >>> (Long.SIZE - (count - free));
+            }
+            position += count;
+            return value;
+        }
+    }
+
+    private static long signed(long value, int bits) {
+        return (value << (Long.SIZE - bits)) >> (Long.SIZE - bits);
+    }
+
+    /**
+     * Builds a block point by point. Not thread-safe.
+     */
+    public static final class Encoder {
+        private long[] words = new long[16];
+        private long bitLength = 0;
+        private int size = 0;
+        private long firstTime;
+        private long time;
+        private long delta = 0;
+        private long bits;
+        private int leading = -1;
+        private int trailing = 0;
+        private int pendingRun = 0;
+
+        private Encoder() {
+        }
+
+        /**
+         * @param time Time of the point, greater than the previous one
+         * @param value Value of the point
+         * @return This encoder
+         * @throws IllegalArgumentException If the time is not increasing
+         */
+        public Encoder add(long time, double value) {
+            long valueBits = Double.doubleToRawLongBits(value);
+            if (size == 0) {
+                write(time, 64);
+                write(valueBits, 64);
+                firstTime = time;
+                bits = valueBits;
+            } else {
+                if (time <= this.time) {
+                    throw new IllegalArgumentException("Times must increase: " + time + " after " + this.time);
+                }
+                long newDelta = time - this.time;
+                if (newDelta == delta && valueBits == bits) {
+                    pendingRun++;
+                } else {
+                    flushRun();
+                    writeDeltaOfDelta(newDelta - delta);
+                    writeValue(valueBits);
+                    delta = newDelta;
+                    bits = valueBits;
+                }
+            }
+            this.time = time;
+            size++;
+            return this;
+        }
+
+        /**
+         * @return Block of the points added so far
+         */
+        public CompressedRateBlock build() {
+            flushRun();
+            int used = (int) ((bitLength + 63) >>> 6);
+            return new CompressedRateBlock(Arrays.copyOf(words, used), bitLength, size, firstTime, time);
+        }
+
+        private void flushRun() {
+            if (pendingRun < MIN_RUN) {
+                for (int i = 0; i < pendingRun; i++) {
+                    write(0, 2); // Zero delta-of-delta, unchanged value
+                }
+            } else {
+                for (int left = pendingRun; left > 0; left -= MAX_RUN) {
+                    write(0b11111, 5);
+                    write(Math.min(left, MAX_RUN), 16);
+                }
+            }
+            pendingRun = 0;
+        }
+
+        private void writeDeltaOfDelta(long dod) {
+            if (dod == 0) {
+                write(0, 1);
+            } else if (fits(dod, 7)) {
+                write(0b10, 2);
+                write(dod, 7);
+            } else if (fits(dod, 12)) {
+                write(0b110, 3);
+                write(dod, 12);
+            } else if (fits(dod, 20)) {
+                write(0b1110, 4);
+                write(dod, 20);
+            } else {
+                write(0b11110, 5);
+                write(dod, 64);
+            }
+        }
+
+        private static boolean fits(long value, int bits) {
+            return value >= -(1L << (bits - 1)) && value < (1L << (bits - 1));
+        }
+
+        private void writeValue(long valueBits) {
+            long xor = valueBits ^ bits;
+            if (xor == 0) {
+                write(0, 1);
+                return;
+            }
+            int newLeading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+            int newTrailing = Long.numberOfTrailingZeros(xor);
+            if (leading >= 0 && newLeading >= leading && newTrailing >= trailing) {
+                write(0b10, 2);
+                write(xor >>> trailing, Long.SIZE - leading - trailing);
+            } else {
+                int length = Long.SIZE - newLeading - newTrailing;
+                write(0b11, 2);
+                write(newLeading, 5);
+                write(length - 1, 6);
+                write(xor >>> newTrailing, length);
+                leading = newLeading;
+                trailing = newTrailing;
+            }
+        }
+
+        private void write(long value, int count) {
+            if (count < Long.SIZE) {
+                value &= (1L << count) - 1;
+            }
+            int index = (int) (bitLength >>> 6);
+            int offset = (int) (bitLength & 63);
+            if (index + 1 >= words.length) {
+                words = Arrays.copyOf(words, words.length * 2);
+            }
+            int free = Long.SIZE - offset;
+            if (count <= free) {
+                words[index] |= value << (free - count);
+            } else {
+                words[index] |= value >>> (count - free);
+                words[index + 1] |= value << (Long.SIZE - (count - free));
+            }
+            bitLength += count;
+        }
+    }
+}
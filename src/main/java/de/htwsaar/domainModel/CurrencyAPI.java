@@ -1,6 +1,7 @@
 package de.htwsaar.domainModel;
 
 import de.htwsaar.exceptions.CurrencyApiException;
+import de.htwsaar.exceptions.CurrencyRangeNotSupportedException;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
@@ -13,6 +14,7 @@ import java.time.LocalDate;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.function.BiConsumer;
 
 /**
  * Fetches exchange rates and currency names from Open Exchange Rates API.
@@ -22,7 +24,11 @@ import java.util.Map;
 public class CurrencyAPI {
     // Set your API key here for personal use
     private static final String DEFAULT_API_KEY = "API_KEY";
+    private static final String DEFAULT_BASE_URL = "https://openexchangerates.org/api/";
+    // Longest period requested per time-series call
+    private static final int MAX_RANGE_DAYS = 31;
     private final String apiKey;
+    private final String baseUrl;
     private static final Logger LOGGER = LoggerFactory.getLogger(CurrencyAPI.class);
     private final OkHttpClient client;
     private volatile Map<String, String> codeToNameCache = null;
@@ -31,8 +37,7 @@ public class CurrencyAPI {
      * Uses the default API key.
      */
     public CurrencyAPI() {
-        this.apiKey = DEFAULT_API_KEY;
-        this.client = new OkHttpClient();
+        this(DEFAULT_API_KEY, new OkHttpClient());
     }
 
     /**
@@ -40,8 +45,18 @@ public class CurrencyAPI {
      * @param client OkHttpClient instance
      */
     public CurrencyAPI(String apiKey, OkHttpClient client) {
+        this(apiKey, client, DEFAULT_BASE_URL);
+    }
+
+    /**
+     * @param apiKey API key
+     * @param client OkHttpClient instance
+     * @param baseUrl API root ending with a slash (e.g. a local mock server)
+     */
+    public CurrencyAPI(String apiKey, OkHttpClient client, String baseUrl) {
         this.apiKey = apiKey;
         this.client = client;
+        this.baseUrl = baseUrl;
     }
 
     /**
@@ -50,38 +65,129 @@ public class CurrencyAPI {
      * @throws CurrencyApiException On API or network error
      */
     public Map<String, Double> getAllUsdRatesForDate(LocalDate date) throws CurrencyApiException {
+        Map<String, Double> result = new HashMap<>();
+        if (!getUsdRatesForDate(date, result::put)) {
+            return Collections.emptyMap();
+        }
+        return result;
+    }
+
+    /**
+     * Streams the rates of one day straight from the response body into the sink.
+     * @param date Date to fetch rates for
+     * @param sink Receives each currency code with its rate
+     * @return True if the response contained rates, false if it was empty or an API error
+     * @throws CurrencyApiException On network error or malformed response
+     */
+    public boolean getUsdRatesForDate(LocalDate date, RateSink sink) throws CurrencyApiException {
         String url = String.format(
-                "https://openexchangerates.org/api/historical/%d-%02d-%02d.json?app_id=%s",
-                date.getYear(), date.getMonthValue(), date.getDayOfMonth(), apiKey
+                "%shistorical/%d-%02d-%02d.json?app_id=%s",
+                baseUrl, date.getYear(), date.getMonthValue(), date.getDayOfMonth(), apiKey
         );
         Request request = new Request.Builder().url(url).build();
 
         try (Response response = client.newCall(request).execute()) {
             if (response.body() == null) {
                 LOGGER.error("Empty response body for date {}", date);
-                return Collections.emptyMap();
+                return false;
             }
-            String jsonData = response.body().string();
-            if (!jsonData.trim().startsWith("{")) {
-                LOGGER.error("API did not return JSON for {}: {}", date, jsonData);
-                return Collections.emptyMap();
-            }
-            JSONObject json = new JSONObject(jsonData);
-            if (!json.has("rates")) {
-                LOGGER.error("API error for {}: {}", date, json.optString("message", "unknown error"));
-                return Collections.emptyMap();
+            RatesJsonReader reader = new RatesJsonReader(response.body().source());
+            if (!reader.isJsonObject()) {
+                LOGGER.error("API did not return JSON for {}", date);
+                return false;
             }
-            JSONObject rates = json.getJSONObject("rates");
-            Map<String, Double> result = new HashMap<>();
-            for (String currency : rates.keySet()) {
-                result.put(currency, rates.getDouble(currency));
+            if (!reader.readRates(sink)) {
+                LOGGER.error("API error for {}: {}", date,
+                        reader.getMessage() != null ? reader.getMessage() : "unknown error");
+                return false;
             }
-            return result;
+            return true;
         } catch (IOException e) {
             throw new CurrencyApiException("Failed to fetch rates for " + date, e);
         }
     }
 
+    /**
+     * Fetches all days of a period with the time-series endpoint, {@value #MAX_RANGE_DAYS} days per request,
+     * and passes them to the sink in response order (ascending for Open Exchange Rates).
+     * Days missing from the response are skipped.
+     * @param start First date (inclusive)
+     * @param end Last date (inclusive)
+     * @param sink Receives each date with its map of currency code to rate
+     * @throws CurrencyRangeNotSupportedException If the API plan does not allow time-series requests
+     * @throws CurrencyApiException On API or network error
+     */
+    public void streamUsdRatesForRange(LocalDate start, LocalDate end, BiConsumer<LocalDate, Map<String, Double>> sink)
+            throws CurrencyApiException {
+        getUsdRatesForRange(start, end, new RateSink() {
+            private Map<String, Double> day;
+
+            @Override
+            public void beginDay(LocalDate date) {
+                day = new HashMap<>();
+            }
+
+            @Override
+            public void rate(String currency, double rate) {
+                day.put(currency, rate);
+            }
+
+            @Override
+            public void endDay(LocalDate date) {
+                sink.accept(date, day);
+            }
+        });
+    }
+
+    /**
+     * Like {@link #streamUsdRatesForRange(LocalDate, LocalDate, BiConsumer)}, but passes every rate
+     * to the sink as it is parsed, framed by {@link RateSink#beginDay} and {@link RateSink#endDay}.
+     * @param start First date (inclusive)
+     * @param end Last date (inclusive)
+     * @param sink Receives each day and its rates
+     * @throws CurrencyRangeNotSupportedException If the API plan does not allow time-series requests
+     * @throws CurrencyApiException On API or network error
+     */
+    public void getUsdRatesForRange(LocalDate start, LocalDate end, RateSink sink) throws CurrencyApiException {
+        for (LocalDate chunkStart = start; !chunkStart.isAfter(end); chunkStart = chunkStart.plusDays(MAX_RANGE_DAYS)) {
+            LocalDate chunkEnd = chunkStart.plusDays(MAX_RANGE_DAYS - 1L);
+            if (chunkEnd.isAfter(end)) {
+                chunkEnd = end;
+            }
+            fetchRangeChunk(chunkStart, chunkEnd, sink);
+        }
+    }
+
+    /**
+     * @param start First date (inclusive)
+     * @param end Last date (inclusive), at most {@value #MAX_RANGE_DAYS} days after start
+     * @param sink Receives each day and its rates
+     * @throws CurrencyApiException On API or network error
+     */
+    private void fetchRangeChunk(LocalDate start, LocalDate end, RateSink sink) throws CurrencyApiException {
+        String url = String.format("%stime-series.json?app_id=%s&start=%s&end=%s", baseUrl, apiKey, start, end);
+        Request request = new Request.Builder().url(url).build();
+
+        try (Response response = client.newCall(request).execute()) {
+            if (response.body() == null) {
+                throw new CurrencyApiException("Empty response body for " + start + " to " + end, null);
+            }
+            RatesJsonReader reader = new RatesJsonReader(response.body().source());
+            if (!reader.isJsonObject()) {
+                throw new CurrencyApiException("API did not return JSON for " + start + " to " + end, null);
+            }
+            if (!reader.readRatesByDay(sink)) {
+                String message = reader.getMessage() != null ? reader.getMessage() : "unknown error";
+                if (response.code() == 403 || "not_allowed".equals(message) || "access_restricted".equals(message)) {
+                    throw new CurrencyRangeNotSupportedException("Time-series requests not available: " + message);
+                }
+                throw new CurrencyApiException("API error for " + start + " to " + end + ": " + message, null);
+            }
+        } catch (IOException e) {
+            throw new CurrencyApiException("Failed to fetch rates for " + start + " to " + end, e);
+        }
+    }
+
     /**
      * @return Map of code to full name
      */
@@ -90,7 +196,7 @@ public class CurrencyAPI {
         if (cache != null) {
             return cache;
         }
-        String url = "https://openexchangerates.org/api/currencies.json";
+        String url = baseUrl + "currencies.json";
         Request request = new Request.Builder().url(url).build();
         try (Response response = client.newCall(request).execute()) {
             if (response.body() == null) {
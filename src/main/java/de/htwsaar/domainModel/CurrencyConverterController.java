@@ -7,19 +7,36 @@ import javafx.scene.chart.XYChart;
 import javafx.scene.control.Alert;
 import javafx.scene.Node;
 
+import java.sql.SQLException;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Controller for managing currency conversion logic and chart updates in the GUI.
  * The controller is "smart": it fetches all data and passes it to the view.
  */
-public class CurrencyConverterController {
+public class CurrencyConverterController implements AutoCloseable {
     private final CurrencyConverterView view;
     private final DatabaseManager dbManager;
+    private final RateStore rateStore;
+    private final ChartLoader chartLoader = new ChartLoader("chart-loader");
+    private final ChartSeriesCache chartCache = new ChartSeriesCache(CHART_CACHE_BYTES);
+    private final ExecutorService pairResolver = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "pair-rate-resolver");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Rate of the selected pair, published by the resolver; read and written on the FX thread
+    private PairRate pairRate = null;
+    private long refreshRequestedDay = Long.MIN_VALUE;
     private boolean isUpdating = false;
+    private volatile Downsampler downsampler = null;
+    private volatile CompressedHistoryCache historyCache = null;
     private static final int CHART_MAX_POINTS = 300;
+    private static final long CHART_CACHE_BYTES = 8L << 20;
     private static final String DEFAULT_FROM_CURRENCY = "EUR";
     private static final String DEFAULT_TO_CURRENCY = "USD";
     private static final String NO_DATA_MSG = "No data available for the selected period and currencies.";
@@ -28,12 +45,55 @@ public class CurrencyConverterController {
         DAY, WEEK, MONTH, YEAR, FIVE_YEARS, ALL
     }
 
-    public CurrencyConverterController(CurrencyConverterView view, DatabaseManager dbManager) {
+    /**
+     * Everything a chart load depends on; equal requests load the same chart.
+     */
+    private record ChartRequest(String fromCode, String toCode, ChartPeriod period, Downsampler downsampler) {
+    }
+
+    /**
+     * Latest rate of a currency pair.
+     * @param rate Exchange rate (to/from), or NaN if unavailable
+     * @param fromDay Epoch day of the source currency's rate, {@link Long#MIN_VALUE} if unknown
+     * @param toDay Epoch day of the target currency's rate, {@link Long#MIN_VALUE} if unknown
+     * @param storeDay Last day of the rate store when the rate was resolved
+     */
+    private record PairRate(String fromCode, String toCode, double rate, long fromDay, long toDay, long storeDay) {
+        boolean matches(String from, String to) {
+            return fromCode.equals(from) && toCode.equals(to);
+        }
+    }
+
+    /**
+     * Key of a computed cross series in the chart cache; the data epoch is checked by the cache.
+     */
+    private record ChartKey(int fromId, int toId, ChartPeriod period, Downsampler downsampler) {
+    }
+
+    public CurrencyConverterController(CurrencyConverterView view, DatabaseManager dbManager, RateStore rateStore) {
         this.view = view;
         this.dbManager = dbManager;
+        this.rateStore = rateStore;
         initialize();
     }
 
+    /**
+     * Chooses how charts are reduced to {@value #CHART_MAX_POINTS} points.
+     * @param downsampler Downsampler applied to the daily cross rates (e.g. {@link LttbDownsampler},
+     *                    {@link MinMaxDownsampler}), or null to plot the means of the matching pyramid tier
+     */
+    public void setDownsampler(Downsampler downsampler) {
+        this.downsampler = downsampler;
+    }
+
+    /**
+     * Serves daily chart series from compressed in-memory histories instead of SQLite.
+     * @param historyCache Cache tier for {@link RateTier#DAY} series, or null to query the database
+     */
+    public void setHistoryCache(CompressedHistoryCache historyCache) {
+        this.historyCache = historyCache;
+    }
+
     private void initialize() {
         try {
             Map<String, String> codeToName = dbManager.getCurrencyNames();
@@ -45,20 +105,17 @@ public class CurrencyConverterController {
             view.fromAmountField.setText("1");
 
             updateChartAsync(ChartPeriod.ALL);
-            convertAmount(true);
-            updateInfoBox();
+            selectPairAsync();
 
             setupChartPeriodButtons();
 
             view.fromCurrency.setOnAction(e -> {
                 updateChartAsync(ChartPeriod.ALL);
-                convertAmount(true);
-                updateInfoBox();
+                selectPairAsync();
             });
             view.toCurrency.setOnAction(e -> {
                 updateChartAsync(ChartPeriod.ALL);
-                convertAmount(true);
-                updateInfoBox();
+                selectPairAsync();
             });
 
             view.fromAmountField.textProperty().addListener((obs, oldVal, newVal) -> {
@@ -108,25 +165,101 @@ public class CurrencyConverterController {
         }
     }
 
+    /**
+     * Resolves the latest rate of the selected pair in the background. Once published, it converts the
+     * amount and updates the info box; keystrokes then convert against it without any lookup.
+     */
+    private void selectPairAsync() {
+        String fromCode = view.getSelectedFromCode();
+        String toCode = view.getSelectedToCode();
+
+        if (fromCode == null || toCode == null || pairResolver.isShutdown()) return;
+
+        Task<PairRate> pairTask = new Task<>() {
+            @Override
+            protected PairRate call() throws Exception {
+                return resolvePairRate(fromCode, toCode);
+            }
+
+            // Results for a pair that is no longer selected are dropped
+            @Override
+            protected void succeeded() {
+                PairRate resolved = getValue();
+                if (!resolved.matches(view.getSelectedFromCode(), view.getSelectedToCode())) return;
+                boolean changedPair = pairRate == null || !pairRate.matches(fromCode, toCode);
+                pairRate = resolved;
+                if (Double.isNaN(resolved.rate()) && changedPair) {
+                    showErrorAlert("Conversion Error", "No rate available for " + fromCode + " to " + toCode);
+                }
+                convertAmount(true);
+                updateInfoBox();
+            }
+
+            @Override
+            protected void failed() {
+                if (!fromCode.equals(view.getSelectedFromCode()) || !toCode.equals(view.getSelectedToCode())) return;
+                showErrorAlert("Conversion Error",
+                        "Failed to resolve rate: " + (getException() != null ? getException().getMessage() : "Unknown error"));
+            }
+        };
+        pairResolver.execute(pairTask);
+    }
+
+    /**
+     * Reads the pair from the store's latest cross-rate matrix, each side as of its latest valid rate.
+     * Only if the store has no rate for the pair (not loaded yet) the database is asked.
+     */
+    private PairRate resolvePairRate(String fromCode, String toCode) throws SQLException {
+        long storeDay = rateStore.getLastDay();
+        LatestRates latest = rateStore.getLatestRates();
+        CurrencyRegistry registry = latest.getRegistry();
+        if (registry.contains(fromCode) && registry.contains(toCode)) {
+            int fromId = registry.id(fromCode);
+            int toId = registry.id(toCode);
+            double rate = latest.crossRate(fromId, toId);
+            if (!Double.isNaN(rate)) {
+                return new PairRate(fromCode, toCode, rate, latest.day(fromId), latest.day(toId), storeDay);
+            }
+        }
+        double rate = dbManager.getLatestExchangeRate(fromCode, toCode);
+        return new PairRate(fromCode, toCode, rate, Long.MIN_VALUE, Long.MIN_VALUE, storeDay);
+    }
+
+    /**
+     * @return Published rate of the selected pair, or null while it is being resolved. A rate older than
+     *         the rate store is still returned, and a refresh is requested in the background.
+     */
+    private PairRate currentPairRate(String fromCode, String toCode) {
+        PairRate current = pairRate;
+        if (current == null || !current.matches(fromCode, toCode)) return null;
+        long storeDay = rateStore.getLastDay();
+        if (current.storeDay() != storeDay && refreshRequestedDay != storeDay) {
+            refreshRequestedDay = storeDay;
+            selectPairAsync();
+        }
+        return current;
+    }
+
     private void convertAmount(boolean fromChanged) {
         String fromCode = view.getSelectedFromCode();
         String toCode = view.getSelectedToCode();
 
         if (fromCode == null || toCode == null) return;
 
+        PairRate current = currentPairRate(fromCode, toCode);
+        if (current == null || Double.isNaN(current.rate())) return;
+
         isUpdating = true;
         try {
             if (fromChanged) {
                 String amountStr = view.fromAmountField.getText().trim();
                 double amount = parseAmount(amountStr);
-                double rate = dbManager.getLatestExchangeRate(fromCode, toCode);
-                double converted = amount * rate;
+                double converted = amount * current.rate();
                 view.toAmountField.setText(String.format("%.2f", converted));
             } else {
                 String amountStr = view.toAmountField.getText().trim();
                 double amount = parseAmount(amountStr);
-                double rate = dbManager.getLatestExchangeRate(toCode, fromCode);
-                double converted = amount * rate;
+                double converted = amount / current.rate();
                 view.fromAmountField.setText(String.format("%.2f", converted));
             }
         } catch (Exception e) {
@@ -156,19 +289,29 @@ public class CurrencyConverterController {
         String toFullName = codeToName.get(toCode);
 
         double rate = 1.0;
-        try {
-            if (fromCode != null && toCode != null) {
-                rate = dbManager.getLatestExchangeRate(fromCode, toCode);
-            }
-        } catch (Exception e) {
-            rate = 1.0;
+        String dateStr = null;
+        PairRate current = fromCode != null && toCode != null ? currentPairRate(fromCode, toCode) : null;
+        if (current != null && !Double.isNaN(current.rate())) {
+            rate = current.rate();
+            dateStr = formatAsOf(current);
         }
         String rateStr = CurrencyConverterView.formatAmount(rate);
-        String dateStr = LocalDate.now().format(DateTimeFormatter.ofPattern("d MMM"));
 
         view.updateInfoBox(rateStr, fromFullName, toFullName, dateStr);
     }
 
+    /**
+     * @return Date of the rate, or the date of each side if they differ; null if unknown
+     */
+    private static String formatAsOf(PairRate pair) {
+        if (pair.fromDay() == Long.MIN_VALUE || pair.toDay() == Long.MIN_VALUE) return null;
+        DateTimeFormatter format = DateTimeFormatter.ofPattern("d MMM");
+        String fromDate = LocalDate.ofEpochDay(pair.fromDay()).format(format);
+        if (pair.fromDay() == pair.toDay()) return fromDate;
+        return pair.fromCode() + " " + fromDate + ", " + pair.toCode() + " "
+                + LocalDate.ofEpochDay(pair.toDay()).format(format);
+    }
+
     private void showErrorAlert(String title, String message) {
         FXUtils.showAlert(Alert.AlertType.ERROR, title, message);
     }
@@ -179,118 +322,184 @@ public class CurrencyConverterController {
 
         if (fromCode == null || toCode == null) return;
 
-        setControlsDisabled(true);
+        Downsampler sampler = downsampler;
+        ChartRequest request = new ChartRequest(fromCode, toCode, period, sampler);
 
         Task<XYChart.Series<String, Number>> chartTask = new Task<>() {
             private String errorMessage = null;
+            private ChartKey loadedKey = null;
 
             @Override
             protected XYChart.Series<String, Number> call() {
-                String[] overlap = getOverlappingDates(fromCode, toCode);
-                if (overlap == null) return null;
-
-                String startDate = adjustStartDate(overlap[0], overlap[1], period);
-                String endDate = overlap[1];
-
-                if (startDate.compareTo(endDate) > 0) {
-                    errorMessage = "No overlapping data period found for the selected currencies.";
-                    return null;
+                int fromId = currencyId(fromCode);
+                int toId = currencyId(toCode);
+                if (fromId < 0 || toId < 0) return null;
+
+                ChartKey key = new ChartKey(fromId, toId, period, sampler);
+                long epoch = dbManager.getDataVersion();
+                RateSeries crossRates = chartCache.get(key, epoch);
+                if (crossRates == null) {
+                    long[] days = getChartDays(fromId, toId, period);
+                    if (days == null || isCancelled()) return null;
+                    if (days[0] > days[1]) {
+                        errorMessage = "No overlapping data period found for the selected currencies.";
+                        return null;
+                    }
+
+                    crossRates = loadCrossRates(key, days[0], days[1]);
+                    if (crossRates == null || isCancelled()) return null;
+                    chartCache.put(key, epoch, crossRates);
+                    loadedKey = key;
                 }
-
-                Map<String, Double> fromRates = fetchRates(fromCode, startDate, endDate);
-                Map<String, Double> toRates = fetchRates(toCode, startDate, endDate);
-
-                if (fromRates == null || toRates == null) return null;
-
-                return buildSeries(fromCode, toCode, fromRates, toRates);
+                return buildSeries(fromCode, toCode, crossRates);
             }
 
+            // A superseded task ends silently; the newer one shows its result and re-enables the controls
             @Override
             protected void succeeded() {
+                if (!chartLoader.isCurrent(this)) return;
                 safeSetChartData(getValue(), errorMessage);
                 setControlsDisabled(false);
+                if (loadedKey != null) {
+                    prefetchOtherPeriods(loadedKey);
+                }
             }
 
             @Override
             protected void failed() {
+                if (!chartLoader.isCurrent(this)) return;
                 showErrorAlert("Chart Error",
                         "Failed to update chart: " + (getException() != null ? getException().getMessage() : "Unknown error"));
                 setControlsDisabled(false);
             }
         };
 
-        FXUtils.showProgress(view.progressIndicator, true);
-        new Thread(chartTask).start();
+        if (chartLoader.submit(request, chartTask)) {
+            setControlsDisabled(true);
+            FXUtils.showProgress(view.progressIndicator, true);
+        }
+    }
+
+    /**
+     * @return Id of the currency in the database registry, or -1 on error
+     */
+    private int currencyId(String code) {
+        try {
+            return dbManager.getCurrencyRegistry().id(code);
+        } catch (Exception e) {
+            setError("Failed to resolve currency: " + e.getMessage());
+            return -1;
+        }
+    }
+
+    /**
+     * Computes the charts of the other periods of a freshly loaded pair in the background, so switching
+     * periods renders from the cache.
+     */
+    private void prefetchOtherPeriods(ChartKey loaded) {
+        for (ChartPeriod period : ChartPeriod.values()) {
+            if (period == loaded.period()) continue;
+            ChartKey key = new ChartKey(loaded.fromId(), loaded.toId(), period, loaded.downsampler());
+            chartLoader.prefetch(() -> {
+                long epoch = dbManager.getDataVersion();
+                if (chartCache.contains(key, epoch)) return;
+                long[] days = getChartDays(key.fromId(), key.toId(), period);
+                if (days == null || days[0] > days[1]) return;
+                RateSeries crossRates = loadCrossRates(key, days[0], days[1]);
+                if (crossRates != null) {
+                    chartCache.put(key, epoch, crossRates);
+                }
+            });
+        }
+    }
+
+    /**
+     * @return Epoch days {start, end} of the period's chart, start after end if the currencies do not
+     *         overlap, or null on error
+     */
+    private long[] getChartDays(int fromId, int toId, ChartPeriod period) {
+        long[] overlap = getOverlappingDays(fromId, toId);
+        if (overlap == null) return null;
+        return new long[]{adjustStartDay(overlap[0], overlap[1], period), overlap[1]};
     }
 
-    private String[] getOverlappingDates(String fromCode, String toCode) {
+    /**
+     * @return Epoch days {first, last} valid for both currencies, or null on error
+     */
+    private long[] getOverlappingDays(int fromId, int toId) {
         try {
-            String fromStart = dbManager.getFirstValidDate(fromCode);
-            String fromEnd = dbManager.getLastValidDate(fromCode);
-            String toStart = dbManager.getFirstValidDate(toCode);
-            String toEnd = dbManager.getLastValidDate(toCode);
+            DatabaseManager.ValidRange fromRange = dbManager.getValidRange(fromId);
+            DatabaseManager.ValidRange toRange = dbManager.getValidRange(toId);
 
-            if (fromStart == null || fromEnd == null || toStart == null || toEnd == null) {
+            if (fromRange == null || toRange == null) {
                 setError("No valid data found for one or both currencies.");
                 return null;
             }
-            String overlapStart = fromStart.compareTo(toStart) > 0 ? fromStart : toStart;
-            String overlapEnd = fromEnd.compareTo(toEnd) < 0 ? fromEnd : toEnd;
-            return new String[]{overlapStart, overlapEnd};
+            return new long[]{Math.max(fromRange.firstDay(), toRange.firstDay()),
+                    Math.min(fromRange.lastDay(), toRange.lastDay())};
         } catch (Exception e) {
             setError("Failed to fetch date range: " + e.getMessage());
             return null;
         }
     }
 
-    private static String adjustStartDate(String overlapStart, String overlapEnd, ChartPeriod period) {
+    private static long adjustStartDay(long overlapStart, long overlapEnd, ChartPeriod period) {
         if (period == ChartPeriod.ALL) return overlapStart;
-        try {
-            LocalDate end = LocalDate.parse(overlapEnd);
-            LocalDate start;
-            switch (period) {
-                case DAY:       start = end.minusDays(1); break;
-                case WEEK:      start = end.minusWeeks(1); break;
-                case MONTH:     start = end.minusMonths(1); break;
-                case YEAR:      start = end.minusYears(1); break;
-                case FIVE_YEARS:start = end.minusYears(5); break;
-                default:        start = LocalDate.parse(overlapStart);
-            }
-            if (start.isBefore(LocalDate.parse(overlapStart))) start = LocalDate.parse(overlapStart);
-            return start.toString();
-        } catch (Exception ex) {
-            return overlapStart;
+        LocalDate end = LocalDate.ofEpochDay(overlapEnd);
+        long start;
+        switch (period) {
+            case DAY:       start = overlapEnd - 1; break;
+            case WEEK:      start = overlapEnd - 7; break;
+            case MONTH:     start = end.minusMonths(1).toEpochDay(); break;
+            case YEAR:      start = end.minusYears(1).toEpochDay(); break;
+            case FIVE_YEARS:start = end.minusYears(5).toEpochDay(); break;
+            default:        start = overlapStart;
         }
+        return Math.max(start, overlapStart);
+    }
+
+    /**
+     * @return Coarsest pyramid tier that still gives about {@value #CHART_MAX_POINTS} points for the period
+     */
+    private static RateTier chartTier(long startDay, long endDay) {
+        return RateTier.forSpan(endDay - startDay + 1, CHART_MAX_POINTS);
     }
 
-    private Map<String, Double> fetchRates(String currency, String startDate, String endDate) {
+    /**
+     * @return Cross rates of the chart, reduced to {@value #CHART_MAX_POINTS} points, or null on error
+     */
+    private RateSeries loadCrossRates(ChartKey key, long startDay, long endDay) {
+        Downsampler sampler = key.downsampler();
+        RateTier tier = sampler != null ? RateTier.DAY : chartTier(startDay, endDay);
+        RateSeries crossRates = fetchCrossRates(key.fromId(), key.toId(), tier, startDay, endDay);
+        if (crossRates == null || sampler == null) return crossRates;
+        return sampler.downsample(crossRates, CHART_MAX_POINTS);
+    }
+
+    private RateSeries fetchCrossRates(int fromId, int toId, RateTier tier, long startDay, long endDay) {
         try {
-            return dbManager.getDownsampledRates(currency, startDate, endDate, CHART_MAX_POINTS);
+            CompressedHistoryCache cache = historyCache;
+            if (cache != null && tier == RateTier.DAY) {
+                return cache.getCrossRateSeries(fromId, toId, startDay, endDay);
+            }
+            return dbManager.getCrossRateSeries(fromId, toId, tier, startDay, endDay);
         } catch (Exception e) {
             setError("Failed to fetch rates: " + e.getMessage());
-            return Map.of();
+            return null;
         }
     }
 
-    private XYChart.Series<String, Number> buildSeries(String fromCode, String toCode,
-                                                       Map<String, Double> fromRates, Map<String, Double> toRates) {
+    private XYChart.Series<String, Number> buildSeries(String fromCode, String toCode, RateSeries crossRates) {
         XYChart.Series<String, Number> series = new XYChart.Series<>();
         series.setName(fromCode + " to " + toCode);
 
-        for (String date : fromRates.keySet()) {
-            Double fromRate = fromRates.get(date);
-            Double toRate = toRates.get(date);
-            if (isValidRate(fromRate) && isValidRate(toRate) && fromRate != 0.0) {
-                series.getData().add(new XYChart.Data<>(date, toRate / fromRate));
-            }
+        for (int i = 0; i < crossRates.size(); i++) {
+            String date = LocalDate.ofEpochDay(crossRates.days()[i]).toString();
+            series.getData().add(new XYChart.Data<>(date, crossRates.rates()[i]));
         }
         return (series.getData() != null && !series.getData().isEmpty()) ? series : null;
     }
 
-    private static boolean isValidRate(Double rate) {
-        return rate != null && rate != -1.0 && rate != 0.0;
-    }
-
     private static void setError(String message) {
         System.err.println("Chart error: " + message);
     }
@@ -340,6 +549,16 @@ public class CurrencyConverterController {
         return "grey";
     }
 
+    /**
+     * Stops the chart loader and the pair-rate resolver; loads in flight are cancelled.
+     * Call when the application stops.
+     */
+    @Override
+    public void close() {
+        chartLoader.close();
+        pairResolver.shutdownNow();
+    }
+
     private void setControlsDisabled(boolean disabled) {
         Platform.runLater(() -> {
             view.fromCurrency.setDisable(disabled);
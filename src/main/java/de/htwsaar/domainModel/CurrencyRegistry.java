@@ -0,0 +1,148 @@
+package de.htwsaar.domainModel;
+
+import java.util.*;
+
+/**
+ * Immutable mapping between ISO currency codes and the dense ids of the {@code Currency} table.
+ * <p>
+ * Ids are small positive ints, so an id lookup or validation is an array access. A new currency
+ * produces a new registry (copy-on-write); instances never change and can be shared between threads.
+ */
+public final class CurrencyRegistry {
+    public static final CurrencyRegistry EMPTY = new CurrencyRegistry(new String[0], Map.of(), List.of());
+
+    private final String[] codeOfId;
+    private final Map<String, Integer> idOfCode;
+    private final List<String> sortedCodes;
+
+    private CurrencyRegistry(String[] codeOfId, Map<String, Integer> idOfCode, List<String> sortedCodes) {
+        this.codeOfId = codeOfId;
+        this.idOfCode = idOfCode;
+        this.sortedCodes = sortedCodes;
+    }
+
+    /**
+     * @param idsByCode Map of currency code to id
+     * @return Registry holding the given currencies
+     * @throws IllegalArgumentException If an id is negative or used twice
+     */
+    static CurrencyRegistry of(Map<String, Integer> idsByCode) {
+        int limit = 0;
+        for (int id : idsByCode.values()) {
+            if (id < 0) {
+                throw new IllegalArgumentException("Negative currency id: " + id);
+            }
+            limit = Math.max(limit, id + 1);
+        }
+        String[] codeOfId = new String[limit];
+        for (Map.Entry<String, Integer> entry : idsByCode.entrySet()) {
+            if (codeOfId[entry.getValue()] != null) {
+                throw new IllegalArgumentException("Duplicate currency id: " + entry.getValue());
+            }
+            codeOfId[entry.getValue()] = entry.getKey();
+        }
+        List<String> sorted = new ArrayList<>(idsByCode.keySet());
+        Collections.sort(sorted);
+        return new CurrencyRegistry(codeOfId, Map.copyOf(idsByCode), List.copyOf(sorted));
+    }
+
+    /**
+     * @param code New currency code
+     * @param id Id of the new currency
+     * @return Copy of this registry with the currency added, or this registry if it is already present
+     * @throws IllegalArgumentException If the code or id is already used by another currency
+     */
+    CurrencyRegistry with(String code, int id) {
+        Integer existing = idOfCode.get(code);
+        if (existing != null && existing == id) {
+            return this;
+        }
+        Map<String, Integer> ids = new HashMap<>(idOfCode);
+        if (ids.put(code, id) != null) {
+            throw new IllegalArgumentException("Currency " + code + " already has an id");
+        }
+        return of(ids);
+    }
+
+    /**
+     * @return Number of currencies
+     */
+    public int size() {
+        return idOfCode.size();
+    }
+
+    /**
+     * @return One more than the largest id, for sizing arrays indexed by id
+     */
+    public int idLimit() {
+        return codeOfId.length;
+    }
+
+    /**
+     * @param id Currency id
+     * @return True if the id belongs to a currency
+     */
+    public boolean contains(int id) {
+        return id >= 0 && id < codeOfId.length && codeOfId[id] != null;
+    }
+
+    /**
+     * @param code Currency code
+     * @return True if the code is registered
+     */
+    public boolean contains(String code) {
+        return idOfCode.containsKey(code);
+    }
+
+    /**
+     * @param code Currency code
+     * @return Id of the currency, or -1 if unknown
+     */
+    public int idOf(String code) {
+        Integer id = idOfCode.get(code);
+        return id != null ? id : -1;
+    }
+
+    /**
+     * @param code Currency code
+     * @return Id of the currency
+     * @throws IllegalArgumentException If invalid currency
+     */
+    public int id(String code) {
+        Integer id = idOfCode.get(code);
+        if (id == null) {
+            throw new IllegalArgumentException("Invalid currency: " + code);
+        }
+        return id;
+    }
+
+    /**
+     * @param id Currency id
+     * @return Currency code
+     * @throws IllegalArgumentException If invalid id
+     */
+    public String code(int id) {
+        if (!contains(id)) {
+            throw new IllegalArgumentException("Invalid currency id: " + id);
+        }
+        return codeOfId[id];
+    }
+
+    /**
+     * @return Currency codes in ascending order
+     */
+    public List<String> codes() {
+        return sortedCodes;
+    }
+
+    /**
+     * @return Ids of all currencies, in the order of {@link #codes()}
+     */
+    public int[] ids() {
+        int[] ids = new int[sortedCodes.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = idOfCode.get(sortedCodes.get(i));
+        }
+        return ids;
+    }
+}
@@ -1,12 +1,19 @@
 package de.htwsaar.domainModel;
 
+import com.google.common.util.concurrent.RateLimiter;
 import de.htwsaar.exceptions.CurrencyApiException;
+import de.htwsaar.exceptions.CurrencyRangeNotSupportedException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.file.Path;
 import java.sql.SQLException;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
@@ -17,11 +24,55 @@ public class CurrencyUpdater {
 
     private final CurrencyAPI api;
     private final DatabaseManager db;
+    private final RateStore rateStore;
+    private final Path snapshotFile;
     private static final Logger LOGGER = LoggerFactory.getLogger(CurrencyUpdater.class);
+    // Days buffered before they are written in one transaction, one chunk of DatabaseManager.upsertRates
+    private static final int FLUSH_DAYS = 64;
+
+    /**
+     * Limits for the pipelined sync.
+     * @param maxInFlight maximum number of API requests running or completed but not yet written
+     * @param requestsPerSecond maximum rate at which API requests are started
+     */
+    public record PipelineOptions(int maxInFlight, double requestsPerSecond) {
+        public static final PipelineOptions DEFAULT = new PipelineOptions(8, 10.0);
+
+        public PipelineOptions {
+            if (maxInFlight < 1) {
+                throw new IllegalArgumentException("maxInFlight must be at least 1");
+            }
+            if (!(requestsPerSecond > 0)) {
+                throw new IllegalArgumentException("requestsPerSecond must be positive");
+            }
+        }
+    }
 
     public CurrencyUpdater(CurrencyAPI api, DatabaseManager db) {
+        this(api, db, null);
+    }
+
+    /**
+     * @param api API client
+     * @param db Database to update
+     * @param rateStore In-memory store refreshed after each written batch of days, or null
+     */
+    public CurrencyUpdater(CurrencyAPI api, DatabaseManager db, RateStore rateStore) {
+        this(api, db, rateStore, null);
+    }
+
+    /**
+     * @param api API client
+     * @param db Database to update
+     * @param rateStore In-memory store refreshed after each written batch of days, or null
+     * @param snapshotFile File the store is saved to after each completed sync (see
+     *                     {@link RateStore#writeSnapshot(Path)}), or null
+     */
+    public CurrencyUpdater(CurrencyAPI api, DatabaseManager db, RateStore rateStore, Path snapshotFile) {
         this.api = api;
         this.db = db;
+        this.rateStore = rateStore;
+        this.snapshotFile = snapshotFile;
     }
 
     /**
@@ -30,33 +81,290 @@ public class CurrencyUpdater {
      * @param messageCallback  status message
      */
     public void syncDatabaseWithProgress(BiConsumer<Integer, Integer> progressCallback, Consumer<String> messageCallback) {
-        String lastDateStr = getLastDateSafe();
-        if (lastDateStr == null) return;
+        SyncRun run = startSync(progressCallback, messageCallback);
+        if (run == null) return;
 
-        LocalDate lastDate = LocalDate.parse(lastDateStr);
-        LocalDate today = LocalDate.now();
-        LocalDate firstMissing = lastDate.plusDays(1);
-        int totalDays = Math.max(1, (int) java.time.temporal.ChronoUnit.DAYS.between(firstMissing, today.plusDays(1)));
+        try {
+            while (!run.isDone()) {
+                run.write(run.nextToWrite, fetchRatesForDay(run.nextToWrite));
+            }
+        } finally {
+            run.flush();
+        }
+        writeSnapshotSafe(run);
+    }
 
-        Set<String> currencyCodes = new HashSet<>(getCurrencyCodesSafe());
-        Map<String, String> currencyNames = new HashMap<>(getCurrencyNamesSafe());
+    /**
+     * Syncs the database with all missing days up to today, fetching several days concurrently.
+     * <p>
+     * Fetches run on virtual threads, at most {@code maxInFlight} ahead of the writer and started no faster
+     * than {@code requestsPerSecond}. The calling thread is the only writer and stores days strictly in date
+     * order, so the result and the progress reported are the same as with
+     * {@link #syncDatabaseWithProgress(BiConsumer, Consumer)}.
+     * @param progressCallback (processed, total)
+     * @param messageCallback  status message
+     * @param options concurrency and rate limits
+     */
+    public void syncDatabasePipelined(BiConsumer<Integer, Integer> progressCallback, Consumer<String> messageCallback,
+                                      PipelineOptions options) {
+        SyncRun run = startSync(progressCallback, messageCallback);
+        if (run == null) return;
+
+        try {
+            syncRemainingPipelined(run, options);
+        } finally {
+            run.flush();
+        }
+        writeSnapshotSafe(run);
+    }
+
+    /**
+     * Syncs the database with all missing days up to today using the API's time-series endpoint,
+     * which returns many days per request. Days are buffered as they are parsed and written in date order.
+     * If the API plan does not support ranges, or a range request fails, the remaining days are
+     * fetched one by one with {@link #syncDatabasePipelined(BiConsumer, Consumer, PipelineOptions)}.
+     * @param progressCallback (processed, total)
+     * @param messageCallback  status message
+     * @param fallbackOptions concurrency and rate limits for the per-day fallback
+     */
+    public void syncDatabaseByRange(BiConsumer<Integer, Integer> progressCallback, Consumer<String> messageCallback,
+                                    PipelineOptions fallbackOptions) {
+        SyncRun run = startSync(progressCallback, messageCallback);
+        if (run == null) return;
+
+        try {
+            try {
+                LocalDate start = LocalDate.ofEpochDay(run.nextToWrite);
+                api.streamUsdRatesForRange(start, LocalDate.ofEpochDay(run.today), (date, rates) -> {
+                    long day = date.toEpochDay();
+                    if (day > run.today) return;
+                    // Days the range response skipped are fetched individually to keep the writes in order
+                    while (run.nextToWrite < day) {
+                        run.write(run.nextToWrite, fetchRatesForDay(run.nextToWrite));
+                    }
+                    if (day == run.nextToWrite) {
+                        run.write(day, rates);
+                    }
+                });
+            } catch (CurrencyRangeNotSupportedException e) {
+                LOGGER.info("Range requests not supported, falling back to daily requests: {}", e.getMessage());
+            } catch (CurrencyApiException e) {
+                LOGGER.warn("Range request failed, falling back to daily requests: {}", e.getMessage());
+            }
+            syncRemainingPipelined(run, fallbackOptions);
+        } finally {
+            run.flush();
+        }
+        writeSnapshotSafe(run);
+    }
+
+    /**
+     * Writes all days not yet written by the run, using the pipelined fetchers.
+     * @param run sync state
+     * @param options concurrency and rate limits
+     */
+    private void syncRemainingPipelined(SyncRun run, PipelineOptions options) {
+        RateLimiter limiter = RateLimiter.create(options.requestsPerSecond());
+        Deque<Future<Map<String, Double>>> window = new ArrayDeque<>();
+        try (ExecutorService fetchers = Executors.newVirtualThreadPerTaskExecutor()) {
+            long nextToFetch = run.nextToWrite;
+            while (!run.isDone()) {
+                while (window.size() < options.maxInFlight() && nextToFetch <= run.today) {
+                    long day = nextToFetch;
+                    window.addLast(fetchers.submit(() -> {
+                        limiter.acquire();
+                        return fetchRatesForDay(day);
+                    }));
+                    nextToFetch++;
+                }
+
+                Map<String, Double> rates = awaitRates(window.removeFirst(), run.nextToWrite);
+                if (Thread.currentThread().isInterrupted()) {
+                    window.forEach(f -> f.cancel(true));
+                    return;
+                }
+                run.write(run.nextToWrite, rates);
+            }
+        }
+    }
+
+    /**
+     * Prepares a sync from the day after the latest stored date up to today.
+     * @param progressCallback (processed, total)
+     * @param messageCallback  status message
+     * @return sync state, or null if the latest date cannot be read
+     */
+    private SyncRun startSync(BiConsumer<Integer, Integer> progressCallback, Consumer<String> messageCallback) {
+        Long lastDay = getLastDaySafe();
+        if (lastDay == null) return null;
+
+        return new SyncRun(lastDay + 1, LocalDate.now().toEpochDay(), progressCallback, messageCallback);
+    }
+
+    /**
+     * State of one sync: the single writer that stores days in date order and reports progress.
+     * Days are buffered and written {@value #FLUSH_DAYS} at a time, each batch in one transaction.
+     */
+    private final class SyncRun {
+        private final long today;
+        private final int totalDays;
+        private final Map<String, String> currencyNames = new HashMap<>(getCurrencyNamesSafe());
+        private final BiConsumer<Integer, Integer> progressCallback;
+        private final Consumer<String> messageCallback;
+        private long nextToWrite;
+        private int processed = 0;
+        private final long[] pendingDays = new long[FLUSH_DAYS];
+        private final int[][] pendingIds = new int[FLUSH_DAYS][];
+        private final double[][] pendingRates = new double[FLUSH_DAYS][];
+        private int pending = 0;
+
+        SyncRun(long firstMissing, long today,
+                BiConsumer<Integer, Integer> progressCallback, Consumer<String> messageCallback) {
+            this.nextToWrite = firstMissing;
+            this.today = today;
+            this.totalDays = (int) Math.max(1, today + 1 - firstMissing);
+            this.progressCallback = progressCallback;
+            this.messageCallback = messageCallback;
+        }
 
-        int processed = 0;
-        for (LocalDate date = firstMissing; !date.isAfter(today); date = date.plusDays(1)) {
-            updateMessage(messageCallback, "Updating: " + date);
-            processRatesForDate(date, currencyCodes, currencyNames);
+        boolean isDone() {
+            return nextToWrite > today;
+        }
+
+        /**
+         * Buffers a day, writing the buffer once it is full.
+         * @param day epoch day to write, must be {@code nextToWrite}
+         * @param rates map of currency to rate, or null if the fetch failed
+         */
+        void write(long day, Map<String, Double> rates) {
+            updateMessage(messageCallback, "Updating: " + LocalDate.ofEpochDay(day));
+            if (rates != null) {
+                resolveRates(day, rates, currencyNames);
+                if (pending == FLUSH_DAYS) {
+                    flush();
+                }
+            }
             processed++;
             updateProgress(progressCallback, processed, totalDays);
+            nextToWrite = day + 1;
+        }
+
+        /**
+         * Registers new currencies and names of a day and adds its rates to the buffer.
+         * Currencies that could not be registered are skipped.
+         * @param day epoch day of the rates
+         * @param rates map of currency to rate
+         * @param currencyNames map of known currency names (updated in-place)
+         */
+        private void resolveRates(long day, Map<String, Double> rates, Map<String, String> currencyNames) {
+            CurrencyRegistry registry = getCurrencyRegistrySafe();
+            int[] ids = new int[rates.size()];
+            double[] values = new double[rates.size()];
+            int count = 0;
+            for (Map.Entry<String, Double> rate : rates.entrySet()) {
+                String currency = rate.getKey();
+                int id = registry.idOf(currency);
+                // Register currency if missing
+                if (id < 0) {
+                    try {
+                        id = db.addCurrency(currency);
+                    } catch (Exception e) {
+                        LOGGER.error("Failed to add currency {}: {}", currency, e.getMessage());
+                    }
+                }
+
+                // Add currency name if missing
+                if (!currencyNames.containsKey(currency)) {
+                    String name = fetchCurrencyName(currency);
+                    try {
+                        db.addCurrencyName(currency, name);
+                        currencyNames.put(currency, name);
+                    } catch (SQLException e) {
+                        LOGGER.error("Failed to add currency name {}: {}", currency, e.getMessage());
+                    }
+                }
+
+                if (id >= 0) {
+                    ids[count] = id;
+                    values[count++] = rate.getValue();
+                }
+            }
+            pendingDays[pending] = day;
+            pendingIds[pending] = Arrays.copyOf(ids, count);
+            pendingRates[pending++] = Arrays.copyOf(values, count);
+        }
+
+        /**
+         * Writes the buffered days and loads them into the in-memory store, logging any error.
+         */
+        void flush() {
+            if (pending == 0) return;
+            try {
+                db.upsertRates(Arrays.copyOf(pendingDays, pending), Arrays.copyOf(pendingIds, pending),
+                        Arrays.copyOf(pendingRates, pending));
+            } catch (Exception e) {
+                LOGGER.error("Failed to upsert rates for {} to {}: {}", LocalDate.ofEpochDay(pendingDays[0]),
+                        LocalDate.ofEpochDay(pendingDays[pending - 1]), e.getMessage());
+            }
+            Arrays.fill(pendingIds, null);
+            Arrays.fill(pendingRates, null);
+            pending = 0;
+            refreshRateStoreSafe();
+        }
+    }
+
+    /**
+     * Waits for a pipelined fetch, mapping failures to null like the sequential path.
+     * @param future pending fetch
+     * @param day epoch day being fetched
+     * @return map of currency to rate, or null on error or interrupt
+     */
+    private Map<String, Double> awaitRates(Future<Map<String, Double>> future, long day) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            LOGGER.error("Error fetching rates for {}: {}", LocalDate.ofEpochDay(day), e.getCause().getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Loads newly written days into the in-memory store, if one is attached.
+     */
+    private void refreshRateStoreSafe() {
+        if (rateStore == null) return;
+        try {
+            rateStore.refresh(db);
+        } catch (Exception e) {
+            LOGGER.error("Failed to refresh rate store: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Saves the in-memory store to the snapshot file after a completed sync, if it loaded days since the
+     * file was last read or written. An interrupted sync leaves the previous snapshot in place.
+     * @param run finished sync
+     */
+    private void writeSnapshotSafe(SyncRun run) {
+        if (rateStore == null || snapshotFile == null || !run.isDone() || !rateStore.hasUnsavedDays()) return;
+        try {
+            rateStore.writeSnapshot(snapshotFile);
+            LOGGER.info("Wrote rate snapshot {}.", snapshotFile);
+        } catch (Exception e) {
+            LOGGER.error("Failed to write rate snapshot: {}", e.getMessage());
         }
     }
 
     /**
-     * Gets the most recent date in the database, or null on error.
-     * @return ISO date string or null
+     * Gets the most recent day in the database, or null on error.
+     * @return epoch day or null
      */
-    private String getLastDateSafe() {
+    private Long getLastDaySafe() {
         try {
-            return db.getLatestDate();
+            return db.getLatestDay();
         } catch (Exception e) {
             LOGGER.error("Error fetching last date from DB: {}", e.getMessage());
             return null;
@@ -86,45 +394,6 @@ public class CurrencyUpdater {
         }
     }
 
-    /**
-     * Updates the database with all rates for a single date.
-     * @param date date to process
-     * @param currencyCodes set of known currency codes (updated in-place)
-     * @param currencyNames map of known currency names (updated in-place)
-     */
-    private void processRatesForDate(LocalDate date, Set<String> currencyCodes, Map<String, String> currencyNames) {
-        Map<String, Double> rates = fetchRatesForDate(date);
-        if (rates == null) return;
-
-        for (Map.Entry<String, Double> entry : rates.entrySet()) {
-            String currency = entry.getKey();
-            double rate = entry.getValue();
-
-            // Add currency column if missing
-            if (!currencyCodes.contains(currency)) {
-                try {
-                    db.addCurrency(currency);
-                    currencyCodes.add(currency);
-                } catch (Exception e) {
-                    LOGGER.error("Failed to add currency column {}: {}", currency, e.getMessage());
-                }
-            }
-
-            // Add currency name if missing
-            if (!currencyNames.containsKey(currency)) {
-                String name = fetchCurrencyName(currency);
-                try {
-                    db.addCurrencyName(currency, name);
-                    currencyNames.put(currency, name);
-                } catch (SQLException e) {
-                    LOGGER.error("Failed to add currency name {}: {}", currency, e.getMessage());
-                }
-            }
-
-            upsertRateSafe(currency, date, rate);
-        }
-    }
-
     /**
      * Gets the full name for a currency code from the API, or falls back to the code.
      * @param currency currency code
@@ -144,13 +413,13 @@ public class CurrencyUpdater {
     }
 
     /**
-     * Fetches rates for a given date from the API.
-     * @param date date to fetch
+     * Fetches rates for a given day from the API.
+     * @param day epoch day to fetch
      * @return map of currency to rate, or null on error
      */
-    private Map<String, Double> fetchRatesForDate(LocalDate date) {
+    private Map<String, Double> fetchRatesForDay(long day) {
         try {
-            return api.getAllUsdRatesForDate(date);
+            return api.getAllUsdRatesForDate(LocalDate.ofEpochDay(day));
         } catch (CurrencyApiException e) {
             LOGGER.error("Error fetching rates from API: {}", e.getMessage());
             return null;
@@ -158,15 +427,15 @@ public class CurrencyUpdater {
     }
 
     /**
-     * Gets all currency codes from the database, or empty list on error.
-     * @return list of currency codes
+     * Gets the currency registry from the database, or an empty registry on error.
+     * @return registry of known currencies
      */
-    private List<String> getCurrencyCodesSafe() {
+    private CurrencyRegistry getCurrencyRegistrySafe() {
         try {
-            return db.getAllCurrencyCodes();
+            return db.getCurrencyRegistry();
         } catch (Exception e) {
             LOGGER.error("Failed to fetch currency codes: {}", e.getMessage());
-            return new ArrayList<>();
+            return CurrencyRegistry.EMPTY;
         }
     }
 
@@ -182,18 +451,4 @@ public class CurrencyUpdater {
             return new HashMap<>();
         }
     }
-
-    /**
-     * Inserts or updates a rate in the database, logging any error.
-     * @param currency currency code
-     * @param date date
-     * @param rate exchange rate
-     */
-    private void upsertRateSafe(String currency, LocalDate date, double rate) {
-        try {
-            db.upsertRate(currency, date.toString(), rate);
-        } catch (Exception e) {
-            LOGGER.error("Failed to upsert rate for {} on {}: {}", currency, date, e.getMessage());
-        }
-    }
 }
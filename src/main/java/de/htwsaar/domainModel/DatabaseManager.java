@@ -1,276 +1,1595 @@
 package de.htwsaar.domainModel;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.*;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.sqlite.SQLiteConfig;
 
 /**
  * Handles all database operations for currency rates and names.
+ * <p>
+ * Rates are stored in long format: one {@code (currency_id, day, rate)} row per currency and day,
+ * where {@code day} is the epoch day. Databases using the legacy wide layout
+ * (one column per currency in {@code Exchange_Rate_Report}) are migrated on first use, after a copy of
+ * the file is saved next to it as {@code <file>.bak}.
  */
 public class DatabaseManager implements AutoCloseable {
     private String DB_URL = "jdbc:sqlite:data/Exchange_Rates.db";
-    private static final String EXCHANGE_RATE_TABLE = "Exchange_Rate_Report";
+    private static final String LEGACY_RATE_TABLE = "Exchange_Rate_Report";
+    private static final String CURRENCY_TABLE = "Currency";
+    private static final String RATE_TABLE = "Exchange_Rate";
+    private static final String RANGE_TABLE = "Currency_Valid_Range";
+    private static final String AGGREGATE_TABLE = "Exchange_Rate_Aggregate";
+    private static final String CHECKSUM_TABLE = "Exchange_Rate_Checksum";
+    private static final List<RateTier> AGGREGATE_TIERS = List.of(RateTier.WEEK, RateTier.MONTH, RateTier.YEAR);
+    private static final String VALID_RATE = validRate("rate");
     private static final String CURRENCY_NAMES_TABLE = "Currency_Names";
     private static final String ISO_DATE_COLUMN = "iso_date";
     private static final String DATE_COLUMN = "Date";
     private static final Logger LOGGER = LoggerFactory.getLogger(DatabaseManager.class);
+    private static final int UPSERT_CHUNK_DAYS = 64;
+    private static final int MIGRATION_BATCH_ROWS = 10_000;
+    private static final int MAX_LOGGED_REJECTS = 10;
+    private static final int READER_POOL_SIZE = 4;
+    private static final int BUSY_TIMEOUT_MS = 5_000;
+    private static final int STATEMENT_CACHE_SIZE = 32;
+    // Plain decimal number as the legacy tables store them; no hex, NaN or Infinity
+    private static final Pattern DECIMAL_NUMBER = Pattern.compile("[+-]?(\\d+\\.?\\d*|\\.\\d+)([eE][+-]?\\d+)?");
 
+    private static final String CREATE_CURRENCY_TABLE = "CREATE TABLE IF NOT EXISTS " + CURRENCY_TABLE + " (" +
+            "id INTEGER PRIMARY KEY, " +
+            "code TEXT NOT NULL UNIQUE)";
+    private static final String CREATE_RATE_TABLE = "CREATE TABLE IF NOT EXISTS " + RATE_TABLE + " (" +
+            "currency_id INTEGER NOT NULL REFERENCES " + CURRENCY_TABLE + "(id), " +
+            "day INTEGER NOT NULL, " +
+            "rate REAL NOT NULL CHECK (typeof(rate) = 'real'), " +
+            "PRIMARY KEY (currency_id, day)) WITHOUT ROWID";
+    private static final String CREATE_RATE_DAY_INDEX = "CREATE INDEX IF NOT EXISTS " + RATE_TABLE + "_day ON " +
+            RATE_TABLE + " (day)";
+    private static final String UPSERT_RATE = "INSERT INTO " + RATE_TABLE + " (currency_id, day, rate) VALUES (?, ?, ?) " +
+            "ON CONFLICT (currency_id, day) DO UPDATE SET rate = excluded.rate";
+
+    // Per-currency bounds and count of valid rates, kept current by the triggers below
+    private static final String CREATE_RANGE_TABLE = "CREATE TABLE IF NOT EXISTS " + RANGE_TABLE + " (" +
+            "currency_id INTEGER PRIMARY KEY REFERENCES " + CURRENCY_TABLE + "(id), " +
+            "first_day INTEGER NOT NULL, " +
+            "last_day INTEGER NOT NULL, " +
+            "valid_count INTEGER NOT NULL)";
+    private static final String FILL_RANGE_TABLE = "INSERT INTO " + RANGE_TABLE +
+            " (currency_id, first_day, last_day, valid_count) " +
+            "SELECT currency_id, MIN(day), MAX(day), COUNT(*) FROM " + RATE_TABLE + " WHERE " + VALID_RATE + " GROUP BY currency_id";
+    private static final String EXTEND_RANGE = "INSERT INTO " + RANGE_TABLE +
+            " (currency_id, first_day, last_day, valid_count) VALUES (NEW.currency_id, NEW.day, NEW.day, 1) " +
+            "ON CONFLICT (currency_id) DO UPDATE SET first_day = MIN(first_day, excluded.first_day), " +
+            "last_day = MAX(last_day, excluded.last_day), valid_count = valid_count + 1;";
+    private static final String RECOMPUTE_RANGE = "DELETE FROM " + RANGE_TABLE + " WHERE currency_id = OLD.currency_id; " +
+            "INSERT INTO " + RANGE_TABLE + " (currency_id, first_day, last_day, valid_count) " +
+            "SELECT currency_id, MIN(day), MAX(day), COUNT(*) FROM " + RATE_TABLE +
+            " WHERE currency_id = OLD.currency_id AND " + VALID_RATE + " GROUP BY currency_id;";
+    private static final String[] CREATE_RANGE_TRIGGERS = {
+            "CREATE TRIGGER IF NOT EXISTS " + RANGE_TABLE + "_insert AFTER INSERT ON " + RATE_TABLE +
+                    " WHEN " + validRate("NEW.rate") + " BEGIN " + EXTEND_RANGE + " END",
+            "CREATE TRIGGER IF NOT EXISTS " + RANGE_TABLE + "_validate AFTER UPDATE OF rate ON " + RATE_TABLE +
+                    " WHEN NOT (" + validRate("OLD.rate") + ") AND " + validRate("NEW.rate") +
+                    " BEGIN " + EXTEND_RANGE + " END",
+            "CREATE TRIGGER IF NOT EXISTS " + RANGE_TABLE + "_invalidate AFTER UPDATE OF rate ON " + RATE_TABLE +
+                    " WHEN " + validRate("OLD.rate") + " AND NOT (" + validRate("NEW.rate") + ")" +
+                    " BEGIN " + RECOMPUTE_RANGE + " END",
+            "CREATE TRIGGER IF NOT EXISTS " + RANGE_TABLE + "_delete AFTER DELETE ON " + RATE_TABLE +
+                    " WHEN " + validRate("OLD.rate") + " BEGIN " + RECOMPUTE_RANGE + " END"
+    };
+    private static final String[] RANGE_TRIGGER_NAMES = {
+            RANGE_TABLE + "_insert", RANGE_TABLE + "_validate", RANGE_TABLE + "_invalidate", RANGE_TABLE + "_delete"
+    };
+
+    // Sum of checksumTerm over all valid rates, modulo CHECKSUM_MODULUS, kept current by the triggers below
+    static final long CHECKSUM_MODULUS = 2_147_483_647L;
+    private static final long CHECKSUM_KEY_STRIDE = 100_003L;
+    private static final double CHECKSUM_SCALE = 1e8;
+    private static final String CREATE_CHECKSUM_TABLE = "CREATE TABLE IF NOT EXISTS " + CHECKSUM_TABLE + " (" +
+            "id INTEGER PRIMARY KEY CHECK (id = 0), " +
+            "checksum INTEGER NOT NULL)";
+    private static final String FILL_CHECKSUM_TABLE = "INSERT INTO " + CHECKSUM_TABLE + " (id, checksum) " +
+            "SELECT 0, COALESCE(SUM(" + checksumTerm("") + ") % " + CHECKSUM_MODULUS + ", 0) FROM " + RATE_TABLE +
+            " WHERE " + VALID_RATE;
+    private static final String[] CREATE_CHECKSUM_TRIGGERS = {
+            "CREATE TRIGGER IF NOT EXISTS " + CHECKSUM_TABLE + "_insert AFTER INSERT ON " + RATE_TABLE +
+                    " WHEN " + validRate("NEW.rate") + " BEGIN UPDATE " + CHECKSUM_TABLE +
+                    " SET checksum = (checksum + " + checksumTerm("NEW.") + ") % " + CHECKSUM_MODULUS + "; END",
+            "CREATE TRIGGER IF NOT EXISTS " + CHECKSUM_TABLE + "_update AFTER UPDATE ON " + RATE_TABLE +
+                    " BEGIN UPDATE " + CHECKSUM_TABLE + " SET checksum = ((checksum" +
+                    " + CASE WHEN " + validRate("NEW.rate") + " THEN " + checksumTerm("NEW.") + " ELSE 0 END" +
+                    " - CASE WHEN " + validRate("OLD.rate") + " THEN " + checksumTerm("OLD.") + " ELSE 0 END)" +
+                    " % " + CHECKSUM_MODULUS + " + " + CHECKSUM_MODULUS + ") % " + CHECKSUM_MODULUS + "; END",
+            "CREATE TRIGGER IF NOT EXISTS " + CHECKSUM_TABLE + "_delete AFTER DELETE ON " + RATE_TABLE +
+                    " WHEN " + validRate("OLD.rate") + " BEGIN UPDATE " + CHECKSUM_TABLE +
+                    " SET checksum = (checksum - " + checksumTerm("OLD.") + " + " + CHECKSUM_MODULUS + ") % " +
+                    CHECKSUM_MODULUS + "; END"
+    };
+    private static final String[] CHECKSUM_TRIGGER_NAMES = {
+            CHECKSUM_TABLE + "_insert", CHECKSUM_TABLE + "_update", CHECKSUM_TABLE + "_delete"
+    };
+
+    // Open/high/low/close and sum of the valid rates per tier, currency and calendar bucket
+    private static final String CREATE_AGGREGATE_TABLE = "CREATE TABLE IF NOT EXISTS " + AGGREGATE_TABLE + " (" +
+            "tier INTEGER NOT NULL, " +
+            "currency_id INTEGER NOT NULL REFERENCES " + CURRENCY_TABLE + "(id), " +
+            "bucket INTEGER NOT NULL, " +
+            "first_day INTEGER NOT NULL, " +
+            "last_day INTEGER NOT NULL, " +
+            "open REAL NOT NULL, " +
+            "high REAL NOT NULL, " +
+            "low REAL NOT NULL, " +
+            "close REAL NOT NULL, " +
+            "total REAL NOT NULL, " +
+            "valid_count INTEGER NOT NULL, " +
+            "PRIMARY KEY (tier, currency_id, bucket)) WITHOUT ROWID";
+    // Extends a bucket by a day before or after it; a day inside the bucket changes nothing and needs a recompute
+    private static final String MERGE_AGGREGATE = "INSERT INTO " + AGGREGATE_TABLE +
+            " (tier, currency_id, bucket, first_day, last_day, open, high, low, close, total, valid_count) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 1) " +
+            "ON CONFLICT (tier, currency_id, bucket) DO UPDATE SET " +
+            "open = CASE WHEN excluded.first_day < first_day THEN excluded.open ELSE open END, " +
+            "close = CASE WHEN excluded.last_day > last_day THEN excluded.close ELSE close END, " +
+            "first_day = MIN(first_day, excluded.first_day), " +
+            "last_day = MAX(last_day, excluded.last_day), " +
+            "high = MAX(high, excluded.high), " +
+            "low = MIN(low, excluded.low), " +
+            "total = total + excluded.total, " +
+            "valid_count = valid_count + 1 " +
+            "WHERE excluded.first_day > last_day OR excluded.last_day < first_day";
+
+    // The writer connection and its statements; every use is guarded by writeLock
     private Connection conn;
-    private List<String> cachedCurrencyCodes = null;
+    private StatementCache writerStatements;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    // Read-only connections, null until first used or if the database lives in memory
+    private volatile BlockingQueue<StatementCache> readers = null;
+    // Every reader ever opened, leased or not, so close() reaches them all
+    private final List<StatementCache> readerCaches = new CopyOnWriteArrayList<>();
+    private volatile boolean closed = false;
+    private volatile boolean schemaReady = false;
+    // Metadata snapshots are immutable and replaced as a whole, under metadataLock
+    private final Object metadataLock = new Object();
+    private volatile CurrencyRegistry registry = null;
+    private volatile ValidRange[] cachedValidRanges = null;
+    private long rangeVersion = 0;
+    // Incremented after every commit that changed rates
+    private final AtomicLong dataVersion = new AtomicLong();
+
+    /**
+     * Counters of the prepared statement caches.
+     * @param hits Statements reused from a cache
+     * @param misses Statements compiled because they were not cached
+     * @param evictions Statements closed to make room
+     */
+    public record StatementCacheStats(long hits, long misses, long evictions) {
+    }
+
+    /**
+     * Days with a valid rate for one currency.
+     * @param firstDay First epoch day with a valid rate
+     * @param lastDay Last epoch day with a valid rate
+     * @param count Number of days with a valid rate
+     */
+    public record ValidRange(long firstDay, long lastDay, int count) {
+        /**
+         * @return First date with a valid rate
+         */
+        public LocalDate firstDate() {
+            return LocalDate.ofEpochDay(firstDay);
+        }
+
+        /**
+         * @return Last date with a valid rate
+         */
+        public LocalDate lastDate() {
+            return LocalDate.ofEpochDay(lastDay);
+        }
+    }
 
     public DatabaseManager() {
+        connect();
+    }
+
+    public DatabaseManager(String DB_URL) {
+        this.DB_URL = DB_URL;
+        connect();
+    }
+
+    /**
+     * Opens the writer connection. File databases are switched to WAL, so the read-only
+     * connections keep reading the last committed state while the writer holds a transaction.
+     */
+    private void connect() {
         try {
             this.conn = DriverManager.getConnection(DB_URL);
-            DatabaseMetaData meta = this.conn.getMetaData();
+            this.writerStatements = new StatementCache(conn, STATEMENT_CACHE_SIZE);
+            if (!isInMemory()) {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("PRAGMA journal_mode = WAL");
+                    stmt.execute("PRAGMA busy_timeout = " + BUSY_TIMEOUT_MS);
+                }
+            }
             LOGGER.info("Database connection established.");
         } catch (SQLException e) {
             LOGGER.error("Failed to establish database connection: {}", e.getMessage());
         }
     }
 
-    public DatabaseManager(String DB_URL) {
-        this.DB_URL = DB_URL;
-        try {
-            this.conn = DriverManager.getConnection(DB_URL);
-            DatabaseMetaData meta = this.conn.getMetaData();
-            LOGGER.info("Database connection established.");
-        } catch (SQLException e) {
-            LOGGER.error("Failed to establish database connection: {}", e.getMessage());
+    /**
+     * @return True if every connection would open its own private in-memory database
+     */
+    private boolean isInMemory() {
+        return DB_URL.contains(":memory:") || DB_URL.contains("mode=memory");
+    }
+
+    /**
+     * Not thread-safe: callers must not use the connection while other threads use this manager.
+     * @return The writer connection
+     */
+    public Connection getConnection() {
+        return this.conn;
+    }
+
+    /**
+     * Connection borrowed for one read; closing the lease gives it back.
+     */
+    private final class ReadLease implements AutoCloseable {
+        private final StatementCache statements;
+        private final BlockingQueue<StatementCache> pool;
+
+        ReadLease(StatementCache statements, BlockingQueue<StatementCache> pool) {
+            this.statements = statements;
+            this.pool = pool;
+        }
+
+        /**
+         * @param sql SQL text
+         * @return Cached statement of the borrowed connection; must not be closed
+         * @throws SQLException If DB error
+         */
+        PreparedStatement prepare(String sql) throws SQLException {
+            return statements.prepare(sql);
+        }
+
+        @Override
+        public void close() {
+            if (pool != null) {
+                pool.offer(statements);
+            } else {
+                writeLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Borrows a read-only connection, waiting while all are in use. In-memory databases, and threads
+     * already holding the writer (which must see their own uncommitted rows), read on the writer connection.
+     * @return Lease to close after the read
+     * @throws SQLException If DB error, closed or interrupted while waiting
+     */
+    private ReadLease readLease() throws SQLException {
+        if (closed) {
+            throw new SQLException("Database manager is closed");
+        }
+        ensureSchema();
+        BlockingQueue<StatementCache> pool = readerPool();
+        if (pool == null || writeLock.isHeldByCurrentThread()) {
+            writeLock.lock();
+            return new ReadLease(writerStatements, null);
+        }
+        try {
+            return new ReadLease(pool.take(), pool);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+    }
+
+    /**
+     * @return Pool of read-only connections, opened on first use, or null for in-memory databases
+     * @throws SQLException If DB error
+     */
+    private BlockingQueue<StatementCache> readerPool() throws SQLException {
+        BlockingQueue<StatementCache> pool = readers;
+        if (pool != null || isInMemory()) {
+            return pool;
+        }
+        writeLock.lock();
+        try {
+            if (closed) {
+                throw new SQLException("Database manager is closed");
+            }
+            if (readers == null) {
+                SQLiteConfig config = new SQLiteConfig();
+                config.setReadOnly(true);
+                config.setBusyTimeout(BUSY_TIMEOUT_MS);
+                BlockingQueue<StatementCache> opened = new ArrayBlockingQueue<>(READER_POOL_SIZE);
+                for (int i = 0; i < READER_POOL_SIZE; i++) {
+                    Connection reader = DriverManager.getConnection(DB_URL, config.toProperties());
+                    StatementCache cache = new StatementCache(reader, STATEMENT_CACHE_SIZE);
+                    readerCaches.add(cache);
+                    opened.add(cache);
+                }
+                readers = opened;
+            }
+            return readers;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Creates the normalized tables on first use and moves the data of a legacy wide table into them.
+     * @throws SQLException If DB error or the migrated data does not match
+     */
+    private void ensureSchema() throws SQLException {
+        if (schemaReady) {
+            return;
+        }
+        writeLock.lock();
+        try {
+            if (!schemaReady) {
+                createSchema();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * @throws SQLException If DB error or the migrated data does not match
+     * @see #ensureSchema()
+     */
+    private void createSchema() throws SQLException {
+        boolean rateTableExists = tableExists(RATE_TABLE);
+        boolean rangeTableExists = rateTableExists && tableExists(RANGE_TABLE) && hasCurrentRangeTriggers();
+        boolean aggregateTableExists = rateTableExists && tableExists(AGGREGATE_TABLE);
+        boolean checksumTableExists = rateTableExists && tableExists(CHECKSUM_TABLE) && hasChecksumTriggers();
+        boolean untyped = rateTableExists && !hasTypedRates();
+        if (untyped || !rateTableExists && tableExists(LEGACY_RATE_TABLE)) {
+            backupBeforeMigration();
+        }
+        if (untyped) {
+            upgradeUntypedRates();
+            rangeTableExists = false;
+            aggregateTableExists = false;
+            checksumTableExists = false;
+        }
+        if (!rateTableExists) {
+            boolean migrated = false;
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate(CREATE_CURRENCY_TABLE);
+                stmt.executeUpdate(CREATE_RATE_TABLE);
+                stmt.executeUpdate(CREATE_RATE_DAY_INDEX);
+                if (tableExists(LEGACY_RATE_TABLE)) {
+                    migrateLegacyRates(stmt);
+                    migrated = true;
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+            if (migrated) {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.executeUpdate("VACUUM"); // Reclaim the pages of the dropped legacy table
+                }
+            }
+        }
+        if (!rangeTableExists) {
+            buildValidRangeIndex();
+        }
+        if (!aggregateTableExists) {
+            buildRatePyramid();
+        }
+        if (!checksumTableExists) {
+            buildRateChecksum();
+        }
+        schemaReady = true;
+    }
+
+    /**
+     * Copies a file database to {@code <file>.bak} before a migration drops or rewrites its tables, so the
+     * original can be restored. An existing backup is kept and the new one gets a timestamped name instead.
+     * Does nothing for in-memory databases.
+     * @throws SQLException If DB error or the backup cannot be written
+     */
+    private void backupBeforeMigration() throws SQLException {
+        String file = null;
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA database_list")) {
+            while (rs.next()) {
+                if ("main".equals(rs.getString("name"))) {
+                    file = rs.getString("file");
+                }
+            }
+        }
+        if (file == null || file.isEmpty()) {
+            return;
+        }
+        Path backup = Path.of(file + ".bak");
+        if (Files.exists(backup)) {
+            backup = Path.of(file + "." + System.currentTimeMillis() + ".bak");
+        }
+        // Consistent copy of the committed state, written before any table is dropped
+        try (PreparedStatement pstmt = conn.prepareStatement("VACUUM INTO ?")) {
+            pstmt.setString(1, backup.toString());
+            pstmt.executeUpdate();
+        }
+        LOGGER.info("Backed up the database to {} before migrating it.", backup);
+    }
+
+    /**
+     * @param rate Rate column or expression, e.g. {@code NEW.rate}
+     * @return SQL condition that is true for a valid rate, neither -1 nor 0
+     */
+    private static String validRate(String rate) {
+        return rate + " != -1 AND " + rate + " != 0";
+    }
+
+    /**
+     * Term of one valid rate in the rate checksum, as SQL. Same value as
+     * {@link #checksumTerm(int, long, double)}: the rate scaled to an integer, times a key of currency and day,
+     * both reduced modulo {@link #CHECKSUM_MODULUS} so the product fits in 62 bits.
+     * @param row Row prefix, e.g. {@code NEW.}, or empty for the table's own columns
+     * @return SQL expression in {@code [0, CHECKSUM_MODULUS)}
+     */
+    private static String checksumTerm(String row) {
+        String m = String.valueOf(CHECKSUM_MODULUS);
+        String value = "((CAST(" + row + "rate * " + CHECKSUM_SCALE + " AS INTEGER) % " + m + " + " + m + ") % " + m + ")";
+        String key = "(((" + row + "currency_id * " + CHECKSUM_KEY_STRIDE + " + " + row + "day) % " + m + " + " + m +
+                ") % " + m + " + 1)";
+        return "((" + value + " * " + key + ") % " + m + ")";
+    }
+
+    /**
+     * @param currencyId Currency id
+     * @param day Epoch day
+     * @param rate Valid rate
+     * @return Term of the rate in the checksum returned by {@link #getRateChecksum(long)}
+     */
+    static long checksumTerm(int currencyId, long day, double rate) {
+        long value = Math.floorMod((long) (rate * CHECKSUM_SCALE), CHECKSUM_MODULUS);
+        long key = Math.floorMod(currencyId * CHECKSUM_KEY_STRIDE + day, CHECKSUM_MODULUS) + 1;
+        return value * key % CHECKSUM_MODULUS;
+    }
+
+    /**
+     * @return True if all checksum triggers are installed
+     * @throws SQLException If DB error
+     */
+    private boolean hasChecksumTriggers() throws SQLException {
+        String sql = "SELECT COUNT(*) FROM sqlite_master WHERE type = 'trigger' AND name IN (?, ?, ?)";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < CHECKSUM_TRIGGER_NAMES.length; i++) {
+                pstmt.setString(i + 1, CHECKSUM_TRIGGER_NAMES[i]);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() && rs.getInt(1) == CHECKSUM_TRIGGER_NAMES.length;
+            }
+        }
+    }
+
+    /**
+     * @return True if the range triggers use the current definition of a valid rate; older ones
+     * treated 0 as valid, so their range table has to be rebuilt
+     * @throws SQLException If DB error
+     */
+    private boolean hasCurrentRangeTriggers() throws SQLException {
+        String sql = "SELECT sql FROM sqlite_master WHERE type = 'trigger' AND name = ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, RANGE_TRIGGER_NAMES[0]);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() && rs.getString(1).contains(validRate("NEW.rate"));
+            }
+        }
+    }
+
+    /**
+     * @return True if the rate table was created with the REAL type check
+     * @throws SQLException If DB error
+     */
+    private boolean hasTypedRates() throws SQLException {
+        String sql = "SELECT sql FROM sqlite_master WHERE type = 'table' AND name = ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, RATE_TABLE);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() && rs.getString(1).contains("typeof(rate)");
+            }
+        }
+    }
+
+    /**
+     * Rebuilds a rate table created before the REAL type check: every cell is parsed and copied as a
+     * REAL into a table with the check, cells that are not numbers are dropped. The derived tables are
+     * dropped too, since they may hold values computed from text cells. Runs in one transaction.
+     * @throws SQLException If DB error or the copy does not match
+     */
+    private void upgradeUntypedRates() throws SQLException {
+        String untypedTable = RATE_TABLE + "_Untyped";
+        String insertRate = "INSERT INTO " + RATE_TABLE + " (currency_id, day, rate) VALUES (?, ?, ?)";
+        long expected;
+        long copied = 0;
+        int rejected = 0;
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try (Statement stmt = conn.createStatement()) {
+            // Triggers and the day index follow the renamed table and are dropped with it
+            stmt.executeUpdate("ALTER TABLE " + RATE_TABLE + " RENAME TO " + untypedTable);
+            stmt.executeUpdate("DROP INDEX IF EXISTS " + RATE_TABLE + "_day");
+            stmt.executeUpdate(CREATE_RATE_TABLE);
+            stmt.executeUpdate(CREATE_RATE_DAY_INDEX);
+            try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + untypedTable)) {
+                expected = rs.next() ? rs.getLong(1) : 0;
+            }
+            try (Statement selectStmt = conn.createStatement();
+                 ResultSet rs = selectStmt.executeQuery("SELECT currency_id, day, rate FROM " + untypedTable);
+                 PreparedStatement insertStmt = conn.prepareStatement(insertRate)) {
+                while (rs.next()) {
+                    Object value = rs.getObject(3);
+                    double rate = parseRate(value);
+                    if (Double.isNaN(rate)) {
+                        logRejectedCell(rejected++, rs.getInt(1) + "/" + LocalDate.ofEpochDay(rs.getLong(2)), value);
+                        continue;
+                    }
+                    insertStmt.setInt(1, rs.getInt(1));
+                    insertStmt.setLong(2, rs.getLong(2));
+                    insertStmt.setDouble(3, rate);
+                    insertStmt.addBatch();
+                    if (++copied % MIGRATION_BATCH_ROWS == 0) {
+                        insertStmt.executeBatch();
+                    }
+                }
+                insertStmt.executeBatch();
+            }
+            if (copied + rejected != expected) {
+                throw new SQLException("Upgrade copied " + copied + " and rejected " + rejected +
+                        " rates, expected " + expected + ".");
+            }
+            stmt.executeUpdate("DROP TABLE " + untypedTable);
+            stmt.executeUpdate("DROP TABLE IF EXISTS " + RANGE_TABLE);
+            stmt.executeUpdate("DROP TABLE IF EXISTS " + AGGREGATE_TABLE);
+            conn.commit();
+            LOGGER.info("Stored {} rates as REAL, rejected {} non-numeric cells.", copied, rejected);
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Converts a stored cell to a rate. Numbers are taken as they are; text must be a plain decimal number.
+     * @param value Cell value as returned by {@link ResultSet#getObject(int)}
+     * @return Rate, or NaN if the cell is not numeric
+     */
+    static double parseRate(Object value) {
+        if (value instanceof Number number) {
+            return number.doubleValue();
+        }
+        if (value instanceof String text) {
+            String trimmed = text.trim();
+            if (DECIMAL_NUMBER.matcher(trimmed).matches()) {
+                return Double.parseDouble(trimmed);
+            }
+        }
+        return Double.NaN;
+    }
+
+    private static void logRejectedCell(int rejectedSoFar, String cell, Object value) {
+        if (rejectedSoFar < MAX_LOGGED_REJECTS) {
+            LOGGER.warn("Skipping non-numeric rate {} = '{}'.", cell, value);
+        }
+    }
+
+    /**
+     * Fills the weekly, monthly and yearly aggregate tiers from the rate table once.
+     * Afterwards the upsert methods keep them current.
+     * @throws SQLException If DB error
+     */
+    private void buildRatePyramid() throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate(CREATE_AGGREGATE_TABLE);
+            int buckets = 0;
+            for (RateTier tier : AGGREGATE_TIERS) {
+                buckets += stmt.executeUpdate(aggregateInsertSql(tier.id(), tier.bucketSql("day"), VALID_RATE));
+            }
+            conn.commit();
+            LOGGER.info("Built {} aggregate buckets.", buckets);
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * @param tierId Tier id to store
+     * @param bucketExpr SQL expression of the bucket start
+     * @param where Filter on the rate table
+     * @return Statement aggregating the filtered valid rates per currency and bucket into the aggregate table
+     */
+    private static String aggregateInsertSql(int tierId, String bucketExpr, String where) {
+        return "INSERT INTO " + AGGREGATE_TABLE +
+                " (tier, currency_id, bucket, first_day, last_day, open, high, low, close, total, valid_count) " +
+                "SELECT " + tierId + ", g.currency_id, g.bucket, g.first_day, g.last_day, " +
+                "(SELECT rate FROM " + RATE_TABLE + " WHERE currency_id = g.currency_id AND day = g.first_day), " +
+                "g.high, g.low, " +
+                "(SELECT rate FROM " + RATE_TABLE + " WHERE currency_id = g.currency_id AND day = g.last_day), " +
+                "g.total, g.valid_count FROM (" +
+                "SELECT currency_id, " + bucketExpr + " AS bucket, MIN(day) AS first_day, MAX(day) AS last_day, " +
+                "MAX(rate) AS high, MIN(rate) AS low, SUM(rate) AS total, COUNT(*) AS valid_count " +
+                "FROM " + RATE_TABLE + " WHERE " + where + " GROUP BY currency_id, bucket) g";
+    }
+
+    /**
+     * Computes the rate checksum from the rate table once and installs the triggers that keep it current
+     * on every insert, update and delete, whichever connection writes.
+     * @throws SQLException If DB error
+     */
+    private void buildRateChecksum() throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try (Statement stmt = conn.createStatement()) {
+            for (String trigger : CHECKSUM_TRIGGER_NAMES) {
+                stmt.executeUpdate("DROP TRIGGER IF EXISTS " + trigger);
+            }
+            stmt.executeUpdate(CREATE_CHECKSUM_TABLE);
+            stmt.executeUpdate("DELETE FROM " + CHECKSUM_TABLE);
+            stmt.executeUpdate(FILL_CHECKSUM_TABLE);
+            for (String trigger : CREATE_CHECKSUM_TRIGGERS) {
+                stmt.executeUpdate(trigger);
+            }
+            conn.commit();
+            LOGGER.info("Built the rate checksum.");
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Fills the valid-range side table from the rate table once and installs the triggers that keep it
+     * current on every insert, update and delete, whichever connection writes.
+     * @throws SQLException If DB error
+     */
+    private void buildValidRangeIndex() throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try (Statement stmt = conn.createStatement()) {
+            for (String trigger : RANGE_TRIGGER_NAMES) {
+                stmt.executeUpdate("DROP TRIGGER IF EXISTS " + trigger);
+            }
+            stmt.executeUpdate(CREATE_RANGE_TABLE);
+            stmt.executeUpdate("DELETE FROM " + RANGE_TABLE);
+            int currencies = stmt.executeUpdate(FILL_RANGE_TABLE);
+            for (String trigger : CREATE_RANGE_TRIGGERS) {
+                stmt.executeUpdate(trigger);
+            }
+            conn.commit();
+            LOGGER.info("Built valid date ranges for {} currencies.", currencies);
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Copies every non-null cell of the legacy wide table into the long-format table as a REAL,
+     * streaming the legacy rows once. Text cells are parsed strictly; cells that are not numbers are
+     * logged and skipped. Verifies that every cell was either copied or rejected and that all stored
+     * rates are REALs, then drops the legacy table. Must run inside a transaction.
+     * @param stmt Statement on the migration transaction
+     * @throws SQLException If DB error or the verification fails
+     */
+    private void migrateLegacyRates(Statement stmt) throws SQLException {
+        List<String> legacyColumns = new ArrayList<>();
+        try (ResultSet rs = stmt.executeQuery("PRAGMA table_info(" + LEGACY_RATE_TABLE + ")")) {
+            while (rs.next()) {
+                String columnName = rs.getString("name");
+                if (columnName.equalsIgnoreCase(ISO_DATE_COLUMN) || columnName.equalsIgnoreCase(DATE_COLUMN)) {
+                    continue;
+                }
+                legacyColumns.add(columnName);
+            }
+        }
+        Collections.sort(legacyColumns);
+
+        int[] ids = new int[legacyColumns.size()];
+        StringBuilder select = new StringBuilder("SELECT ").append(ISO_DATE_COLUMN);
+        long expected = 0;
+        String insertCurrency = "INSERT INTO " + CURRENCY_TABLE + " (code) VALUES (?)";
+        try (PreparedStatement currencyStmt = conn.prepareStatement(insertCurrency, Statement.RETURN_GENERATED_KEYS)) {
+            for (int i = 0; i < ids.length; i++) {
+                String column = legacyColumns.get(i);
+                currencyStmt.setString(1, column);
+                currencyStmt.executeUpdate();
+                try (ResultSet keys = currencyStmt.getGeneratedKeys()) {
+                    keys.next();
+                    ids[i] = keys.getInt(1);
+                }
+                select.append(", \"").append(column).append('"');
+                try (ResultSet rs = stmt.executeQuery("SELECT COUNT(\"" + column + "\") FROM " + LEGACY_RATE_TABLE +
+                        " WHERE " + ISO_DATE_COLUMN + " IS NOT NULL")) {
+                    expected += rs.next() ? rs.getLong(1) : 0;
+                }
+            }
+        }
+        select.append(" FROM ").append(LEGACY_RATE_TABLE).append(" WHERE ").append(ISO_DATE_COLUMN).append(" IS NOT NULL");
+
+        long copied = 0;
+        int rejected = 0;
+        String insertRate = "INSERT INTO " + RATE_TABLE + " (currency_id, day, rate) VALUES (?, ?, ?)";
+        try (Statement selectStmt = conn.createStatement();
+             ResultSet rs = selectStmt.executeQuery(select.toString());
+             PreparedStatement insertStmt = conn.prepareStatement(insertRate)) {
+            while (rs.next()) {
+                String isoDate = rs.getString(1);
+                long day = LocalDate.parse(isoDate).toEpochDay();
+                for (int i = 0; i < ids.length; i++) {
+                    Object value = rs.getObject(i + 2);
+                    if (value == null) {
+                        continue;
+                    }
+                    double rate = parseRate(value);
+                    if (Double.isNaN(rate)) {
+                        logRejectedCell(rejected++, legacyColumns.get(i) + "/" + isoDate, value);
+                        continue;
+                    }
+                    insertStmt.setInt(1, ids[i]);
+                    insertStmt.setLong(2, day);
+                    insertStmt.setDouble(3, rate);
+                    insertStmt.addBatch();
+                    if (++copied % MIGRATION_BATCH_ROWS == 0) {
+                        insertStmt.executeBatch();
+                    }
+                }
+            }
+            insertStmt.executeBatch();
+        }
+
+        if (copied + rejected != expected) {
+            throw new SQLException("Migration copied " + copied + " and rejected " + rejected +
+                    " rates, expected " + expected + ".");
+        }
+        try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*), SUM(typeof(rate) != 'real') FROM " + RATE_TABLE)) {
+            if (!rs.next() || rs.getLong(1) != copied || rs.getLong(2) != 0) {
+                throw new SQLException("Migrated rate table does not hold " + copied + " REAL rates.");
+            }
+        }
+        stmt.executeUpdate("DROP TABLE " + LEGACY_RATE_TABLE);
+        LOGGER.info("Migrated {} rates for {} currencies to the normalized rate table.", copied, legacyColumns.size());
+        if (rejected > 0) {
+            LOGGER.warn("Skipped {} non-numeric legacy cells.", rejected);
+        }
+    }
+
+    /**
+     * @param table Table name
+     * @return True if the table exists
+     * @throws SQLException If DB error
+     */
+    private boolean tableExists(String table) throws SQLException {
+        String sql = "SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, table);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    /**
+     * @param currency Currency code
+     * @return Currency id
+     * @throws SQLException If DB error
+     * @throws IllegalArgumentException If invalid currency
+     */
+    private int validateCurrencyCode(String currency) throws SQLException {
+        return getCurrencyRegistry().id(currency);
+    }
+
+    /**
+     * @param currencyId Currency id
+     * @throws SQLException If DB error
+     * @throws IllegalArgumentException If invalid id
+     */
+    private void validateCurrencyId(int currencyId) throws SQLException {
+        if (!getCurrencyRegistry().contains(currencyId)) {
+            throw new IllegalArgumentException("Invalid currency id: " + currencyId);
+        }
+    }
+
+    /**
+     * @return Registry of all currencies, loaded on first use and extended by {@link #addCurrency(String)}
+     * @throws SQLException If DB error
+     */
+    public CurrencyRegistry getCurrencyRegistry() throws SQLException {
+        CurrencyRegistry current = registry;
+        if (current == null) {
+            current = publishRegistry(fetchCurrencyRegistry());
+        }
+        return current;
+    }
+
+    /**
+     * Publishes a registry read from the database unless a larger one was published meanwhile;
+     * currencies are never removed, so the larger registry is the newer one.
+     * @param loaded Registry read from the database
+     * @return Current registry
+     */
+    private CurrencyRegistry publishRegistry(CurrencyRegistry loaded) {
+        synchronized (metadataLock) {
+            CurrencyRegistry current = registry;
+            if (current == null || loaded.size() > current.size()) {
+                registry = loaded;
+                return loaded;
+            }
+            return current;
+        }
+    }
+
+    /**
+     * @return Registry read from the currency table
+     * @throws SQLException If DB error
+     */
+    private CurrencyRegistry fetchCurrencyRegistry() throws SQLException {
+        Map<String, Integer> currencies = new HashMap<>();
+        String sql = "SELECT id, code FROM " + CURRENCY_TABLE;
+        try (ReadLease lease = readLease();
+             ResultSet rs = lease.prepare(sql).executeQuery()) {
+            while (rs.next()) {
+                currencies.put(rs.getString("code"), rs.getInt("id"));
+            }
+        }
+        return CurrencyRegistry.of(currencies);
+    }
+
+    /**
+     * Reloads the registry, so currencies added through other connections are seen.
+     * @return Sorted list of currency codes
+     * @throws SQLException If DB error
+     */
+    public List<String> getAllCurrencyCodes() throws SQLException {
+        return new ArrayList<>(publishRegistry(fetchCurrencyRegistry()).codes());
+    }
+
+    /**
+     * @return Map of code to full name
+     * @throws SQLException If DB error
+     */
+    public Map<String, String> getCurrencyNames() throws SQLException {
+        Map<String, String> currencyNames = new LinkedHashMap<>();
+        String sql = "SELECT code, full_name FROM " + CURRENCY_NAMES_TABLE;
+        try (ReadLease lease = readLease();
+             ResultSet rs = lease.prepare(sql).executeQuery()) {
+            while (rs.next()) {
+                String code = rs.getString("code");
+                String fullName = rs.getString("full_name");
+                currencyNames.put(code, fullName);
+            }
+        }
+        return currencyNames;
+    }
+
+    /**
+     * @param currency Currency code
+     * @return First date with valid rate or null
+     * @throws SQLException If DB error
+     */
+    public String getFirstValidDate(String currency) throws SQLException {
+        ValidRange range = getValidRange(currency);
+        return range != null ? range.firstDate().toString() : null;
+    }
+
+    /**
+     * @param currency Currency code
+     * @return Last date with valid rate or null
+     * @throws SQLException If DB error
+     */
+    public String getLastValidDate(String currency) throws SQLException {
+        ValidRange range = getValidRange(currency);
+        return range != null ? range.lastDate().toString() : null;
+    }
+
+    /**
+     * Looks up the valid date range from the side table, cached until the next write.
+     * @param currency Currency code
+     * @return Range of days with a valid rate, or null if the currency has none
+     * @throws SQLException If DB error
+     * @throws IllegalArgumentException If invalid currency
+     */
+    public ValidRange getValidRange(String currency) throws SQLException {
+        return getValidRange(validateCurrencyCode(currency));
+    }
+
+    /**
+     * @param currencyId Currency id
+     * @return Range of days with a valid rate, or null if the currency has none
+     * @throws SQLException If DB error
+     * @throws IllegalArgumentException If invalid id
+     * @see #getValidRange(String)
+     */
+    public ValidRange getValidRange(int currencyId) throws SQLException {
+        validateCurrencyId(currencyId);
+        ValidRange[] ranges = cachedValidRanges;
+        if (ranges == null) {
+            long version;
+            synchronized (metadataLock) {
+                version = rangeVersion;
+            }
+            ranges = fetchAllValidRanges();
+            synchronized (metadataLock) {
+                // A write committed during the read may have made these ranges stale
+                if (version == rangeVersion) {
+                    cachedValidRanges = ranges;
+                }
+            }
+        }
+        return currencyId < ranges.length ? ranges[currencyId] : null;
+    }
+
+    /**
+     * @return Valid ranges indexed by currency id
+     * @throws SQLException If DB error
+     */
+    private ValidRange[] fetchAllValidRanges() throws SQLException {
+        ValidRange[] ranges = new ValidRange[getCurrencyRegistry().idLimit()];
+        String sql = "SELECT currency_id, first_day, last_day, valid_count FROM " + RANGE_TABLE;
+        try (ReadLease lease = readLease();
+             ResultSet rs = lease.prepare(sql).executeQuery()) {
+            while (rs.next()) {
+                int currencyId = rs.getInt(1);
+                if (currencyId < ranges.length) {
+                    ranges[currencyId] = new ValidRange(rs.getLong(2), rs.getLong(3), rs.getInt(4));
+                }
+            }
+        }
+        return ranges;
+    }
+
+    /**
+     * Data epoch for caches of derived results: it changes after every commit of new or changed rates,
+     * so a result computed under an older epoch may be stale.
+     * @return Current data epoch
+     */
+    public long getDataVersion() {
+        return dataVersion.get();
+    }
+
+    /**
+     * @return Latest date in DB (ISO)
+     * @throws SQLException If DB error or empty
+     */
+    public String getLatestDate() throws SQLException {
+        return LocalDate.ofEpochDay(getLatestDay()).toString();
+    }
+
+    /**
+     * @return Latest epoch day in DB
+     * @throws SQLException If DB error or empty
+     */
+    public long getLatestDay() throws SQLException {
+        String sql = "SELECT MAX(day) FROM " + RATE_TABLE;
+        try (ReadLease lease = readLease();
+             ResultSet rs = lease.prepare(sql).executeQuery()) {
+            if (rs.next()) {
+                long day = rs.getLong(1);
+                if (!rs.wasNull()) {
+                    return day;
+                }
+            }
+        }
+        throw new SQLException("No data found in the database.");
+    }
+
+    /**
+     * Checksum of the valid rates up to a day: the sum of {@link #checksumTerm(int, long, double)} over them,
+     * modulo {@link #CHECKSUM_MODULUS}. Any added, removed or changed rate changes it (barring collisions).
+     * Read from the trigger-maintained total minus the rows after the day, so it stays cheap when the day
+     * is recent.
+     * @param untilDay Last epoch day included
+     * @return Checksum in {@code [0, CHECKSUM_MODULUS)}
+     * @throws SQLException If DB error
+     */
+    public long getRateChecksum(long untilDay) throws SQLException {
+        String sql = "SELECT (SELECT checksum FROM " + CHECKSUM_TABLE + "), " +
+                "(SELECT COALESCE(SUM(" + checksumTerm("") + ") % " + CHECKSUM_MODULUS + ", 0) FROM " + RATE_TABLE +
+                " WHERE day > ? AND " + VALID_RATE + ")";
+        try (ReadLease lease = readLease()) {
+            PreparedStatement stmt = lease.prepare(sql);
+            stmt.setLong(1, untilDay);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? Math.floorMod(rs.getLong(1) - rs.getLong(2), CHECKSUM_MODULUS) : 0;
+            }
+        }
+    }
+
+    /**
+     * @param from Source currency
+     * @param to Target currency
+     * @return Latest exchange rate (to/from)
+     * @throws SQLException If DB error or missing data
+     * @throws IllegalArgumentException If invalid currency
+     */
+    public double getLatestExchangeRate(String from, String to) throws SQLException {
+        return getLatestExchangeRate(validateCurrencyCode(from), validateCurrencyCode(to));
+    }
+
+    /**
+     * @param fromId Source currency id
+     * @param toId Target currency id
+     * @return Exchange rate (to/from) from the latest valid rate of each currency, which may be of different days
+     * @throws SQLException If DB error or no valid rate
+     * @throws IllegalArgumentException If invalid id
+     */
+    public double getLatestExchangeRate(int fromId, int toId) throws SQLException {
+        validateCurrencyId(fromId);
+        validateCurrencyId(toId);
+
+        if (fromId == toId) {
+            return 1.0;
+        }
+
+        // Latest valid rate of each side, found backwards through the primary key
+        String latestValid = "SELECT currency_id, rate FROM " + RATE_TABLE +
+                " WHERE currency_id = ? AND " + VALID_RATE + " ORDER BY day DESC LIMIT 1";
+        String sql = "SELECT * FROM (" + latestValid + ") UNION ALL SELECT * FROM (" + latestValid + ")";
+        double fromRate = Double.NaN;
+        double toRate = Double.NaN;
+        try (ReadLease lease = readLease()) {
+            PreparedStatement pstmt = lease.prepare(sql);
+            pstmt.setInt(1, fromId);
+            pstmt.setInt(2, toId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    if (rs.getInt(1) == fromId) {
+                        fromRate = rs.getDouble(2);
+                    } else {
+                        toRate = rs.getDouble(2);
+                    }
+                }
+            }
+        }
+        if (Double.isNaN(fromRate) || Double.isNaN(toRate)) {
+            throw new SQLException("No valid rate found for the specified currencies.");
+        }
+        return toRate / fromRate;
+    }
+
+    /**
+     * @param currency Currency code
+     * @param startDate Inclusive start date (ISO)
+     * @param endDate Inclusive end date (ISO)
+     * @param maxPoints Max points in result
+     * @return Map of date (ISO) to rate
+     * @throws SQLException If DB error
+     * @throws IllegalArgumentException If invalid currency
+     */
+    public Map<String, Double> getDownsampledRates(String currency, String startDate, String endDate, int maxPoints) throws SQLException {
+        RateSeries series = getDownsampledRates(currency, LocalDate.parse(startDate).toEpochDay(),
+                LocalDate.parse(endDate).toEpochDay(), maxPoints);
+        Map<String, Double> result = new LinkedHashMap<>();
+        for (int i = 0; i < series.size(); i++) {
+            result.put(LocalDate.ofEpochDay(series.days()[i]).toString(), series.rates()[i]);
+        }
+        return result;
+    }
+
+    /**
+     * @param currency Currency code
+     * @param startDay Inclusive start epoch day
+     * @param endDay Inclusive end epoch day
+     * @param maxPoints Max points in result
+     * @return Every n-th rate of the period in ascending day order, skipping zero rates
+     * @throws SQLException If DB error
+     * @throws IllegalArgumentException If invalid currency
+     */
+    public RateSeries getDownsampledRates(String currency, long startDay, long endDay, int maxPoints) throws SQLException {
+        int currencyId = validateCurrencyCode(currency);
+
+        String countSql = "SELECT COUNT(*) FROM " + RATE_TABLE +
+                " WHERE currency_id = ? AND day >= ? AND day <= ?";
+        int totalRows;
+        try (ReadLease lease = readLease()) {
+            PreparedStatement countStmt = lease.prepare(countSql);
+            countStmt.setInt(1, currencyId);
+            countStmt.setLong(2, startDay);
+            countStmt.setLong(3, endDay);
+            try (ResultSet rs = countStmt.executeQuery()) {
+                totalRows = rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+        if (totalRows == 0) {
+            return new RateSeries(new int[0], new double[0]);
+        }
+
+        int step = (int) Math.ceil((double) totalRows / maxPoints);
+        if (step < 1) step = 1;
+
+        String sql = "SELECT day, rate FROM (" +
+                "  SELECT day, rate, ROW_NUMBER() OVER (ORDER BY day) AS rn " +
+                "  FROM " + RATE_TABLE +
+                "  WHERE currency_id = ? AND day >= ? AND day <= ?" +
+                ") WHERE (rn - 1) % ? = 0 ORDER BY day ASC";
+
+        int capacity = Math.min(totalRows, maxPoints) + 1;
+        int[] days = new int[capacity];
+        double[] rates = new double[capacity];
+        int count = 0;
+        try (ReadLease lease = readLease()) {
+            PreparedStatement stmt = lease.prepare(sql);
+            stmt.setInt(1, currencyId);
+            stmt.setLong(2, startDay);
+            stmt.setLong(3, endDay);
+            stmt.setInt(4, step);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    double value = rs.getDouble(2);
+                    if (rs.wasNull() || value == 0.0) {
+                        continue;
+                    }
+                    if (count == days.length) {
+                        days = Arrays.copyOf(days, count * 2);
+                        rates = Arrays.copyOf(rates, count * 2);
+                    }
+                    days[count] = rs.getInt(1);
+                    rates[count++] = value;
+                }
+            }
+        }
+        return new RateSeries(Arrays.copyOf(days, count), Arrays.copyOf(rates, count));
+    }
+
+    /**
+     * Aggregate of the valid rates of one currency in one bucket.
+     * @param bucket First epoch day of the bucket
+     * @param open Rate on the first valid day
+     * @param high Highest rate
+     * @param low Lowest rate
+     * @param close Rate on the last valid day
+     * @param mean Mean rate
+     * @param count Number of valid days
+     */
+    public record RateAggregate(long bucket, double open, double high, double low, double close, double mean,
+                                int count) {
+        /**
+         * @return First date of the bucket
+         */
+        public LocalDate date() {
+            return LocalDate.ofEpochDay(bucket);
         }
     }
 
-    public Connection getConnection() {
-        return this.conn;
-    }
-
     /**
+     * Reads the buckets of a tier that overlap the given period. The {@link RateTier#DAY} tier reads
+     * the valid daily rates, each as its own bucket.
      * @param currency Currency code
+     * @param tier Resolution
+     * @param startDate Inclusive start date (ISO)
+     * @param endDate Inclusive end date (ISO)
+     * @return Buckets in ascending order
      * @throws SQLException If DB error
      * @throws IllegalArgumentException If invalid currency
      */
-    private void validateCurrencyCode(String currency) throws SQLException {
-        if (cachedCurrencyCodes == null) {
-            cachedCurrencyCodes = fetchAllCurrencyCodes();
-        }
-        if (!cachedCurrencyCodes.contains(currency)) {
-            throw new IllegalArgumentException("Invalid currency column: " + currency);
-        }
+    public List<RateAggregate> getAggregatedRates(String currency, RateTier tier, String startDate, String endDate)
+            throws SQLException {
+        return getAggregatedRates(currency, tier, LocalDate.parse(startDate).toEpochDay(),
+                LocalDate.parse(endDate).toEpochDay());
     }
 
     /**
-     * @return Sorted list of currency codes
+     * Reads the buckets of a tier that overlap the given period.
+     * @param currency Currency code
+     * @param tier Resolution
+     * @param startDay Inclusive start epoch day
+     * @param endDay Inclusive end epoch day
+     * @return Buckets in ascending order
      * @throws SQLException If DB error
+     * @throws IllegalArgumentException If invalid currency
+     * @see #getAggregatedRates(String, RateTier, String, String)
      */
-    private List<String> fetchAllCurrencyCodes() throws SQLException {
-        List<String> currencies = new ArrayList<>();
-        String sql = "PRAGMA table_info(" + EXCHANGE_RATE_TABLE + ")";
-        try (Statement stmt = this.conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-            while (rs.next()) {
-                String columnName = rs.getString("name");
-                if (columnName.equalsIgnoreCase(ISO_DATE_COLUMN) || columnName.equalsIgnoreCase(DATE_COLUMN)) {
-                    continue;
+    public List<RateAggregate> getAggregatedRates(String currency, RateTier tier, long startDay, long endDay)
+            throws SQLException {
+        int currencyId = validateCurrencyCode(currency);
+        long startBucket = tier.bucketStart(startDay);
+
+        List<RateAggregate> result = new ArrayList<>();
+        if (tier == RateTier.DAY) {
+            String sql = "SELECT day, rate FROM " + RATE_TABLE +
+                    " WHERE currency_id = ? AND day >= ? AND day <= ? AND " + VALID_RATE + " ORDER BY day ASC";
+            try (ReadLease lease = readLease()) {
+                PreparedStatement stmt = lease.prepare(sql);
+                stmt.setInt(1, currencyId);
+                stmt.setLong(2, startBucket);
+                stmt.setLong(3, endDay);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        double rate = rs.getDouble(2);
+                        result.add(new RateAggregate(rs.getLong(1), rate, rate, rate, rate, rate, 1));
+                    }
+                }
+            }
+            return result;
+        }
+
+        String sql = "SELECT bucket, open, high, low, close, total, valid_count FROM " + AGGREGATE_TABLE +
+                " WHERE tier = ? AND currency_id = ? AND bucket >= ? AND bucket <= ? ORDER BY bucket ASC";
+        try (ReadLease lease = readLease()) {
+            PreparedStatement stmt = lease.prepare(sql);
+            stmt.setInt(1, tier.id());
+            stmt.setInt(2, currencyId);
+            stmt.setLong(3, startBucket);
+            stmt.setLong(4, endDay);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    int count = rs.getInt(7);
+                    result.add(new RateAggregate(rs.getLong(1), rs.getDouble(2), rs.getDouble(3), rs.getDouble(4),
+                            rs.getDouble(5), rs.getDouble(6) / count, count));
                 }
-                currencies.add(columnName);
             }
         }
-        return currencies.stream().sorted().collect(Collectors.toList());
+        return result;
     }
 
     /**
-     * @return Sorted list of currency codes
+     * Reads the cross rate (to/from) of a pair in one scan: the rows of both currencies are joined by day
+     * (or bucket) and divided in SQL, keeping only days where both rates are valid.
+     * For aggregate tiers the rate is the ratio of the bucket means.
+     * @param from Source currency
+     * @param to Target currency
+     * @param tier Resolution
+     * @param startDate Inclusive start date (ISO)
+     * @param endDate Inclusive end date (ISO)
+     * @return Cross rates in ascending day order
      * @throws SQLException If DB error
+     * @throws IllegalArgumentException If invalid currency
      */
-    public List<String> getAllCurrencyCodes() throws SQLException {
-        cachedCurrencyCodes = fetchAllCurrencyCodes();
-        return new ArrayList<>(cachedCurrencyCodes);
+    public RateSeries getCrossRateSeries(String from, String to, RateTier tier, String startDate, String endDate)
+            throws SQLException {
+        return getCrossRateSeries(from, to, tier, LocalDate.parse(startDate).toEpochDay(),
+                LocalDate.parse(endDate).toEpochDay());
     }
 
     /**
-     * @return Map of code to full name
+     * Reads the cross rate (to/from) of a pair in one scan.
+     * @param from Source currency
+     * @param to Target currency
+     * @param tier Resolution
+     * @param startDay Inclusive start epoch day
+     * @param endDay Inclusive end epoch day
+     * @return Cross rates in ascending day order
      * @throws SQLException If DB error
+     * @throws IllegalArgumentException If invalid currency
+     * @see #getCrossRateSeries(String, String, RateTier, String, String)
      */
-    public Map<String, String> getCurrencyNames() throws SQLException {
-        Map<String, String> currencyNames = new LinkedHashMap<>();
-        String sql = "SELECT code, full_name FROM " + CURRENCY_NAMES_TABLE;
-        try (Statement stmt = this.conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-            while (rs.next()) {
-                String code = rs.getString("code");
-                String fullName = rs.getString("full_name");
-                currencyNames.put(code, fullName);
-            }
-        }
-        return currencyNames;
+    public RateSeries getCrossRateSeries(String from, String to, RateTier tier, long startDay, long endDay)
+            throws SQLException {
+        return getCrossRateSeries(validateCurrencyCode(from), validateCurrencyCode(to), tier, startDay, endDay);
     }
 
     /**
-     * @param currency Currency code
-     * @return First date with valid rate or null
+     * Reads the cross rate (to/from) of a pair in one scan.
+     * @param fromId Source currency id
+     * @param toId Target currency id
+     * @param tier Resolution
+     * @param startDay Inclusive start epoch day
+     * @param endDay Inclusive end epoch day
+     * @return Cross rates in ascending day order
      * @throws SQLException If DB error
+     * @throws IllegalArgumentException If invalid id
+     * @see #getCrossRateSeries(String, String, RateTier, String, String)
      */
-    public String getFirstValidDate(String currency) throws SQLException {
-        validateCurrencyCode(currency);
-        String sql = "SELECT " + ISO_DATE_COLUMN + " FROM " + EXCHANGE_RATE_TABLE +
-                " WHERE \"" + currency + "\" IS NOT NULL AND \"" + currency + "\" != -1 " +
-                "ORDER BY " + ISO_DATE_COLUMN + " ASC LIMIT 1";
-        try (Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-            if (rs.next()) {
-                return rs.getString(ISO_DATE_COLUMN);
+    public RateSeries getCrossRateSeries(int fromId, int toId, RateTier tier, long startDay, long endDay)
+            throws SQLException {
+        validateCurrencyId(fromId);
+        validateCurrencyId(toId);
+        long startBucket = tier.bucketStart(startDay);
+
+        String sql;
+        if (tier == RateTier.DAY) {
+            sql = "SELECT f.day, t.rate / f.rate FROM " + RATE_TABLE + " f JOIN " + RATE_TABLE + " t " +
+                    "ON t.currency_id = ? AND t.day = f.day " +
+                    "WHERE f.currency_id = ? AND f.day >= ? AND f.day <= ? " +
+                    "AND " + validRate("f.rate") + " AND " + validRate("t.rate") + " ORDER BY f.day ASC";
+        } else {
+            sql = "SELECT f.bucket, (t.total / t.valid_count) / (f.total / f.valid_count) FROM " + AGGREGATE_TABLE + " f " +
+                    "JOIN " + AGGREGATE_TABLE + " t ON t.tier = f.tier AND t.currency_id = ? AND t.bucket = f.bucket " +
+                    "WHERE f.tier = " + tier.id() + " AND f.currency_id = ? AND f.bucket >= ? AND f.bucket <= ? " +
+                    "ORDER BY f.bucket ASC";
+        }
+
+        int[] days = new int[64];
+        double[] rates = new double[64];
+        int count = 0;
+        try (ReadLease lease = readLease()) {
+            PreparedStatement stmt = lease.prepare(sql);
+            stmt.setInt(1, toId);
+            stmt.setInt(2, fromId);
+            stmt.setLong(3, startBucket);
+            stmt.setLong(4, endDay);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    if (count == days.length) {
+                        days = Arrays.copyOf(days, count * 2);
+                        rates = Arrays.copyOf(rates, count * 2);
+                    }
+                    days[count] = rs.getInt(1);
+                    rates[count++] = rs.getDouble(2);
+                }
             }
         }
-        return null;
+        return new RateSeries(Arrays.copyOf(days, count), Arrays.copyOf(rates, count));
     }
 
     /**
-     * @param currency Currency code
-     * @return Last date with valid rate or null
+     * @param currencyId Currency id
+     * @param startDay Inclusive start epoch day
+     * @param endDay Inclusive end epoch day
+     * @return Valid daily rates of the currency in ascending day order, skipping -1 and 0
      * @throws SQLException If DB error
+     * @throws IllegalArgumentException If invalid id
      */
-    public String getLastValidDate(String currency) throws SQLException {
-        validateCurrencyCode(currency);
-        String sql = "SELECT " + ISO_DATE_COLUMN + " FROM " + EXCHANGE_RATE_TABLE +
-                " WHERE \"" + currency + "\" IS NOT NULL AND \"" + currency + "\" != -1 " +
-                "ORDER BY " + ISO_DATE_COLUMN + " DESC LIMIT 1";
-        try (Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-            if (rs.next()) {
-                return rs.getString(ISO_DATE_COLUMN);
+    public RateSeries getRateSeries(int currencyId, long startDay, long endDay) throws SQLException {
+        validateCurrencyId(currencyId);
+        String sql = "SELECT day, rate FROM " + RATE_TABLE +
+                " WHERE currency_id = ? AND day >= ? AND day <= ? AND " + VALID_RATE + " ORDER BY day ASC";
+
+        int[] days = new int[64];
+        double[] rates = new double[64];
+        int count = 0;
+        try (ReadLease lease = readLease()) {
+            PreparedStatement stmt = lease.prepare(sql);
+            stmt.setInt(1, currencyId);
+            stmt.setLong(2, startDay);
+            stmt.setLong(3, endDay);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    if (count == days.length) {
+                        days = Arrays.copyOf(days, count * 2);
+                        rates = Arrays.copyOf(rates, count * 2);
+                    }
+                    days[count] = rs.getInt(1);
+                    rates[count++] = rs.getDouble(2);
+                }
             }
         }
-        return null;
+        return new RateSeries(Arrays.copyOf(days, count), Arrays.copyOf(rates, count));
     }
 
     /**
-     * @return Latest date in DB
-     * @throws SQLException If DB error or empty
+     * Reads the rates of several currencies over a period into a columnar block with one SQL pass.
+     * Every day on which at least one of the currencies has a row becomes a block row.
+     * @param currencies Currency codes; duplicates are ignored
+     * @param startDate Inclusive start date (ISO)
+     * @param endDate Inclusive end date (ISO)
+     * @return Block with a NaN wherever a rate is missing, -1 or 0
+     * @throws SQLException If DB error
+     * @throws IllegalArgumentException If invalid currency
      */
-    public String getLatestDate() throws SQLException {
-        String sql = "SELECT " + ISO_DATE_COLUMN + " FROM " + EXCHANGE_RATE_TABLE +
-                " ORDER BY " + ISO_DATE_COLUMN + " DESC LIMIT 1";
-        try (Statement stmt = this.conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-            if (rs.next()) {
-                return rs.getString(ISO_DATE_COLUMN);
-            } else {
-                throw new SQLException("No data found in the database.");
-            }
-        }
+    public RateBlock getRateBlock(Collection<String> currencies, String startDate, String endDate) throws SQLException {
+        return getRateBlock(currencies, LocalDate.parse(startDate).toEpochDay(), LocalDate.parse(endDate).toEpochDay());
     }
 
     /**
-     * @param from Source currency
-     * @param to Target currency
-     * @return Latest exchange rate (to/from)
-     * @throws SQLException If DB error or missing data
+     * Reads the rates of several currencies over a period into a columnar block with one SQL pass.
+     * @param currencies Currency codes; duplicates are ignored
+     * @param startDay Inclusive start epoch day
+     * @param endDay Inclusive end epoch day
+     * @return Block with a NaN wherever a rate is missing, -1 or 0
+     * @throws SQLException If DB error
      * @throws IllegalArgumentException If invalid currency
+     * @see #getRateBlock(Collection, String, String)
      */
-    public double getLatestExchangeRate(String from, String to) throws SQLException {
-        validateCurrencyCode(from);
-        validateCurrencyCode(to);
-
-        if (from.equals(to)) {
-            return 1.0;
+    public RateBlock getRateBlock(Collection<String> currencies, long startDay, long endDay) throws SQLException {
+        List<String> codes = new ArrayList<>(new LinkedHashSet<>(currencies));
+        if (codes.isEmpty()) {
+            return new RateBlock(codes, new int[0], new double[0][]);
+        }
+        int[] ids = new int[codes.size()];
+        int maxId = 0;
+        StringBuilder placeholders = new StringBuilder();
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = validateCurrencyCode(codes.get(i));
+            maxId = Math.max(maxId, ids[i]);
+            placeholders.append(i == 0 ? "?" : ", ?");
+        }
+        int[] columnOfId = new int[maxId + 1];
+        for (int i = 0; i < ids.length; i++) {
+            columnOfId[ids[i]] = i;
         }
 
-        String sql = "SELECT \"" + from + "\", \"" + to + "\" FROM " + EXCHANGE_RATE_TABLE +
-                " ORDER BY " + ISO_DATE_COLUMN + " DESC LIMIT 1";
-        try (Statement stmt = this.conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-            if (rs.next()) {
-                double fromRate = rs.getDouble(from);
-                double toRate = rs.getDouble(to);
-                if (fromRate == 0) {
-                    throw new SQLException("From rate is zero.");
+        String sql = "SELECT day, currency_id, rate FROM " + RATE_TABLE +
+                " WHERE day >= ? AND day <= ? AND currency_id IN (" + placeholders + ") ORDER BY day ASC";
+        int capacity = 256;
+        int[] days = new int[capacity];
+        double[][] columns = new double[codes.size()][capacity];
+        int rows = 0;
+        try (ReadLease lease = readLease()) {
+            PreparedStatement stmt = lease.prepare(sql);
+            stmt.setLong(1, startDay);
+            stmt.setLong(2, endDay);
+            for (int i = 0; i < ids.length; i++) {
+                stmt.setInt(i + 3, ids[i]);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    int day = rs.getInt(1);
+                    if (rows == 0 || days[rows - 1] != day) {
+                        if (rows == capacity) {
+                            capacity *= 2;
+                            days = Arrays.copyOf(days, capacity);
+                            for (int c = 0; c < columns.length; c++) {
+                                columns[c] = Arrays.copyOf(columns[c], capacity);
+                            }
+                        }
+                        days[rows] = day;
+                        for (double[] column : columns) {
+                            column[rows] = Double.NaN;
+                        }
+                        rows++;
+                    }
+                    double value = rs.getDouble(3);
+                    columns[columnOfId[rs.getInt(2)]][rows - 1] = value == -1 || value == 0.0 ? Double.NaN : value;
                 }
-                return toRate / fromRate;
-            } else {
-                throw new SQLException("No data found for the specified currencies.");
             }
         }
+        for (int c = 0; c < columns.length; c++) {
+            columns[c] = Arrays.copyOf(columns[c], rows);
+        }
+        return new RateBlock(codes, Arrays.copyOf(days, rows), columns);
     }
 
     /**
-     * @param currency Currency code
-     * @param startDate Inclusive start date (ISO)
-     * @param endDate Inclusive end date (ISO)
-     * @param maxPoints Max points in result
-     * @return Map of date to rate
+     * Receives one row of rates per day, aligned to the requested currency list.
+     */
+    @FunctionalInterface
+    public interface RateRowConsumer {
+        /**
+         * @param day Epoch day of the row
+         * @param rates Rates aligned to the currency list; NaN if missing. Reused between calls.
+         */
+        void accept(long day, double[] rates);
+    }
+
+    /**
+     * Streams all rows after the given date in ascending date order.
+     * @param afterDate Exclusive lower bound (ISO), or null for all rows
+     * @param currencies Currency codes to read
+     * @param consumer Row consumer
      * @throws SQLException If DB error
      * @throws IllegalArgumentException If invalid currency
      */
-    public Map<String, Double> getDownsampledRates(String currency, String startDate, String endDate, int maxPoints) throws SQLException {
-        validateCurrencyCode(currency);
+    public void scanRates(String afterDate, List<String> currencies, RateRowConsumer consumer) throws SQLException {
+        scanRates(afterDate != null ? LocalDate.parse(afterDate).toEpochDay() : Long.MIN_VALUE, currencies, consumer);
+    }
 
-        String countSql = "SELECT COUNT(*) FROM " + EXCHANGE_RATE_TABLE +
-                " WHERE " + ISO_DATE_COLUMN + " >= ? AND " + ISO_DATE_COLUMN + " <= ?";
-        int totalRows;
-        try (PreparedStatement countStmt = conn.prepareStatement(countSql)) {
-            countStmt.setString(1, startDate);
-            countStmt.setString(2, endDate);
-            try (ResultSet rs = countStmt.executeQuery()) {
-                totalRows = rs.next() ? rs.getInt(1) : 0;
-            }
-        }
-        if (totalRows == 0) {
-            return Collections.emptyMap();
+    /**
+     * Streams all rows after the given day in ascending day order.
+     * @param afterDay Exclusive lower bound (epoch day), or {@link Long#MIN_VALUE} for all rows
+     * @param currencies Currency codes to read
+     * @param consumer Row consumer
+     * @throws SQLException If DB error
+     * @throws IllegalArgumentException If invalid currency
+     */
+    public void scanRates(long afterDay, List<String> currencies, RateRowConsumer consumer) throws SQLException {
+        int[] ids = new int[currencies.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = validateCurrencyCode(currencies.get(i));
         }
+        scanRates(afterDay, ids, consumer);
+    }
 
-        int step = (int) Math.ceil((double) totalRows / maxPoints);
-        if (step < 1) step = 1;
-
-        String sql = "SELECT " + ISO_DATE_COLUMN + ", \"" + currency + "\" FROM (" +
-                "  SELECT " + ISO_DATE_COLUMN + ", \"" + currency + "\", " +
-                "         ROW_NUMBER() OVER (ORDER BY " + ISO_DATE_COLUMN + ") AS rn " +
-                "  FROM " + EXCHANGE_RATE_TABLE +
-                "  WHERE " + ISO_DATE_COLUMN + " >= ? AND " + ISO_DATE_COLUMN + " <= ?" +
-                ") WHERE (rn - 1) % ? = 0 ORDER BY " + ISO_DATE_COLUMN + " ASC";
+    /**
+     * Streams all rows after the given day in ascending day order.
+     * @param afterDay Exclusive lower bound (epoch day), or {@link Long#MIN_VALUE} for all rows
+     * @param currencyIds Currency ids to read
+     * @param consumer Row consumer; rates are aligned to the ids
+     * @throws SQLException If DB error
+     * @throws IllegalArgumentException If invalid id
+     */
+    public void scanRates(long afterDay, int[] currencyIds, RateRowConsumer consumer) throws SQLException {
+        int[] ids = currencyIds;
+        int maxId = 0;
+        for (int id : ids) {
+            validateCurrencyId(id);
+            maxId = Math.max(maxId, id);
+        }
+        int[] positionOfId = new int[maxId + 1];
+        Arrays.fill(positionOfId, -1);
+        for (int i = 0; i < ids.length; i++) {
+            positionOfId[ids[i]] = i;
+        }
 
-        Map<String, Double> result = new LinkedHashMap<>();
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, startDate);
-            stmt.setString(2, endDate);
-            stmt.setInt(3, step);
+        String sql = "SELECT day, currency_id, rate FROM " + RATE_TABLE +
+                " WHERE day > ? ORDER BY day ASC";
+        double[] row = new double[ids.length];
+        Arrays.fill(row, Double.NaN);
+        try (ReadLease lease = readLease()) {
+            PreparedStatement stmt = lease.prepare(sql);
+            stmt.setLong(1, afterDay);
             try (ResultSet rs = stmt.executeQuery()) {
+                long currentDay = Long.MIN_VALUE;
                 while (rs.next()) {
-                    String date = rs.getString(ISO_DATE_COLUMN);
-                    double value = rs.getDouble(currency);
-                    if (rs.wasNull() || value == 0.0) {
+                    long day = rs.getLong(1);
+                    if (day != currentDay) {
+                        if (currentDay != Long.MIN_VALUE) {
+                            consumer.accept(currentDay, row);
+                            Arrays.fill(row, Double.NaN);
+                        }
+                        currentDay = day;
+                    }
+                    int currencyId = rs.getInt(2);
+                    int position = currencyId < positionOfId.length ? positionOfId[currencyId] : -1;
+                    if (position < 0) {
                         continue;
                     }
-                    result.put(date, value);
+                    double value = rs.getDouble(3);
+                    row[position] = value == -1 || value == 0.0 ? Double.NaN : value;
+                }
+                if (currentDay != Long.MIN_VALUE) {
+                    consumer.accept(currentDay, row);
                 }
             }
         }
-        return result;
     }
 
     /**
+     * Registers a currency; the registry returned by {@link #getCurrencyRegistry()} is replaced by a copy
+     * that includes it.
      * @param currency Currency code
+     * @return Id of the currency
      * @throws SQLException If DB error
      */
-    public void addCurrency(String currency) throws SQLException {
-        getAllCurrencyCodes(); // Refresh cache
-        if (cachedCurrencyCodes.contains(currency)) {
-            LOGGER.info("Currency {} already exists.", currency);
-            return;
-        }
-        String sql = "ALTER TABLE " + EXCHANGE_RATE_TABLE + " ADD COLUMN \"" + currency + "\" REAL";
-        try (Statement stmt = this.conn.createStatement()) {
-            stmt.executeUpdate(sql);
-            LOGGER.info("Added new currency column: {}", currency);
-            cachedCurrencyCodes = null; // Invalidate cache
-        } catch (SQLException e) {
-            if (e.getMessage().toLowerCase().contains("duplicate column name")) {
+    public int addCurrency(String currency) throws SQLException {
+        CurrencyRegistry current = getCurrencyRegistry();
+        String sql = "INSERT OR IGNORE INTO " + CURRENCY_TABLE + " (code) VALUES (?)";
+        writeLock.lock();
+        try (PreparedStatement pstmt = this.conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            pstmt.setString(1, currency);
+            if (pstmt.executeUpdate() == 0) {
                 LOGGER.info("Currency {} already exists.", currency);
-            } else {
-                throw e;
+                if (!current.contains(currency)) {
+                    current = publishRegistry(fetchCurrencyRegistry()); // Added through another connection
+                }
+                return current.id(currency);
             }
+            int id;
+            try (ResultSet keys = pstmt.getGeneratedKeys()) {
+                keys.next();
+                id = keys.getInt(1);
+            }
+            synchronized (metadataLock) {
+                registry = registry.with(currency, id);
+            }
+            LOGGER.info("Added new currency: {}", currency);
+            return id;
+        } finally {
+            writeLock.unlock();
         }
     }
 
@@ -281,11 +1600,15 @@ public class DatabaseManager implements AutoCloseable {
      */
     public void addCurrencyName(String code, String fullName) throws SQLException {
         String sql = "INSERT OR IGNORE INTO " + CURRENCY_NAMES_TABLE + " (code, full_name) VALUES (?, ?)";
-        try (PreparedStatement pstmt = this.conn.prepareStatement(sql)) {
+        writeLock.lock();
+        try {
+            PreparedStatement pstmt = writerStatements.prepare(sql);
             pstmt.setString(1, code);
             pstmt.setString(2, fullName);
             pstmt.executeUpdate();
             LOGGER.info("Added currency name: {} ({})", code, fullName);
+        } finally {
+            writeLock.unlock();
         }
     }
 
@@ -297,43 +1620,339 @@ public class DatabaseManager implements AutoCloseable {
      * @throws IllegalArgumentException If invalid currency
      */
     public void upsertRate(String currency, String dateIso, double rate) throws SQLException {
-        validateCurrencyCode(currency);
+        upsertRate(currency, LocalDate.parse(dateIso).toEpochDay(), rate);
+    }
 
-        LocalDate localDate = LocalDate.parse(dateIso);
-        String dateText = localDate.format(DateTimeFormatter.ofPattern("MMM-dd-yyyy", Locale.ENGLISH));
+    /**
+     * @param currency Currency code
+     * @param day Epoch day
+     * @param rate Exchange rate
+     * @throws SQLException If DB error
+     * @throws IllegalArgumentException If invalid currency
+     */
+    public void upsertRate(String currency, long day, double rate) throws SQLException {
+        upsertRate(validateCurrencyCode(currency), day, rate);
+    }
 
-        String insertSql = "INSERT OR IGNORE INTO " + EXCHANGE_RATE_TABLE +
-                " (" + ISO_DATE_COLUMN + ", " + DATE_COLUMN + ") VALUES (?, ?)";
-        try (PreparedStatement pstmt = this.conn.prepareStatement(insertSql)) {
-            pstmt.setString(1, dateIso);
-            pstmt.setString(2, dateText);
-            pstmt.executeUpdate();
+    /**
+     * @param currencyId Currency id
+     * @param day Epoch day
+     * @param rate Exchange rate
+     * @throws SQLException If DB error
+     * @throws IllegalArgumentException If invalid id
+     */
+    public void upsertRate(int currencyId, long day, double rate) throws SQLException {
+        upsertRates(day, new int[]{currencyId}, new double[]{rate});
+        LOGGER.info("Upserted rate for {} on {}: {}", registry.code(currencyId), LocalDate.ofEpochDay(day), rate);
+    }
+
+    /**
+     * Writes all rates of one day in a single transaction.
+     * @param dateIso ISO date
+     * @param rates Map of currency code to rate
+     * @throws SQLException If DB error
+     * @throws IllegalArgumentException If invalid currency
+     */
+    public void upsertRates(String dateIso, Map<String, Double> rates) throws SQLException {
+        upsertRates(LocalDate.parse(dateIso).toEpochDay(), rates);
+    }
+
+    /**
+     * Writes all rates of one day in a single transaction.
+     * @param day Epoch day
+     * @param rates Map of currency code to rate
+     * @throws SQLException If DB error
+     * @throws IllegalArgumentException If invalid currency
+     */
+    public void upsertRates(long day, Map<String, Double> rates) throws SQLException {
+        upsertRates(new long[]{day}, List.of(rates));
+    }
+
+    /**
+     * Writes all rates of one day in a single transaction.
+     * @param day Epoch day
+     * @param currencyIds Currency ids
+     * @param rates Rates aligned to the ids
+     * @throws SQLException If DB error
+     * @throws IllegalArgumentException If invalid id or the arrays differ in length; nothing is written
+     */
+    public void upsertRates(long day, int[] currencyIds, double[] rates) throws SQLException {
+        upsertRates(new long[]{day}, new int[][]{currencyIds}, new double[][]{rates});
+    }
+
+    /**
+     * Writes the rates of many days with one reused prepared statement and JDBC batching.
+     * Each chunk of {@value #UPSERT_CHUNK_DAYS} days is committed as one transaction together with
+     * the aggregate buckets it touches.
+     * @param ratesByDate Map of date to (currency code to rate), written in iteration order
+     * @throws SQLException If DB error; the failing chunk is rolled back
+     * @throws IllegalArgumentException If invalid currency; nothing is written
+     */
+    public void upsertRates(Map<LocalDate, Map<String, Double>> ratesByDate) throws SQLException {
+        long[] days = new long[ratesByDate.size()];
+        int i = 0;
+        for (LocalDate date : ratesByDate.keySet()) {
+            days[i++] = date.toEpochDay();
         }
+        upsertRates(days, new ArrayList<>(ratesByDate.values()));
+    }
 
-        String updateSql = "UPDATE " + EXCHANGE_RATE_TABLE +
-                " SET \"" + currency + "\" = ? WHERE " + ISO_DATE_COLUMN + " = ?";
-        try (PreparedStatement pstmt = this.conn.prepareStatement(updateSql)) {
-            pstmt.setDouble(1, rate);
-            pstmt.setString(2, dateIso);
-            pstmt.executeUpdate();
-            LOGGER.info("Upserted rate for {} on {}: {}", currency, dateIso, rate);
+    /**
+     * Resolves the currency codes of all days before anything is written.
+     * @param days Epoch days, written in array order
+     * @param ratesByDay Map of currency code to rate for each day
+     * @throws SQLException If DB error; the failing chunk is rolled back
+     * @throws IllegalArgumentException If invalid currency; nothing is written
+     * @see #upsertRates(Map)
+     */
+    private void upsertRates(long[] days, List<Map<String, Double>> ratesByDay) throws SQLException {
+        CurrencyRegistry current = getCurrencyRegistry();
+        int[][] ids = new int[days.length][];
+        double[][] rates = new double[days.length][];
+        for (int d = 0; d < days.length; d++) {
+            Map<String, Double> day = ratesByDay.get(d);
+            ids[d] = new int[day.size()];
+            rates[d] = new double[day.size()];
+            int i = 0;
+            for (Map.Entry<String, Double> rate : day.entrySet()) {
+                ids[d][i] = current.id(rate.getKey());
+                rates[d][i++] = rate.getValue();
+            }
+        }
+        upsertRates(days, ids, rates);
+    }
+
+    /**
+     * Writes the rates of many days by currency id; see {@link #upsertRates(Map)} for the chunking.
+     * @param days Epoch days, written in array order
+     * @param currencyIds Currency ids for each day
+     * @param rates Rates for each day, aligned to the ids
+     * @throws SQLException If DB error; the failing chunk is rolled back
+     * @throws IllegalArgumentException If invalid id or the arrays differ in length; nothing is written
+     */
+    public void upsertRates(long[] days, int[][] currencyIds, double[][] rates) throws SQLException {
+        if (currencyIds.length != days.length || rates.length != days.length) {
+            throw new IllegalArgumentException("Days, currency ids and rates differ in length");
         }
+        for (int d = 0; d < days.length; d++) {
+            if (currencyIds[d].length != rates[d].length) {
+                throw new IllegalArgumentException("Currency ids and rates differ in length");
+            }
+            for (int currencyId : currencyIds[d]) {
+                validateCurrencyId(currencyId);
+            }
+        }
+        ensureSchema();
+        writeLock.lock();
+        try {
+            writeRates(days, currencyIds, rates);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Must be called holding the write lock.
+     * @see #upsertRates(long[], int[][], double[][])
+     */
+    private void writeRates(long[] days, int[][] currencyIds, double[][] rates) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        PreparedStatement pstmt = writerStatements.prepare(UPSERT_RATE);
+        PreparedStatement mergeStmt = writerStatements.prepare(MERGE_AGGREGATE);
+        try {
+            AggregateBatch aggregates = new AggregateBatch(mergeStmt);
+            int daysInChunk = 0;
+            int rowsInChunk = 0;
+            for (int d = 0; d < days.length; d++) {
+                long epochDay = days[d];
+                for (int i = 0; i < currencyIds[d].length; i++) {
+                    pstmt.setInt(1, currencyIds[d][i]);
+                    pstmt.setLong(2, epochDay);
+                    pstmt.setDouble(3, rates[d][i]);
+                    pstmt.addBatch();
+                    aggregates.add(currencyIds[d][i], epochDay, rates[d][i]);
+                    rowsInChunk++;
+                }
+                if (++daysInChunk == UPSERT_CHUNK_DAYS) {
+                    commitBatch(pstmt, aggregates, rowsInChunk);
+                    daysInChunk = 0;
+                    rowsInChunk = 0;
+                }
+            }
+            if (rowsInChunk > 0) {
+                commitBatch(pstmt, aggregates, rowsInChunk);
+            }
+        } catch (SQLException e) {
+            conn.rollback();
+            pstmt.clearBatch(); // The statements stay cached, so no failed rows may linger in them
+            mergeStmt.clearBatch();
+            throw e;
+        } finally {
+            invalidateValidRanges();
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Drops the cached valid ranges; reads that started before this call will not publish theirs.
+     */
+    private void invalidateValidRanges() {
+        synchronized (metadataLock) {
+            rangeVersion++;
+            cachedValidRanges = null;
+        }
+    }
+
+    /**
+     * @param pstmt Statement holding the pending batch
+     * @param aggregates Aggregate updates of the batch
+     * @param rows Number of rows in the batch
+     * @throws SQLException If DB error
+     */
+    private void commitBatch(PreparedStatement pstmt, AggregateBatch aggregates, int rows) throws SQLException {
+        pstmt.executeBatch();
+        aggregates.execute();
+        conn.commit();
+        dataVersion.incrementAndGet();
+        invalidateValidRanges(); // Readers see the committed days while a long backfill continues
+        LOGGER.info("Upserted {} rates.", rows);
+    }
+
+    /**
+     * Collects the aggregate updates of one upsert chunk. Days appended or prepended to a bucket are
+     * merged in O(1); buckets where a day inside was replaced or invalidated are recomputed from the rate table.
+     */
+    private final class AggregateBatch {
+        private record BucketKey(RateTier tier, int currencyId, long bucket) {
+        }
+
+        private final PreparedStatement mergeStmt;
+        private final List<BucketKey> merged = new ArrayList<>();
+        private final Set<BucketKey> recompute = new LinkedHashSet<>();
+
+        AggregateBatch(PreparedStatement mergeStmt) {
+            this.mergeStmt = mergeStmt;
+        }
+
+        void add(int currencyId, long day, double rate) throws SQLException {
+            for (RateTier tier : AGGREGATE_TIERS) {
+                BucketKey key = new BucketKey(tier, currencyId, tier.bucketStart(day));
+                if (rate == -1 || rate == 0) {
+                    recompute.add(key);
+                    continue;
+                }
+                mergeStmt.setInt(1, tier.id());
+                mergeStmt.setInt(2, currencyId);
+                mergeStmt.setLong(3, key.bucket());
+                mergeStmt.setLong(4, day);
+                mergeStmt.setLong(5, day);
+                for (int i = 6; i <= 10; i++) {
+                    mergeStmt.setDouble(i, rate);
+                }
+                mergeStmt.addBatch();
+                merged.add(key);
+            }
+        }
+
+        void execute() throws SQLException {
+            int[] counts = mergeStmt.executeBatch();
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] == 0) {
+                    recompute.add(merged.get(i));
+                }
+            }
+            if (!recompute.isEmpty()) {
+                recomputeBuckets();
+            }
+            merged.clear();
+            recompute.clear();
+        }
+
+        private void recomputeBuckets() throws SQLException {
+            String deleteSql = "DELETE FROM " + AGGREGATE_TABLE + " WHERE tier = ? AND currency_id = ? AND bucket = ?";
+            PreparedStatement delete = writerStatements.prepare(deleteSql);
+            for (BucketKey key : recompute) {
+                delete.setInt(1, key.tier().id());
+                delete.setInt(2, key.currencyId());
+                delete.setLong(3, key.bucket());
+                delete.addBatch();
+            }
+            delete.executeBatch();
+            Map<RateTier, PreparedStatement> inserts = new EnumMap<>(RateTier.class);
+            for (BucketKey key : recompute) {
+                PreparedStatement insert = inserts.get(key.tier());
+                if (insert == null) {
+                    insert = writerStatements.prepare(aggregateInsertSql(key.tier().id(), "?",
+                            "currency_id = ? AND day BETWEEN ? AND ? AND " + VALID_RATE));
+                    inserts.put(key.tier(), insert);
+                }
+                insert.setLong(1, key.bucket());
+                insert.setInt(2, key.currencyId());
+                insert.setLong(3, key.bucket());
+                insert.setLong(4, key.tier().bucketEnd(key.bucket()));
+                insert.addBatch();
+            }
+            for (PreparedStatement insert : inserts.values()) {
+                insert.executeBatch();
+            }
+        }
+    }
+
+    /**
+     * @return Hit, miss and eviction counts of the prepared statement caches of all connections
+     */
+    public StatementCacheStats getStatementCacheStats() {
+        List<StatementCache> caches = new ArrayList<>();
+        if (writerStatements != null) {
+            caches.add(writerStatements);
+        }
+        caches.addAll(readerCaches); // Counts of leased caches may lag behind a running read
+        long hits = 0;
+        long misses = 0;
+        long evictions = 0;
+        for (StatementCache cache : caches) {
+            hits += cache.hits();
+            misses += cache.misses();
+            evictions += cache.evictions();
+        }
+        return new StatementCacheStats(hits, misses, evictions);
     }
 
     /**
-     * Closes the database connection.
+     * Closes the database connection and every reader connection, including leased ones; reads
+     * started afterwards throw an SQLException.
      */
     @Override
     public void close() {
-        if (this.conn != null) {
-            try {
-                this.conn.close();
-                LOGGER.info("Database connection closed.");
-            } catch (SQLException e) {
-                LOGGER.error("Error closing connection: {}", e.getMessage());
-            } finally {
-                this.conn = null;
+        closed = true;
+        writeLock.lock();
+        try {
+            for (StatementCache reader : readerCaches) {
+                reader.close();
+                try {
+                    reader.connection().close();
+                } catch (SQLException e) {
+                    LOGGER.error("Error closing reader connection: {}", e.getMessage());
+                }
+            }
+            readerCaches.clear();
+            if (writerStatements != null) {
+                writerStatements.close();
+                writerStatements = null;
+            }
+            if (this.conn != null) {
+                try {
+                    this.conn.close();
+                    LOGGER.info("Database connection closed.");
+                } catch (SQLException e) {
+                    LOGGER.error("Error closing connection: {}", e.getMessage());
+                } finally {
+                    this.conn = null;
+                }
             }
+        } finally {
+            writeLock.unlock();
         }
     }
 }
@@ -0,0 +1,16 @@
+package de.htwsaar.domainModel;
+
+/**
+ * Reduces a rate series to a number of points a chart can draw, working directly on the primitive arrays.
+ */
+@FunctionalInterface
+public interface Downsampler {
+
+    /**
+     * @param series Series to reduce
+     * @param maxPoints Maximum number of points in the result
+     * @return Series with at most maxPoints points; the input itself if it is already small enough
+     * @throws IllegalArgumentException If maxPoints is less than 1
+     */
+    RateSeries downsample(RateSeries series, int maxPoints);
+}
@@ -0,0 +1,79 @@
+package de.htwsaar.domainModel;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Values derived from the database per currency id, loaded on first use and kept until the data epoch
+ * ({@link DatabaseManager#getDataVersion()}) changes; then all of them are dropped at once. Thread-safe.
+ * @param <V> Cached value, immutable
+ */
+final class EpochCache<V> {
+    private final DatabaseManager db;
+    private volatile Generation<V> generation = new Generation<>(Long.MIN_VALUE);
+
+    /**
+     * Loads the value of one currency on a miss.
+     * @param <V> Loaded value
+     */
+    @FunctionalInterface
+    interface Loader<V> {
+        V load(int currencyId) throws SQLException;
+    }
+
+    private record Generation<V>(long epoch, Map<Integer, V> values) {
+        Generation(long epoch) {
+            this(epoch, new ConcurrentHashMap<>());
+        }
+    }
+
+    /**
+     * @param db Database whose data epoch keys the values
+     */
+    EpochCache(DatabaseManager db) {
+        this.db = db;
+    }
+
+    /**
+     * @param currencyId Currency id
+     * @param loader Called on a miss; concurrent misses may both load, and the first value stored wins
+     * @return Value of the currency for the current data epoch
+     * @throws SQLException If the loader fails
+     */
+    V get(int currencyId, Loader<V> loader) throws SQLException {
+        Generation<V> current = currentGeneration();
+        V value = current.values().get(currencyId);
+        if (value == null) {
+            value = loader.load(currencyId);
+            V raced = current.values().putIfAbsent(currencyId, value);
+            if (raced != null) {
+                value = raced;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * @return Values of the epoch last read through {@link #get(int, Loader)}; a live view
+     */
+    Collection<V> values() {
+        return generation.values().values();
+    }
+
+    private Generation<V> currentGeneration() {
+        long epoch = db.getDataVersion();
+        Generation<V> current = generation;
+        if (current.epoch() != epoch) {
+            synchronized (this) {
+                current = generation;
+                if (current.epoch() != epoch) {
+                    current = new Generation<>(epoch);
+                    generation = current;
+                }
+            }
+        }
+        return current;
+    }
+}
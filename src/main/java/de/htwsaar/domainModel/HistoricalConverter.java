@@ -0,0 +1,126 @@
+package de.htwsaar.domainModel;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Converts amounts at the rates valid on a given date, on top of {@link DatabaseManager}.
+ * <p>
+ * Each side of a pair uses its last valid rate on or before the date, so weekends, holidays and
+ * -1/NULL gaps fall back to the previous valid day. The valid days of a currency are read once into a
+ * sorted primitive array, held in an {@link EpochCache}, and searched with a binary search. Thread-safe.
+ */
+public class HistoricalConverter {
+    private final DatabaseManager db;
+    private final EpochCache<RateSeries> histories;
+
+    /**
+     * @param db Database the rates are read from
+     */
+    public HistoricalConverter(DatabaseManager db) {
+        this.db = db;
+        this.histories = new EpochCache<>(db);
+    }
+
+    /**
+     * @param from Source currency
+     * @param to Target currency
+     * @param date As-of date
+     * @return Exchange rate (to/from) as of the date, or NaN if either currency has no valid rate on or before it
+     * @throws SQLException If DB error
+     * @throws IllegalArgumentException If invalid currency
+     */
+    public double getRate(String from, String to, LocalDate date) throws SQLException {
+        CurrencyRegistry registry = db.getCurrencyRegistry();
+        return getRate(registry.id(from), registry.id(to), date.toEpochDay());
+    }
+
+    /**
+     * @param fromId Source currency id
+     * @param toId Target currency id
+     * @param day As-of epoch day
+     * @return Exchange rate (to/from) as of the day, or NaN if either currency has no valid rate on or before it
+     * @throws SQLException If DB error
+     * @throws IllegalArgumentException If invalid id
+     */
+    public double getRate(int fromId, int toId, long day) throws SQLException {
+        RateSeries from = history(fromId);
+        RateSeries to = history(toId);
+        return rateAsOf(to, day) / rateAsOf(from, day);
+    }
+
+    /**
+     * @param amount Amount in the source currency
+     * @param from Source currency
+     * @param to Target currency
+     * @param date As-of date
+     * @return Amount in the target currency, or NaN if no rate is available
+     * @throws SQLException If DB error
+     * @throws IllegalArgumentException If invalid currency
+     */
+    public double convert(double amount, String from, String to, LocalDate date) throws SQLException {
+        return amount * getRate(from, to, date);
+    }
+
+    /**
+     * @param fromId Source currency id
+     * @param toId Target currency id
+     * @param days As-of epoch days, in any order
+     * @return Exchange rate (to/from) as of each day, NaN where no rate is available
+     * @throws SQLException If DB error
+     * @throws IllegalArgumentException If invalid id
+     */
+    public double[] getRates(int fromId, int toId, long[] days) throws SQLException {
+        RateSeries from = history(fromId);
+        RateSeries to = history(toId);
+        double[] rates = new double[days.length];
+        for (int i = 0; i < days.length; i++) {
+            rates[i] = rateAsOf(to, days[i]) / rateAsOf(from, days[i]);
+        }
+        return rates;
+    }
+
+    /**
+     * Converts many amounts of one pair, each at its own date, e.g. for reconciling transactions.
+     * @param fromId Source currency id
+     * @param toId Target currency id
+     * @param days As-of epoch day of each amount, in any order
+     * @param amounts Amounts in the source currency
+     * @return Amounts in the target currency, NaN where no rate is available
+     * @throws SQLException If DB error
+     * @throws IllegalArgumentException If invalid id or the arrays differ in length
+     */
+    public double[] convert(int fromId, int toId, long[] days, double[] amounts) throws SQLException {
+        if (days.length != amounts.length) {
+            throw new IllegalArgumentException("Days and amounts differ in length: " + days.length + " != " + amounts.length);
+        }
+        double[] converted = getRates(fromId, toId, days);
+        for (int i = 0; i < converted.length; i++) {
+            converted[i] *= amounts[i];
+        }
+        return converted;
+    }
+
+    /**
+     * @param history Valid rates sorted by day
+     * @param day As-of epoch day
+     * @return Last rate on or before the day, NaN if none
+     */
+    private static double rateAsOf(RateSeries history, long day) {
+        int[] days = history.days();
+        int key = (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, day));
+        int index = Arrays.binarySearch(days, key);
+        if (index < 0) {
+            index = -index - 2; // Last day before the insertion point
+        }
+        return index < 0 ? Double.NaN : history.rates()[index];
+    }
+
+    /**
+     * @return Valid daily rates of the currency for the current data epoch, loaded on first use
+     */
+    private RateSeries history(int currencyId) throws SQLException {
+        return histories.get(currencyId, id -> db.getRateSeries(id, Long.MIN_VALUE, Long.MAX_VALUE));
+    }
+}
@@ -0,0 +1,122 @@
+package de.htwsaar.domainModel;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Immutable latest valid rate of every currency with its date, and the cross rates of all pairs
+ * derived from them.
+ * <p>
+ * The cross rates are a flat {@code N x N} matrix indexed by currency id ({@code N} is the registry's
+ * {@link CurrencyRegistry#idLimit()}), so converting any pair is one array read. Each side of a pair may
+ * be as of a different date; {@link #date(int)} tells which.
+ */
+public final class LatestRates {
+    public static final LatestRates EMPTY = of(CurrencyRegistry.EMPTY, new double[0], new long[0]);
+
+    private final CurrencyRegistry registry;
+    private final double[] rates;
+    private final long[] days;
+    private final int stride;
+    private final double[] cross;
+
+    private LatestRates(CurrencyRegistry registry, double[] rates, long[] days, double[] cross) {
+        this.registry = registry;
+        this.rates = rates;
+        this.days = days;
+        this.stride = registry.idLimit();
+        this.cross = cross;
+    }
+
+    /**
+     * @param registry Currencies
+     * @param rates Latest valid rate by currency id, NaN if none; copied
+     * @param days Epoch day of each rate by currency id, {@link Long#MIN_VALUE} if none; copied
+     * @return Latest rates with the cross matrix computed
+     */
+    static LatestRates of(CurrencyRegistry registry, double[] rates, long[] days) {
+        int n = registry.idLimit();
+        double[] latest = new double[n];
+        long[] latestDays = new long[n];
+        Arrays.fill(latest, Double.NaN);
+        Arrays.fill(latestDays, Long.MIN_VALUE);
+        System.arraycopy(rates, 0, latest, 0, Math.min(n, rates.length));
+        System.arraycopy(days, 0, latestDays, 0, Math.min(n, days.length));
+
+        double[] cross = new double[n * n];
+        for (int from = 0; from < n; from++) {
+            double fromRate = latest[from];
+            int row = from * n;
+            for (int to = 0; to < n; to++) {
+                cross[row + to] = latest[to] / fromRate;
+            }
+            if (registry.contains(from)) {
+                cross[row + from] = 1.0;
+            }
+        }
+        return new LatestRates(registry, latest, latestDays, cross);
+    }
+
+    /**
+     * @return Currencies covered
+     */
+    public CurrencyRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * @param fromId Source currency id
+     * @param toId Target currency id
+     * @return Latest exchange rate (to/from), NaN if either side has no valid rate
+     * @throws IllegalArgumentException If invalid id
+     */
+    public double crossRate(int fromId, int toId) {
+        if (!registry.contains(fromId) || !registry.contains(toId)) {
+            throw new IllegalArgumentException("Invalid currency id: " + (registry.contains(fromId) ? toId : fromId));
+        }
+        return cross[fromId * stride + toId];
+    }
+
+    /**
+     * @param id Currency id
+     * @return Latest valid rate of the currency, NaN if none
+     * @throws IllegalArgumentException If invalid id
+     */
+    public double rate(int id) {
+        return rates[validate(id)];
+    }
+
+    /**
+     * @param id Currency id
+     * @return Epoch day of the latest valid rate, {@link Long#MIN_VALUE} if none
+     * @throws IllegalArgumentException If invalid id
+     */
+    public long day(int id) {
+        return days[validate(id)];
+    }
+
+    /**
+     * @param id Currency id
+     * @return Date of the latest valid rate, or null if none
+     * @throws IllegalArgumentException If invalid id
+     */
+    public LocalDate date(int id) {
+        long day = day(id);
+        return day == Long.MIN_VALUE ? null : LocalDate.ofEpochDay(day);
+    }
+
+    /**
+     * @return Cross matrix, row {@code fromId}, column {@code toId}, {@link CurrencyRegistry#idLimit()} columns
+     * per row; not copied, must not be modified
+     */
+    double[] crossMatrix() {
+        return cross;
+    }
+
+    private int validate(int id) {
+        if (!registry.contains(id)) {
+            throw new IllegalArgumentException("Invalid currency id: " + id);
+        }
+        return id;
+    }
+}
@@ -0,0 +1,68 @@
+package de.htwsaar.domainModel;
+
+/**
+ * Largest-Triangle-Three-Buckets downsampling (Steinarsson, 2013).
+ * <p>
+ * Keeps the first and last point and, from each of the maxPoints - 2 buckets in between, the point
+ * forming the largest triangle with the previously kept point and the average of the next bucket.
+ * This keeps the visual shape, including peaks and troughs, in one linear pass.
+ * Budgets below 3 points keep only the first point, or the first and last point.
+ */
+public final class LttbDownsampler implements Downsampler {
+
+    @Override
+    public RateSeries downsample(RateSeries series, int maxPoints) {
+        int size = series.size();
+        if (maxPoints < 3) {
+            return series.endPoints(maxPoints);
+        }
+        if (maxPoints >= size) {
+            return series;
+        }
+        int[] days = series.days();
+        double[] rates = series.rates();
+        int[] outDays = new int[maxPoints];
+        double[] outRates = new double[maxPoints];
+
+        double bucketSize = (double) (size - 2) / (maxPoints - 2);
+        int selected = 0;
+        outDays[0] = days[0];
+        outRates[0] = rates[0];
+        for (int bucket = 0; bucket < maxPoints - 2; bucket++) {
+            int start = (int) (bucket * bucketSize) + 1;
+            int end = (int) ((bucket + 1) * bucketSize) + 1;
+
+            // Average of the next bucket (the last point for the final bucket)
+            int nextStart = end;
+            int nextEnd = Math.min((int) ((bucket + 2) * bucketSize) + 1, size);
+            double avgDay = 0;
+            double avgRate = 0;
+            for (int i = nextStart; i < nextEnd; i++) {
+                avgDay += days[i];
+                avgRate += rates[i];
+            }
+            int nextCount = nextEnd - nextStart;
+            avgDay /= nextCount;
+            avgRate /= nextCount;
+
+            double selectedDay = days[selected];
+            double selectedRate = rates[selected];
+            double maxArea = -1;
+            int maxIndex = start;
+            for (int i = start; i < end; i++) {
+                double area = Math.abs((selectedDay - avgDay) * (rates[i] - selectedRate)
+                        - (selectedDay - days[i]) * (avgRate - selectedRate));
+                if (area > maxArea) {
+                    maxArea = area;
+                    maxIndex = i;
+                }
+            }
+            outDays[bucket + 1] = days[maxIndex];
+            outRates[bucket + 1] = rates[maxIndex];
+            selected = maxIndex;
+        }
+        outDays[maxPoints - 1] = days[size - 1];
+        outRates[maxPoints - 1] = rates[size - 1];
+        return new RateSeries(outDays, outRates);
+    }
+}
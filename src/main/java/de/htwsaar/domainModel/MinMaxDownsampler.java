@@ -0,0 +1,62 @@
+package de.htwsaar.domainModel;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the lowest and the highest point of each bucket, in day order, plus the first and last point.
+ * Every extreme of the series survives, so spikes are never hidden.
+ * Budgets below 4 points, too small for one bucket, keep only the first point, or the first and last point.
+ */
+public final class MinMaxDownsampler implements Downsampler {
+
+    @Override
+    public RateSeries downsample(RateSeries series, int maxPoints) {
+        int size = series.size();
+        if (maxPoints < 4) {
+            return series.endPoints(Math.min(maxPoints, 2));
+        }
+        if (maxPoints >= size) {
+            return series;
+        }
+        int[] days = series.days();
+        double[] rates = series.rates();
+        int[] outDays = new int[maxPoints];
+        double[] outRates = new double[maxPoints];
+
+        int buckets = (maxPoints - 2) / 2;
+        double bucketSize = (double) (size - 2) / buckets;
+        int count = 0;
+        outDays[count] = days[0];
+        outRates[count++] = rates[0];
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            int start = (int) (bucket * bucketSize) + 1;
+            int end = Math.min((int) ((bucket + 1) * bucketSize) + 1, size - 1);
+            if (start >= end) {
+                continue;
+            }
+            int minIndex = start;
+            int maxIndex = start;
+            for (int i = start + 1; i < end; i++) {
+                if (rates[i] < rates[minIndex]) {
+                    minIndex = i;
+                } else if (rates[i] > rates[maxIndex]) {
+                    maxIndex = i;
+                }
+            }
+            int first = Math.min(minIndex, maxIndex);
+            int second = Math.max(minIndex, maxIndex);
+            outDays[count] = days[first];
+            outRates[count++] = rates[first];
+            if (second != first) {
+                outDays[count] = days[second];
+                outRates[count++] = rates[second];
+            }
+        }
+        outDays[count] = days[size - 1];
+        outRates[count++] = rates[size - 1];
+        if (count == maxPoints) {
+            return new RateSeries(outDays, outRates);
+        }
+        return new RateSeries(Arrays.copyOf(outDays, count), Arrays.copyOf(outRates, count));
+    }
+}
@@ -0,0 +1,78 @@
+package de.htwsaar.domainModel;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Columnar block of rates for several currencies over a period: one epoch day per row and one
+ * {@code double[]} column per currency. Missing and invalid rates are NaN, so {@link Double#isNaN}
+ * is the mask. The arrays are exposed directly so callers can iterate without per-cell allocation;
+ * they must not be modified.
+ */
+public final class RateBlock {
+    private final List<String> codes;
+    private final int[] days;
+    private final double[][] columns;
+
+    /**
+     * @param codes Currency code of each column
+     * @param days Epoch day of each row, ascending
+     * @param columns One rate array per currency, each as long as days
+     */
+    RateBlock(List<String> codes, int[] days, double[][] columns) {
+        this.codes = Collections.unmodifiableList(codes);
+        this.days = days;
+        this.columns = columns;
+    }
+
+    /**
+     * @return Currency codes in column order
+     */
+    public List<String> getCodes() {
+        return codes;
+    }
+
+    /**
+     * @return Number of rows (days)
+     */
+    public int getRowCount() {
+        return days.length;
+    }
+
+    /**
+     * @return Epoch day of each row, ascending
+     */
+    public int[] getDays() {
+        return days;
+    }
+
+    /**
+     * @param column Column index, in the order of {@link #getCodes()}
+     * @return Rates of the column; NaN where missing
+     */
+    public double[] getColumn(int column) {
+        return columns[column];
+    }
+
+    /**
+     * @param code Currency code
+     * @return Rates of the currency; NaN where missing
+     * @throws IllegalArgumentException If the currency is not part of the block
+     */
+    public double[] getColumn(String code) {
+        int column = codes.indexOf(code);
+        if (column < 0) {
+            throw new IllegalArgumentException("Currency not in block: " + code);
+        }
+        return columns[column];
+    }
+
+    /**
+     * @param column Column index
+     * @param row Row index
+     * @return True if the rate is missing or invalid
+     */
+    public boolean isMissing(int column, int row) {
+        return Double.isNaN(columns[column][row]);
+    }
+}
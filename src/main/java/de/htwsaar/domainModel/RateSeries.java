@@ -0,0 +1,41 @@
+package de.htwsaar.domainModel;
+
+/**
+ * Time series of rates as two parallel primitive arrays, ordered by day.
+ * @param days Epoch days, ascending
+ * @param rates Rate of each day
+ */
+public record RateSeries(int[] days, double[] rates) {
+
+    public RateSeries {
+        if (days.length != rates.length) {
+            throw new IllegalArgumentException("Days and rates differ in length: " + days.length + " != " + rates.length);
+        }
+    }
+
+    /**
+     * @return Number of points
+     */
+    public int size() {
+        return days.length;
+    }
+
+    /**
+     * Result of a downsampler whose budget is too small for its buckets.
+     * @param maxPoints Maximum number of points, at least 1
+     * @return The first point if maxPoints is 1, otherwise the first and the last point
+     */
+    RateSeries endPoints(int maxPoints) {
+        if (maxPoints < 1) {
+            throw new IllegalArgumentException("maxPoints must be at least 1: " + maxPoints);
+        }
+        if (size() <= Math.min(maxPoints, 2)) {
+            return this;
+        }
+        if (maxPoints == 1) {
+            return new RateSeries(new int[]{days[0]}, new double[]{rates[0]});
+        }
+        int last = size() - 1;
+        return new RateSeries(new int[]{days[0], days[last]}, new double[]{rates[0], rates[last]});
+    }
+}
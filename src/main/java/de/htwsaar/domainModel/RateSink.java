@@ -0,0 +1,31 @@
+package de.htwsaar.domainModel;
+
+import java.time.LocalDate;
+
+/**
+ * Receives parsed exchange rates one value at a time, so callers can write them
+ * into whatever structure they use (a map, a primitive array indexed by currency, ...).
+ * <p>
+ * Range responses wrap the rates of each day in {@link #beginDay} and {@link #endDay}.
+ */
+@FunctionalInterface
+public interface RateSink {
+
+    /**
+     * @param currency Currency code
+     * @param rate Rate against USD
+     */
+    void rate(String currency, double rate);
+
+    /**
+     * @param date Date whose rates follow
+     */
+    default void beginDay(LocalDate date) {
+    }
+
+    /**
+     * @param date Date whose rates are complete
+     */
+    default void endDay(LocalDate date) {
+    }
+}
@@ -0,0 +1,186 @@
+package de.htwsaar.domainModel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * Binary snapshot of the rate history, read through a memory-mapped file.
+ * <p>
+ * Layout, little-endian:
+ * <pre>
+ * header    magic "RSNP" (int), format version (int), CRC32C of the payload (long), payload length (long)
+ * payload   first epoch day (long), day count (int), currency count (int), rate checksum (long),
+ *           per currency: id (int), code length (short), UTF-8 code,
+ *           zero padding to a multiple of 8 bytes,
+ *           per currency in table order: dayCount doubles, missing rates as NaN
+ * </pre>
+ * The matrix is currency-major, so each column is one bulk copy. A file with another magic or version,
+ * a wrong length or a checksum mismatch is rejected as a whole.
+ * <p>
+ * The rate checksum fingerprints the data the snapshot holds, computed like
+ * {@link DatabaseManager#getRateChecksum(long)}: a database with another checksum up to the last day holds
+ * other rates.
+ */
+final class RateSnapshotFile {
+    static final int MAGIC = 0x504E5352; // "RSNP" in little-endian byte order
+    static final int VERSION = 3;
+    private static final int HEADER_BYTES = 24;
+
+    /**
+     * Contents of a snapshot.
+     * @param firstDay Epoch day of the first matrix row
+     * @param dayCount Number of days
+     * @param registry Currencies of the columns
+     * @param columns Rates indexed by currency id, each at least {@code dayCount} long; null for unknown ids
+     * @param checksum Checksum of the rates in the matrix that are not NaN
+     */
+    record Contents(long firstDay, int dayCount, CurrencyRegistry registry, double[][] columns, long checksum) {
+    }
+
+    private RateSnapshotFile() {
+        // Prevent instantiation
+    }
+
+    /**
+     * Writes the snapshot to a temporary file and moves it over the target, so readers never see a partial file.
+     * @param file Target file
+     * @param contents Snapshot contents
+     * @throws IOException If the file cannot be written
+     */
+    static void write(Path file, Contents contents) throws IOException {
+        CurrencyRegistry registry = contents.registry();
+        int[] ids = registry.ids();
+        byte[][] codes = new byte[ids.length][];
+        int tableBytes = 0;
+        for (int i = 0; i < ids.length; i++) {
+            codes[i] = registry.code(ids[i]).getBytes(StandardCharsets.UTF_8);
+            tableBytes += Integer.BYTES + Short.BYTES + codes[i].length;
+        }
+        int matrixStart = align(HEADER_BYTES + 2 * Long.BYTES + 2 * Integer.BYTES + tableBytes);
+        long size = matrixStart + (long) ids.length * contents.dayCount() * Double.BYTES;
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Snapshot too large: " + size + " bytes");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.position(HEADER_BYTES);
+        buffer.putLong(contents.firstDay());
+        buffer.putInt(contents.dayCount());
+        buffer.putInt(ids.length);
+        buffer.putLong(contents.checksum());
+        for (int i = 0; i < ids.length; i++) {
+            buffer.putInt(ids[i]);
+            buffer.putShort((short) codes[i].length);
+            buffer.put(codes[i]);
+        }
+        for (int i = 0; i < ids.length; i++) {
+            buffer.position(matrixStart + i * contents.dayCount() * Double.BYTES);
+            buffer.asDoubleBuffer().put(contents.columns()[ids[i]], 0, contents.dayCount());
+        }
+
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.array(), HEADER_BYTES, (int) size - HEADER_BYTES);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putLong(8, crc.getValue());
+        buffer.putLong(16, size - HEADER_BYTES);
+
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temp, buffer.array());
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Maps the file read-only, verifies it and copies the columns out of the mapped region.
+     * @param file Snapshot file
+     * @param minCapacity Minimum length of the returned columns; the tail is filled with NaN
+     * @return Snapshot contents
+     * @throws IOException If the file cannot be read, or has another format version or a bad checksum
+     */
+    static Contents read(Path file, int minCapacity) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES || size > Integer.MAX_VALUE) {
+                throw new IOException("Invalid snapshot size: " + size);
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            ByteBuffer buffer = mapped.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.getInt(0) != MAGIC) {
+                throw new IOException("Not a rate snapshot");
+            }
+            if (buffer.getInt(4) != VERSION) {
+                throw new IOException("Unsupported snapshot version: " + buffer.getInt(4));
+            }
+            if (buffer.getLong(16) != size - HEADER_BYTES) {
+                throw new IOException("Truncated snapshot");
+            }
+            CRC32C crc = new CRC32C();
+            crc.update(buffer.slice(HEADER_BYTES, (int) size - HEADER_BYTES));
+            if (crc.getValue() != buffer.getLong(8)) {
+                throw new IOException("Snapshot checksum mismatch");
+            }
+            try {
+                return parse(buffer, minCapacity);
+            } catch (RuntimeException e) {
+                throw new IOException("Corrupt snapshot: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private static Contents parse(ByteBuffer buffer, int minCapacity) {
+        buffer.position(HEADER_BYTES);
+        long firstDay = buffer.getLong();
+        int dayCount = buffer.getInt();
+        int currencyCount = buffer.getInt();
+        long checksum = buffer.getLong();
+        if (dayCount < 0 || currencyCount < 0) {
+            throw new IllegalArgumentException("negative count");
+        }
+        int[] ids = new int[currencyCount];
+        Map<String, Integer> idsByCode = new HashMap<>();
+        for (int i = 0; i < currencyCount; i++) {
+            ids[i] = buffer.getInt();
+            byte[] code = new byte[buffer.getShort()];
+            buffer.get(code);
+            idsByCode.put(new String(code, StandardCharsets.UTF_8), ids[i]);
+        }
+        CurrencyRegistry registry = CurrencyRegistry.of(idsByCode);
+
+        int matrixStart = align(buffer.position());
+        if ((long) matrixStart + (long) currencyCount * dayCount * Double.BYTES != buffer.limit()) {
+            throw new IllegalArgumentException("matrix size does not match the header");
+        }
+        int capacity = Math.max(dayCount, minCapacity);
+        double[][] columns = new double[registry.idLimit()][];
+        for (int i = 0; i < currencyCount; i++) {
+            double[] column = new double[capacity];
+            buffer.position(matrixStart + i * dayCount * Double.BYTES);
+            buffer.asDoubleBuffer().get(column, 0, dayCount);
+            Arrays.fill(column, dayCount, capacity, Double.NaN);
+            columns[ids[i]] = column;
+        }
+        return new Contents(firstDay, dayCount, registry, columns, checksum);
+    }
+
+    private static int align(int offset) {
+        return (offset + Double.BYTES - 1) & -Double.BYTES;
+    }
+}
@@ -0,0 +1,396 @@
+package de.htwsaar.domainModel;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Read-optimized in-memory copy of the exchange rate history.
+ * <p>
+ * Holds one primitive {@code double[]} column per currency, indexed by currency id and by the day offset
+ * from the first date in the database. Missing rates are stored as NaN.
+ * Readers work on an immutable snapshot, so lookups never touch the database.
+ */
+public class RateStore {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RateStore.class);
+    private static final int MIN_CAPACITY = 64;
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+    // Last day and rate checksum of the snapshot file that was loaded or written, Long.MIN_VALUE/0 if none
+    private volatile long persistedDay = Long.MIN_VALUE;
+    private volatile long persistedChecksum = 0;
+    // Loaded from a snapshot file and not yet checked against the database; guarded by this
+    private boolean unverified = false;
+
+    /**
+     * Published state. Columns may have a larger capacity than {@code dayCount};
+     * only offsets below {@code dayCount} are visible to readers of this snapshot.
+     */
+    private static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(0, 0, 0, CurrencyRegistry.EMPTY, new double[0][], 0,
+                LatestRates.EMPTY);
+
+        final long firstDay;
+        final int dayCount;
+        final int capacity;
+        final CurrencyRegistry registry;
+        final double[][] columns;
+        final long checksum;
+        final LatestRates latest;
+
+        Snapshot(long firstDay, int dayCount, int capacity, CurrencyRegistry registry, double[][] columns,
+                 long checksum, LatestRates latest) {
+            this.firstDay = firstDay;
+            this.dayCount = dayCount;
+            this.capacity = capacity;
+            this.registry = registry;
+            this.columns = columns;
+            this.checksum = checksum;
+            this.latest = latest;
+        }
+    }
+
+    /**
+     * Loads all days newer than the last loaded day. The first call loads the full history.
+     * The first call after {@link #loadSnapshot(Path)} reloads the full history as well if the database's
+     * rate checksum up to the snapshot's last day differs from the snapshot's, i.e. the snapshot is stale.
+     * Otherwise the refresh is append-only: rates written later for days already loaded, e.g. corrections or
+     * filled gaps, are not picked up until the history is loaded again from scratch.
+     * @param db Database to read from
+     * @throws SQLException If DB error
+     */
+    public synchronized void refresh(DatabaseManager db) throws SQLException {
+        Snapshot current = snapshot;
+        db.getAllCurrencyCodes(); // Picks up currencies added through other connections
+        CurrencyRegistry registry = db.getCurrencyRegistry();
+        if (!sameIds(current.registry, registry)) {
+            LOGGER.warn("Loaded currencies do not match the database, reloading the full history.");
+            current = Snapshot.EMPTY;
+        }
+        long afterDay = current.dayCount == 0 ? Long.MIN_VALUE : current.firstDay + current.dayCount - 1;
+        if (unverified && current.dayCount != 0 && db.getRateChecksum(afterDay) != current.checksum) {
+            LOGGER.warn("Rate snapshot does not match the database, reloading the full history.");
+            current = Snapshot.EMPTY;
+            afterDay = Long.MIN_VALUE;
+        }
+        unverified = false;
+
+        Builder builder = new Builder(current, registry);
+        db.scanRates(afterDay, builder.ids, builder::append);
+        Snapshot next = builder.build();
+        snapshot = next;
+        if (next.dayCount != current.dayCount) {
+            LOGGER.info("Rate store loaded {} new days ({} currencies).",
+                    next.dayCount - current.dayCount, registry.size());
+        }
+    }
+
+    /**
+     * @return True if every loaded currency has the same id in the database registry
+     */
+    private static boolean sameIds(CurrencyRegistry loaded, CurrencyRegistry database) {
+        for (String code : loaded.codes()) {
+            if (database.idOf(code) != loaded.id(code)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Loads a snapshot file written by {@link #writeSnapshot(Path)}, so reads can be served before the
+     * database is opened; a following {@link #refresh(DatabaseManager)} only loads newer days.
+     * Only an empty store is loaded.
+     * @param file Snapshot file
+     * @return True if loaded; false if the store is not empty or the file is missing, of another format
+     *         version or corrupt
+     */
+    public synchronized boolean loadSnapshot(Path file) {
+        if (snapshot.dayCount != 0) {
+            return false;
+        }
+        RateSnapshotFile.Contents contents;
+        try {
+            contents = RateSnapshotFile.read(file, MIN_CAPACITY);
+        } catch (NoSuchFileException e) {
+            LOGGER.info("No rate snapshot at {}.", file);
+            return false;
+        } catch (IOException e) {
+            LOGGER.warn("Ignoring rate snapshot {}: {}", file, e.getMessage());
+            return false;
+        }
+        int capacity = Math.max(contents.dayCount(), MIN_CAPACITY); // As allocated by read
+        snapshot = new Snapshot(contents.firstDay(), contents.dayCount(), capacity, contents.registry(),
+                contents.columns(), contents.checksum(), latestOf(contents));
+        persistedDay = getLastDay();
+        persistedChecksum = contents.checksum();
+        unverified = true;
+        LOGGER.info("Rate store loaded {} days ({} currencies) from snapshot.",
+                contents.dayCount(), contents.registry().size());
+        return true;
+    }
+
+    /**
+     * @return Latest valid rates found by scanning each column back from its last day
+     */
+    private static LatestRates latestOf(RateSnapshotFile.Contents contents) {
+        CurrencyRegistry registry = contents.registry();
+        double[] rates = new double[registry.idLimit()];
+        long[] days = new long[registry.idLimit()];
+        Arrays.fill(rates, Double.NaN);
+        Arrays.fill(days, Long.MIN_VALUE);
+        for (int id : registry.ids()) {
+            double[] column = contents.columns()[id];
+            for (int offset = contents.dayCount() - 1; offset >= 0; offset--) {
+                if (!Double.isNaN(column[offset])) {
+                    rates[id] = column[offset];
+                    days[id] = contents.firstDay() + offset;
+                    break;
+                }
+            }
+        }
+        return LatestRates.of(registry, rates, days);
+    }
+
+    /**
+     * Writes the loaded history to a snapshot file, replacing it atomically.
+     * @param file Snapshot file
+     * @throws IOException If the file cannot be written
+     */
+    public void writeSnapshot(Path file) throws IOException {
+        Snapshot s = snapshot;
+        RateSnapshotFile.write(file, new RateSnapshotFile.Contents(s.firstDay, s.dayCount, s.registry, s.columns,
+                s.checksum));
+        persistedDay = s.dayCount == 0 ? Long.MIN_VALUE : s.firstDay + s.dayCount - 1;
+        persistedChecksum = s.checksum;
+    }
+
+    /**
+     * @return True if days were loaded or the history was reloaded since the snapshot file was last loaded
+     *         or written
+     */
+    public boolean hasUnsavedDays() {
+        Snapshot s = snapshot;
+        long lastDay = s.dayCount == 0 ? Long.MIN_VALUE : s.firstDay + s.dayCount - 1;
+        return lastDay != persistedDay || s.checksum != persistedChecksum;
+    }
+
+    /**
+     * @return Latest valid rate and date of every currency with the cross rates of all pairs,
+     *         rebuilt with each load
+     */
+    public LatestRates getLatestRates() {
+        return snapshot.latest;
+    }
+
+    /**
+     * @return Registry the loaded columns are indexed by
+     */
+    public CurrencyRegistry getRegistry() {
+        return snapshot.registry;
+    }
+
+    /**
+     * @param code Currency code
+     * @return True if the currency has a column
+     */
+    public boolean contains(String code) {
+        return snapshot.registry.contains(code);
+    }
+
+    /**
+     * @return Last loaded date, or null if empty
+     */
+    public LocalDate getLastDate() {
+        long day = getLastDay();
+        return day == Long.MIN_VALUE ? null : LocalDate.ofEpochDay(day);
+    }
+
+    /**
+     * @return Last loaded epoch day, or {@link Long#MIN_VALUE} if empty
+     */
+    public long getLastDay() {
+        Snapshot s = snapshot;
+        return s.dayCount == 0 ? Long.MIN_VALUE : s.firstDay + s.dayCount - 1;
+    }
+
+    /**
+     * @param from Source currency
+     * @param to Target currency
+     * @param date Date of the rate
+     * @return Exchange rate (to/from) on that date, or NaN if missing
+     * @throws IllegalArgumentException If invalid currency
+     */
+    public double getRate(String from, String to, LocalDate date) {
+        return getRate(from, to, date.toEpochDay());
+    }
+
+    /**
+     * @param from Source currency
+     * @param to Target currency
+     * @param day Epoch day of the rate
+     * @return Exchange rate (to/from) on that day, or NaN if missing
+     * @throws IllegalArgumentException If invalid currency
+     */
+    public double getRate(String from, String to, long day) {
+        Snapshot s = snapshot;
+        return getRate(s, s.registry.id(from), s.registry.id(to), day);
+    }
+
+    /**
+     * @param fromId Source currency id
+     * @param toId Target currency id
+     * @param day Epoch day of the rate
+     * @return Exchange rate (to/from) on that day, or NaN if missing
+     * @throws IllegalArgumentException If invalid id
+     */
+    public double getRate(int fromId, int toId, long day) {
+        return getRate(snapshot, fromId, toId, day);
+    }
+
+    private static double getRate(Snapshot s, int fromId, int toId, long day) {
+        return crossRate(s, fromId, toId, day - s.firstDay);
+    }
+
+    /**
+     * @param from Source currency
+     * @param to Target currency
+     * @return Exchange rate (to/from) on the last loaded date, or NaN if missing
+     * @throws IllegalArgumentException If invalid currency
+     */
+    public double getLatestRate(String from, String to) {
+        Snapshot s = snapshot;
+        return getLatestRate(s, s.registry.id(from), s.registry.id(to));
+    }
+
+    /**
+     * @param fromId Source currency id
+     * @param toId Target currency id
+     * @return Exchange rate (to/from) on the last loaded date, or NaN if missing
+     * @throws IllegalArgumentException If invalid id
+     */
+    public double getLatestRate(int fromId, int toId) {
+        return getLatestRate(snapshot, fromId, toId);
+    }
+
+    private static double getLatestRate(Snapshot s, int fromId, int toId) {
+        return crossRate(s, fromId, toId, s.dayCount - 1);
+    }
+
+    private static double crossRate(Snapshot s, int fromId, int toId, long offset) {
+        double[] fromColumn = column(s, fromId);
+        double[] toColumn = column(s, toId);
+        if (offset < 0 || offset >= s.dayCount) {
+            return Double.NaN;
+        }
+        if (fromId == toId) {
+            return 1.0;
+        }
+        return toColumn[(int) offset] / fromColumn[(int) offset];
+    }
+
+    private static double[] column(Snapshot s, int id) {
+        if (!s.registry.contains(id)) {
+            throw new IllegalArgumentException("Unknown currency id: " + id);
+        }
+        return s.columns[id];
+    }
+
+    /**
+     * Appends rows to a copy of the current snapshot metadata. Column arrays are reused
+     * when they have spare capacity, since readers never look past their own dayCount.
+     */
+    private static final class Builder {
+        private final CurrencyRegistry registry;
+        private final int[] ids;
+        private final double[][] columns;
+        private final LatestRates baseLatest;
+        private final double[] latestRates;
+        private final long[] latestDays;
+        private boolean latestChanged;
+        private int capacity;
+        private long first;
+        private int dayCount;
+        private long checksum;
+
+        Builder(Snapshot base, CurrencyRegistry registry) {
+            this.registry = registry;
+            this.ids = registry.ids();
+            this.first = base.dayCount == 0 ? Long.MIN_VALUE : base.firstDay;
+            this.dayCount = base.dayCount;
+            this.capacity = base.capacity;
+            this.checksum = base.checksum;
+
+            this.baseLatest = base.latest;
+            this.latestRates = new double[registry.idLimit()];
+            this.latestDays = new long[registry.idLimit()];
+            Arrays.fill(latestRates, Double.NaN);
+            Arrays.fill(latestDays, Long.MIN_VALUE);
+            for (int id : base.registry.ids()) {
+                latestRates[id] = base.latest.rate(id);
+                latestDays[id] = base.latest.day(id);
+            }
+            this.latestChanged = base.registry != registry;
+
+            this.columns = Arrays.copyOf(base.columns, Math.max(base.columns.length, registry.idLimit()));
+            for (int id : ids) {
+                if (columns[id] == null) {
+                    double[] column = new double[capacity];
+                    Arrays.fill(column, Double.NaN);
+                    columns[id] = column;
+                }
+            }
+        }
+
+        void append(long day, double[] rates) {
+            if (first == Long.MIN_VALUE) {
+                first = day;
+            }
+            long offset = day - first;
+            if (offset < dayCount) {
+                return;
+            }
+            ensureCapacity((int) offset + 1);
+            for (double[] column : columns) {
+                if (column != null) {
+                    Arrays.fill(column, dayCount, (int) offset + 1, Double.NaN);
+                }
+            }
+            for (int i = 0; i < rates.length; i++) {
+                columns[ids[i]][(int) offset] = rates[i];
+                if (!Double.isNaN(rates[i])) {
+                    checksum = (checksum + DatabaseManager.checksumTerm(ids[i], day, rates[i]))
+                            % DatabaseManager.CHECKSUM_MODULUS;
+                    latestRates[ids[i]] = rates[i];
+                    latestDays[ids[i]] = day;
+                    latestChanged = true;
+                }
+            }
+            dayCount = (int) offset + 1;
+        }
+
+        private void ensureCapacity(int required) {
+            if (required <= capacity) {
+                return;
+            }
+            capacity = Math.max(MIN_CAPACITY, Math.max(required, capacity * 2));
+            for (int c = 0; c < columns.length; c++) {
+                if (columns[c] != null) {
+                    columns[c] = Arrays.copyOf(columns[c], capacity);
+                }
+            }
+        }
+
+        Snapshot build() {
+            // Rebuilt in full, so readers switch to the new vector and matrix in one step
+            LatestRates latest = latestChanged ? LatestRates.of(registry, latestRates, latestDays) : baseLatest;
+            return new Snapshot(dayCount == 0 ? 0 : first, dayCount, capacity, registry, columns, checksum, latest);
+        }
+    }
+}
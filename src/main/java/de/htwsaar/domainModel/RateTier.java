@@ -0,0 +1,91 @@
+package de.htwsaar.domainModel;
+
+import java.time.LocalDate;
+
+/**
+ * Resolutions of the rate pyramid. Buckets are calendar aligned (ISO weeks starting on Monday,
+ * months, years) and identified by the epoch day they start on, so buckets of different
+ * currencies line up.
+ */
+public enum RateTier {
+    DAY(0, 1.0),
+    WEEK(1, 7.0),
+    MONTH(2, 365.2425 / 12),
+    YEAR(3, 365.2425);
+
+    private final int id;
+    private final double averageDays;
+
+    RateTier(int id, double averageDays) {
+        this.id = id;
+        this.averageDays = averageDays;
+    }
+
+    /**
+     * @return Id stored in the aggregate table
+     */
+    int id() {
+        return id;
+    }
+
+    /**
+     * @param epochDay Any day
+     * @return First epoch day of the bucket containing the day
+     */
+    public long bucketStart(long epochDay) {
+        return switch (this) {
+            case DAY -> epochDay;
+            // Epoch day 0 (1970-01-01) is a Thursday
+            case WEEK -> epochDay - Math.floorMod(epochDay + 3, 7);
+            case MONTH -> LocalDate.ofEpochDay(epochDay).withDayOfMonth(1).toEpochDay();
+            case YEAR -> LocalDate.ofEpochDay(epochDay).withDayOfYear(1).toEpochDay();
+        };
+    }
+
+    /**
+     * @param bucketStart First epoch day of a bucket
+     * @return Last epoch day of the bucket
+     */
+    public long bucketEnd(long bucketStart) {
+        return switch (this) {
+            case DAY -> bucketStart;
+            case WEEK -> bucketStart + 6;
+            case MONTH -> LocalDate.ofEpochDay(bucketStart).plusMonths(1).toEpochDay() - 1;
+            case YEAR -> LocalDate.ofEpochDay(bucketStart).plusYears(1).toEpochDay() - 1;
+        };
+    }
+
+    /**
+     * @param dayColumn SQL expression of an epoch day
+     * @return SQL expression of the bucket start, matching {@link #bucketStart(long)}
+     */
+    String bucketSql(String dayColumn) {
+        return switch (this) {
+            case DAY -> dayColumn;
+            case WEEK -> "(" + dayColumn + " - (((" + dayColumn + " + 3) % 7) + 7) % 7)";
+            case MONTH -> "CAST(julianday(date(" + dayColumn + " * 86400, 'unixepoch', 'start of month')) - 2440587.5 AS INTEGER)";
+            case YEAR -> "CAST(julianday(date(" + dayColumn + " * 86400, 'unixepoch', 'start of year')) - 2440587.5 AS INTEGER)";
+        };
+    }
+
+    /**
+     * Picks the tier whose number of buckets over the span is closest to the target
+     * (on a log scale), preferring the coarser tier on ties.
+     * @param spanDays Number of days to show
+     * @param targetPoints Desired number of points
+     * @return Best matching tier
+     */
+    public static RateTier forSpan(long spanDays, int targetPoints) {
+        RateTier best = DAY;
+        double bestDistance = Double.MAX_VALUE;
+        for (RateTier tier : values()) {
+            double points = Math.max(1, spanDays) / tier.averageDays;
+            double distance = Math.abs(Math.log(points / targetPoints));
+            if (distance <= bestDistance) {
+                best = tier;
+                bestDistance = distance;
+            }
+        }
+        return best;
+    }
+}
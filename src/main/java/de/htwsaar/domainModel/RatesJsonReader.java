@@ -0,0 +1,428 @@
+package de.htwsaar.domainModel;
+
+import okio.BufferedSource;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Streaming parser for Open Exchange Rates responses.
+ * <p>
+ * Reads the response token by token from the {@link BufferedSource} and passes every rate
+ * straight to a {@link RateSink}, without materializing the body as a String or a JSON tree.
+ * Only the {@code rates} and {@code message} members are interpreted; everything else is skipped.
+ * Instances are not thread-safe and are meant to be used for one response.
+ */
+public final class RatesJsonReader {
+    private static final int NONE = -2;
+    private static final int EOF = -1;
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final int CODE_CACHE_SIZE = 512;
+
+    private final BufferedSource source;
+    private final StringBuilder number = new StringBuilder(24);
+    private byte[] bytes = new byte[32];
+    private final long[] codeKeys = new long[CODE_CACHE_SIZE];
+    private final String[] codeValues = new String[CODE_CACHE_SIZE];
+    private int codeCount = 0;
+    private int peeked = NONE;
+    private boolean ratesFound = false;
+    private String message = null;
+
+    /**
+     * @param source Response body source
+     */
+    public RatesJsonReader(BufferedSource source) {
+        this.source = source;
+    }
+
+    /**
+     * @return True if the next non-whitespace byte opens a JSON object
+     * @throws IOException On read error
+     */
+    public boolean isJsonObject() throws IOException {
+        return peekNonWhitespace() == '{';
+    }
+
+    /**
+     * Parses a response whose {@code rates} member maps currency codes to rates.
+     * @param sink Receives each rate
+     * @return True if a rates member was found
+     * @throws IOException On read error or malformed JSON
+     */
+    public boolean readRates(RateSink sink) throws IOException {
+        return readResponse(sink, false);
+    }
+
+    /**
+     * Parses a time-series response whose {@code rates} member maps ISO dates to rate objects.
+     * Days are reported in the order they appear in the response.
+     * @param sink Receives each day and its rates
+     * @return True if a rates member was found
+     * @throws IOException On read error or malformed JSON
+     */
+    public boolean readRatesByDay(RateSink sink) throws IOException {
+        return readResponse(sink, true);
+    }
+
+    /**
+     * @return The API error message, if the response had one
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    private boolean readResponse(RateSink sink, boolean byDay) throws IOException {
+        expect('{');
+        if (consumeIf('}')) {
+            return ratesFound;
+        }
+        do {
+            String name = readString();
+            expect(':');
+            if (name.equals("rates")) {
+                if (byDay) {
+                    readDays(sink);
+                } else {
+                    readRateObject(sink);
+                }
+                ratesFound = true;
+            } else if (name.equals("message") && peekNonWhitespace() == '"') {
+                message = readString();
+            } else {
+                skipValue();
+            }
+        } while (nextMember('}'));
+        return ratesFound;
+    }
+
+    private void readDays(RateSink sink) throws IOException {
+        expect('{');
+        if (consumeIf('}')) {
+            return;
+        }
+        do {
+            LocalDate date = LocalDate.parse(readString());
+            expect(':');
+            sink.beginDay(date);
+            readRateObject(sink);
+            sink.endDay(date);
+        } while (nextMember('}'));
+    }
+
+    private void readRateObject(RateSink sink) throws IOException {
+        expect('{');
+        if (consumeIf('}')) {
+            return;
+        }
+        do {
+            String code = readCode();
+            expect(':');
+            sink.rate(code, readNumber());
+        } while (nextMember('}'));
+    }
+
+    /**
+     * @param close Closing character of the current container
+     * @return True if another member follows
+     */
+    private boolean nextMember(char close) throws IOException {
+        int c = peekNonWhitespace();
+        read();
+        if (c == ',') {
+            return true;
+        }
+        if (c == close) {
+            return false;
+        }
+        throw syntaxError("',' or '" + close + "'", c);
+    }
+
+    private void skipValue() throws IOException {
+        int c = peekNonWhitespace();
+        if (c == '{' || c == '[') {
+            read();
+            char close = c == '{' ? '}' : ']';
+            if (consumeIf(close)) {
+                return;
+            }
+            do {
+                if (close == '}') {
+                    readString();
+                    expect(':');
+                }
+                skipValue();
+            } while (nextMember(close));
+        } else if (c == '"') {
+            readString();
+        } else {
+            // Number or literal
+            while ((c = peek()) != EOF && c != ',' && c != '}' && c != ']' && !isWhitespace(c)) {
+                read();
+            }
+        }
+    }
+
+    /**
+     * Reads a currency code, reusing the String of codes seen before in this response.
+     */
+    private String readCode() throws IOException {
+        expect('"');
+        long key = 0;
+        int length = 0;
+        int c;
+        while ((c = read()) != '"') {
+            if (c == EOF || c == '\\' || c >= 0x80 || length == 7) {
+                // Not a short ASCII code: fall back to the general string reader
+                return decodeRest(c, key, length);
+            }
+            key = (key << 8) | c;
+            length++;
+        }
+        key |= (long) length << 56;
+        int slot = (int) (key ^ (key >>> 29)) & (CODE_CACHE_SIZE - 1);
+        while (codeValues[slot] != null) {
+            if (codeKeys[slot] == key) {
+                return codeValues[slot];
+            }
+            slot = (slot + 1) & (CODE_CACHE_SIZE - 1);
+        }
+        char[] chars = new char[length];
+        long packed = key;
+        for (int i = length - 1; i >= 0; i--) {
+            chars[i] = (char) (packed & 0xFF);
+            packed >>>= 8;
+        }
+        String code = new String(chars);
+        if (codeCount < CODE_CACHE_SIZE / 2) {
+            codeKeys[slot] = key;
+            codeValues[slot] = code;
+            codeCount++;
+        }
+        return code;
+    }
+
+    /**
+     * Continues {@link #readCode} with the general string reader.
+     * @param current Character just read and not yet stored
+     * @param packed Bytes read so far, packed into a long
+     * @param length Number of packed bytes
+     */
+    private String decodeRest(int current, long packed, int length) throws IOException {
+        ensureBytes(length);
+        for (int i = length - 1; i >= 0; i--) {
+            bytes[i] = (byte) packed;
+            packed >>>= 8;
+        }
+        return readStringBody(current, length);
+    }
+
+    private String readString() throws IOException {
+        expect('"');
+        return readStringBody(read(), 0);
+    }
+
+    /**
+     * @param first First unread character of the string body (already consumed)
+     * @param n Number of bytes already in {@link #bytes}
+     */
+    private String readStringBody(int first, int n) throws IOException {
+        int c = first;
+        while (c != '"') {
+            if (c == EOF) {
+                throw new IOException("Unterminated string");
+            }
+            if (c == '\\') {
+                c = read();
+                int decoded = switch (c) {
+                    case '"', '\\', '/' -> c;
+                    case 'b' -> '\b';
+                    case 'f' -> '\f';
+                    case 'n' -> '\n';
+                    case 'r' -> '\r';
+                    case 't' -> '\t';
+                    case 'u' -> readHexChar();
+                    default -> throw syntaxError("escape sequence", c);
+                };
+                byte[] utf8 = String.valueOf((char) decoded).getBytes(StandardCharsets.UTF_8);
+                ensureBytes(n + utf8.length);
+                System.arraycopy(utf8, 0, bytes, n, utf8.length);
+                n += utf8.length;
+            } else {
+                ensureBytes(n + 1);
+                bytes[n++] = (byte) c;
+            }
+            c = read();
+        }
+        return new String(bytes, 0, n, StandardCharsets.UTF_8);
+    }
+
+    private int readHexChar() throws IOException {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            int digit = Character.digit(read(), 16);
+            if (digit < 0) {
+                throw new IOException("Invalid unicode escape");
+            }
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+
+    private void ensureBytes(int capacity) {
+        if (capacity > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(capacity, bytes.length * 2));
+        }
+    }
+
+    /**
+     * Parses a JSON number. Values with at most 15 significant digits and a small exponent are
+     * computed exactly from the decimal mantissa; anything else goes through {@link Double#parseDouble}.
+     * Text outside the JSON number grammar, e.g. {@code -}, {@code .5} or {@code 1.}, is rejected.
+     */
+    private double readNumber() throws IOException {
+        peekNonWhitespace();
+        number.setLength(0);
+        int c;
+        while ((c = peek()) != EOF && (c >= '0' && c <= '9' || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E')) {
+            number.append((char) read());
+        }
+        int invalid = invalidNumberIndex(number);
+        if (invalid >= 0) {
+            throw syntaxError("number", invalid < number.length() ? number.charAt(invalid) : c);
+        }
+
+        boolean negative = false;
+        long mantissa = 0;
+        int exponent = 0;
+        int i = 0;
+        int length = number.length();
+        if (number.charAt(0) == '-') {
+            negative = true;
+            i++;
+        }
+        boolean fast = true;
+        boolean fraction = false;
+        for (; i < length; i++) {
+            char ch = number.charAt(i);
+            if (ch >= '0' && ch <= '9') {
+                mantissa = mantissa * 10 + (ch - '0');
+                if (mantissa >= MAX_EXACT_MANTISSA) {
+                    fast = false;
+                    break;
+                }
+                if (fraction) {
+                    exponent--;
+                }
+            } else if (ch == '.' && !fraction) {
+                fraction = true;
+            } else {
+                fast = false;
+                break;
+            }
+        }
+        if (!fast || exponent < -22) {
+            try {
+                return Double.parseDouble(number.toString());
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid number: " + number, e);
+            }
+        }
+        double value = exponent == 0 ? mantissa : mantissa / POWERS_OF_TEN[-exponent];
+        return negative ? -value : value;
+    }
+
+    /**
+     * @param text Characters of a number token
+     * @return Index of the first character that breaks the JSON number grammar (the length if a digit is
+     *         missing at the end), or -1 if the text is a valid number
+     */
+    private static int invalidNumberIndex(CharSequence text) {
+        int length = text.length();
+        int i = 0;
+        if (i < length && text.charAt(i) == '-') {
+            i++;
+        }
+        if (i < length && text.charAt(i) == '0') {
+            i++;
+        } else if ((i = skipDigits(text, i)) < 0) {
+            return -i - 1;
+        }
+        if (i < length && text.charAt(i) == '.' && (i = skipDigits(text, i + 1)) < 0) {
+            return -i - 1;
+        }
+        if (i < length && (text.charAt(i) == 'e' || text.charAt(i) == 'E')) {
+            i++;
+            if (i < length && (text.charAt(i) == '+' || text.charAt(i) == '-')) {
+                i++;
+            }
+            if ((i = skipDigits(text, i)) < 0) {
+                return -i - 1;
+            }
+        }
+        return i == length ? -1 : i;
+    }
+
+    /**
+     * @return Index after one or more digits starting at {@code start}, or {@code -start - 1} if there is none
+     */
+    private static int skipDigits(CharSequence text, int start) {
+        int i = start;
+        while (i < text.length() && text.charAt(i) >= '0' && text.charAt(i) <= '9') {
+            i++;
+        }
+        return i > start ? i : -start - 1;
+    }
+
+    private void expect(char expected) throws IOException {
+        int c = peekNonWhitespace();
+        if (c != expected) {
+            throw syntaxError("'" + expected + "'", c);
+        }
+        read();
+    }
+
+    private boolean consumeIf(char expected) throws IOException {
+        if (peekNonWhitespace() == expected) {
+            read();
+            return true;
+        }
+        return false;
+    }
+
+    private int peekNonWhitespace() throws IOException {
+        int c;
+        while (isWhitespace(c = peek())) {
+            read();
+        }
+        return c;
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+
+    private int peek() throws IOException {
+        if (peeked == NONE) {
+            peeked = source.exhausted() ? EOF : source.readByte() & 0xFF;
+        }
+        return peeked;
+    }
+
+    private int read() throws IOException {
+        int c = peek();
+        peeked = NONE;
+        return c;
+    }
+
+    private static IOException syntaxError(String expected, int actual) {
+        String found = actual == EOF ? "end of input" : "'" + (char) actual + "'";
+        return new IOException("Malformed JSON: expected " + expected + " but found " + found);
+    }
+}
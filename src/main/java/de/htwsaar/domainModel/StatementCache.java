@@ -0,0 +1,116 @@
+package de.htwsaar.domainModel;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded LRU cache of prepared statements for one connection, keyed by SQL text.
+ * <p>
+ * Statements handed out stay owned by the cache: callers close their result sets but never the
+ * statement. The least recently used statement is closed when the cache is full. Not thread-safe;
+ * like its connection it must be used by one thread at a time. The counters may be read from any thread.
+ */
+final class StatementCache implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(StatementCache.class);
+
+    private final Connection connection;
+    private final int capacity;
+    private final LinkedHashMap<String, PreparedStatement> statements;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param connection Connection the statements are prepared on
+     * @param capacity Maximum number of cached statements
+     */
+    StatementCache(Connection connection, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1");
+        }
+        this.connection = connection;
+        this.capacity = capacity;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * @return Connection the statements are prepared on
+     */
+    Connection connection() {
+        return connection;
+    }
+
+    /**
+     * @param sql SQL text with parameters as placeholders
+     * @return Cached statement for the SQL, prepared on first use; parameters from earlier uses may still be set
+     * @throws SQLException If DB error
+     */
+    PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement statement = statements.get(sql);
+        if (statement != null && !statement.isClosed()) {
+            hits.increment();
+            return statement;
+        }
+        misses.increment();
+        statement = connection.prepareStatement(sql);
+        statements.put(sql, statement);
+        evictOverflow();
+        return statement;
+    }
+
+    private void evictOverflow() {
+        Iterator<Map.Entry<String, PreparedStatement>> eldest = statements.entrySet().iterator();
+        while (statements.size() > capacity) {
+            PreparedStatement evicted = eldest.next().getValue();
+            eldest.remove();
+            evictions.increment();
+            closeQuietly(evicted);
+        }
+    }
+
+    /**
+     * @return Number of statements currently cached
+     */
+    int size() {
+        return statements.size();
+    }
+
+    long hits() {
+        return hits.sum();
+    }
+
+    long misses() {
+        return misses.sum();
+    }
+
+    long evictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Closes all cached statements; the connection stays open.
+     */
+    @Override
+    public void close() {
+        for (PreparedStatement statement : statements.values()) {
+            closeQuietly(statement);
+        }
+        statements.clear();
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            LOGGER.warn("Failed to close cached statement: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,5 @@
+package de.htwsaar.exceptions;
+
+public class CurrencyRangeNotSupportedException extends CurrencyApiException {
+    public CurrencyRangeNotSupportedException(String message) { super(message, null); }
+}
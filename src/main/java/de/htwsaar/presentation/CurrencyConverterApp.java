@@ -4,7 +4,9 @@ import de.htwsaar.domainModel.CurrencyAPI;
 import de.htwsaar.domainModel.CurrencyConverterController;
 import de.htwsaar.domainModel.CurrencyUpdater;
 import de.htwsaar.domainModel.DatabaseManager;
+import de.htwsaar.domainModel.RateStore;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.concurrent.Task;
 import javafx.scene.Scene;
 import javafx.scene.chart.CategoryAxis;
@@ -19,6 +21,7 @@ import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 
 import java.net.URL;
+import java.nio.file.Path;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -28,6 +31,10 @@ public class CurrencyConverterApp extends Application {
     private static final int WINDOW_HEIGHT = 600;
     private static final int LOADING_BOX_WIDTH = 400;
     private static final int LOADING_BOX_HEIGHT = 220;
+    private static final Path SNAPSHOT_FILE = Path.of("data", "Exchange_Rates.snapshot");
+    // Created once the database is open; written by the loading task, read in stop()
+    private volatile CurrencyConverterController controller;
+    private volatile DatabaseManager db;
 
     @Override
     public void start(Stage primaryStage) {
@@ -39,15 +46,15 @@ public class CurrencyConverterApp extends Application {
         }
 
         CurrencyAPI api;
-        DatabaseManager db;
+        RateStore rateStore = new RateStore();
+        // The snapshot serves the history without scanning SQLite; the loading task only adds newer days
+        rateStore.loadSnapshot(SNAPSHOT_FILE);
         try {
             api = new CurrencyAPI();
-            db = new DatabaseManager();
         } catch (Exception e) {
-            showStartupError("Failed to initialize API or database: " + e.getMessage());
+            showStartupError("Failed to initialize API: " + e.getMessage());
             return;
         }
-        CurrencyUpdater updater = new CurrencyUpdater(api, db);
 
         // UI setup
         LineChart<String, Number> chart = createChart();
@@ -61,9 +68,6 @@ public class CurrencyConverterApp extends Application {
         // Set default selections for startup
         selectDefaultCurrencies(view, codeToName);
 
-        // Controller handles all info box updates from here on
-        CurrencyConverterController controller = new CurrencyConverterController(view, db);
-
         BorderPane root = new BorderPane();
         root.setLeft(view.createLeftPanel());
         HBox chartControls = view.createChartControls();
@@ -94,13 +98,23 @@ public class CurrencyConverterApp extends Application {
             scene.getStylesheets().add(css.toExternalForm());
         }
 
-        // Background sync task with progress
+        // Background task: opens (and on first run migrates) the database, loads the days the snapshot
+        // lacks, hands the database to the controller and syncs with the API
         Task<Void> syncTask = new Task<>() {
             @Override
-            protected Void call() {
-                updater.syncDatabaseWithProgress(
+            protected Void call() throws Exception {
+                updateMessage("Opening database...");
+                DatabaseManager opened = new DatabaseManager();
+                db = opened;
+                rateStore.refresh(opened);
+                // Controller handles all info box updates from here on
+                Platform.runLater(() -> controller = new CurrencyConverterController(view, opened, rateStore));
+
+                CurrencyUpdater updater = new CurrencyUpdater(api, opened, rateStore, SNAPSHOT_FILE);
+                updater.syncDatabaseByRange(
                         (processed, total) -> updateProgress(processed, total == 0 ? 1 : total),
-                        this::updateMessage
+                        this::updateMessage,
+                        CurrencyUpdater.PipelineOptions.DEFAULT
                 );
                 return null;
             }
@@ -116,18 +130,39 @@ public class CurrencyConverterApp extends Application {
         });
 
         syncTask.setOnFailed(e -> {
+            if (controller == null) {
+                // Without a database there is nothing to convert with
+                Throwable error = syncTask.getException();
+                errorLabel.setText("Failed to open the database: " + (error != null ? error.getMessage() : "unknown error"));
+                return;
+            }
             loadingBox.setVisible(false);
             root.setDisable(false);
             errorLabel.setText("Failed to load currency data.");
         });
 
-        new Thread(syncTask).start();
+        Thread loader = new Thread(syncTask, "database-loader");
+        loader.setDaemon(true);
+        loader.start();
 
         primaryStage.setScene(scene);
         primaryStage.setTitle("Currency Converter");
         primaryStage.show();
     }
 
+    /**
+     * Stops the controller's worker threads and closes the database.
+     */
+    @Override
+    public void stop() {
+        if (controller != null) {
+            controller.close();
+        }
+        if (db != null) {
+            db.close();
+        }
+    }
+
     /**
      * Creates and configures the main chart.
      */
@@ -176,7 +211,7 @@ public class CurrencyConverterApp extends Application {
      */
     private void showStartupError(String message) {
         System.err.println(message);
-        javafx.application.Platform.exit();
+        Platform.exit();
     }
 
     public static void main(String[] args) {
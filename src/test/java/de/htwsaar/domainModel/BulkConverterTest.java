@@ -0,0 +1,76 @@
+package de.htwsaar.domainModel;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class BulkConverterTest {
+
+    @Test
+    @DisplayName("Vector kernel gives the same results as the scalar loops")
+    void vectorMatchesScalar() {
+        // Only the benchmarks profile compiles the kernel and adds the incubator module to Surefire
+        BulkConverter.Kernel vector = BulkConverter.loadVectorKernel();
+        assertEquals(vector != null, BulkConverter.isVectorized());
+        assumeTrue(vector != null, "Vector kernel not compiled in");
+        Random random = new Random(7);
+        for (int length : new int[]{0, 1, 7, 64, 1001}) {
+            double[] amounts = new double[length];
+            long[] minorUnits = new long[length];
+            for (int i = 0; i < length; i++) {
+                amounts[i] = (random.nextDouble() - 0.5) * 1e6;
+                minorUnits[i] = i % 5 == 0 ? i * 50L - 250 : random.nextLong(-1_000_000_000L, 1_000_000_000L);
+            }
+
+            double[] expected = new double[length];
+            double[] actual = new double[length];
+            BulkConverter.SCALAR.convert(amounts, 1.0836, expected);
+            vector.convert(amounts, 1.0836, actual);
+            assertArrayEquals(expected, actual);
+
+            long[] expectedUnits = new long[length];
+            long[] actualUnits = new long[length];
+            BulkConverter.SCALAR.convert(minorUnits, 0.01, expectedUnits);
+            vector.convert(minorUnits, 0.01, actualUnits);
+            assertArrayEquals(expectedUnits, actualUnits);
+        }
+    }
+
+    @Test
+    @DisplayName("Minor units are rounded half away from zero, in place")
+    void minorUnitsRounding() {
+        long[] amounts = {250, -250, 1, -1, 3, 0};
+        BulkConverter.convert(amounts, 0.5, amounts);
+        assertArrayEquals(new long[]{125, -125, 1, -1, 2, 0}, amounts);
+
+        assertArrayEquals(new long[]{0, 0}, BulkConverter.convert(new long[]{100, -100}, Double.NaN));
+        assertThrows(IllegalArgumentException.class, () -> BulkConverter.convert(new long[2], 1.0, new long[3]));
+    }
+
+    @Test
+    @DisplayName("Each amount is converted across its own pair")
+    void manyPairs() {
+        CurrencyRegistry registry = CurrencyRegistry.of(Map.of("USD", 1, "EUR", 2, "PLN", 3, "RUB", 4));
+        LatestRates rates = LatestRates.of(registry,
+                new double[]{Double.NaN, 1.0, 0.5, 4.0, Double.NaN}, new long[]{0, 20000, 20000, 20000, 0});
+
+        double[] converted = BulkConverter.convert(new double[]{10, 10, 10, 10, 10},
+                new int[]{1, 2, 3, 1, 4}, new int[]{2, 3, 1, 1, 1}, rates);
+        assertArrayEquals(new double[]{5, 80, 2.5, 10, Double.NaN}, converted, 1e-12);
+        assertArrayEquals(new double[]{40, 80}, BulkConverter.convert(new double[]{10, 20}, "USD", "PLN", rates), 1e-12);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> BulkConverter.convert(new double[1], new int[]{1}, new int[]{9}, rates));
+        assertThrows(IllegalArgumentException.class,
+                () -> BulkConverter.convert(new double[2], new int[]{1}, new int[]{2}, rates));
+
+        double[] inPlace = {10, 10};
+        BulkConverter.convert(inPlace, new int[]{2, 3}, new int[]{1, 2}, rates, inPlace);
+        assertArrayEquals(new double[]{20, 1.25}, inPlace, 1e-12);
+    }
+}
@@ -0,0 +1,84 @@
+package de.htwsaar.domainModel;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChartLoaderTest {
+
+    /**
+     * @return Task that keeps the worker busy until released, counting the interrupt it receives
+     */
+    private static FutureTask<String> blockingTask(CountDownLatch started, CountDownLatch release,
+                                                   CountDownLatch interrupted) {
+        return new FutureTask<>(() -> {
+            started.countDown();
+            while (true) {
+                try {
+                    release.await();
+                    return "stale";
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+            }
+        });
+    }
+
+    @Test
+    @DisplayName("A new request cancels the running and the queued load, and only the newest is current")
+    void latestWinsTest() throws Exception {
+        try (ChartLoader loader = new ChartLoader("test-loader")) {
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            CountDownLatch interrupted = new CountDownLatch(1);
+            FutureTask<String> running = blockingTask(started, release, interrupted);
+            assertTrue(loader.submit("EUR/USD ALL", running));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            FutureTask<String> queued = new FutureTask<>(() -> "queued");
+            FutureTask<String> newest = new FutureTask<>(() -> Thread.currentThread().getName());
+            assertTrue(loader.submit("EUR/USD YEAR", queued));
+            assertTrue(loader.submit("EUR/USD MONTH", newest));
+            assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+            release.countDown();
+
+            assertTrue(running.isCancelled());
+            assertTrue(queued.isCancelled());
+            assertTrue(newest.get(5, TimeUnit.SECONDS).startsWith("test-loader-"));
+            assertFalse(loader.isCurrent(running));
+            assertTrue(loader.isCurrent(newest));
+        }
+    }
+
+    @Test
+    @DisplayName("A duplicate of the request in flight is coalesced, a repeat after it finished runs again")
+    void coalesceTest() throws Exception {
+        try (ChartLoader loader = new ChartLoader("test-loader")) {
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            FutureTask<String> first = new FutureTask<>(() -> {
+                started.countDown();
+                release.await();
+                return "first";
+            });
+            FutureTask<String> duplicate = new FutureTask<>(() -> "duplicate");
+
+            assertTrue(loader.submit("EUR/USD ALL", first));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            assertFalse(loader.submit("EUR/USD ALL", duplicate));
+            assertTrue(loader.isCurrent(first));
+            assertFalse(duplicate.isDone());
+
+            release.countDown();
+            assertEquals("first", first.get(5, TimeUnit.SECONDS));
+            FutureTask<String> repeat = new FutureTask<>(() -> "repeat");
+            assertTrue(loader.submit("EUR/USD ALL", repeat));
+            assertEquals("repeat", repeat.get(5, TimeUnit.SECONDS));
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package de.htwsaar.domainModel;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChartSeriesCacheTest {
+
+    private static RateSeries series(int points) {
+        return new RateSeries(new int[points], new double[points]);
+    }
+
+    @Test
+    @DisplayName("The least recently used series are dropped when the memory budget is exceeded")
+    void memoryBoundTest() {
+        ChartSeriesCache cache = new ChartSeriesCache(2_000);
+        RateSeries first = series(50);
+        cache.put("EUR/USD ALL", 1, first);
+        cache.put("EUR/USD YEAR", 1, series(50));
+        assertSame(first, cache.get("EUR/USD ALL", 1));
+
+        cache.put("EUR/USD MONTH", 1, series(50)); // YEAR is the least recently used
+        assertEquals(2, cache.size());
+        assertTrue(cache.bytes() <= 2_000);
+        assertNull(cache.get("EUR/USD YEAR", 1));
+        assertNotNull(cache.get("EUR/USD ALL", 1));
+
+        cache.put("EUR/USD DAY", 1, series(1_000)); // Larger than the whole budget
+        assertFalse(cache.contains("EUR/USD DAY", 1));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    @DisplayName("A newer data epoch drops all series and results of older epochs are not stored")
+    void epochTest() {
+        ChartSeriesCache cache = new ChartSeriesCache(1 << 20);
+        cache.put("EUR/USD ALL", 1, series(10));
+
+        assertNull(cache.get("EUR/USD ALL", 2));
+        assertEquals(0, cache.size());
+        cache.put("EUR/USD YEAR", 1, series(10)); // Computed before the sync finished
+        assertFalse(cache.contains("EUR/USD YEAR", 1));
+        assertFalse(cache.contains("EUR/USD YEAR", 2));
+    }
+
+    @Test
+    @DisplayName("The data epoch changes when rates are committed")
+    void dataVersionTest() throws SQLException {
+        DatabaseManager db = DatabaseManagerTest.createInMemoryDbWithSchemaAndData();
+        long before = db.getDataVersion();
+        db.getLatestExchangeRate("USD", "EUR");
+        assertEquals(before, db.getDataVersion());
+
+        db.upsertRate("EUR", db.getLatestDay() + 1, 0.9);
+        assertTrue(db.getDataVersion() > before);
+    }
+}
@@ -0,0 +1,51 @@
+package de.htwsaar.domainModel;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressedHistoryCacheTest {
+
+    @Test
+    @DisplayName("Cross series from the compressed histories match the database")
+    void crossRateSeriesTest() throws SQLException {
+        DatabaseManager db = DatabaseManagerTest.createInMemoryDbWithSchemaAndData();
+        CompressedHistoryCache cache = new CompressedHistoryCache(db);
+        CurrencyRegistry registry = db.getCurrencyRegistry();
+        long start = LocalDate.of(2000, 1, 1).toEpochDay();
+        long end = LocalDate.of(2030, 1, 1).toEpochDay();
+
+        for (String from : registry.codes()) {
+            for (String to : registry.codes()) {
+                RateSeries expected = db.getCrossRateSeries(registry.id(from), registry.id(to), RateTier.DAY, start, end);
+                RateSeries actual = cache.getCrossRateSeries(registry.id(from), registry.id(to), start, end);
+                assertArrayEquals(expected.days(), actual.days(), from + "/" + to);
+                assertArrayEquals(expected.rates(), actual.rates(), 1e-12, from + "/" + to);
+            }
+        }
+        int eur = registry.id("EUR");
+        assertArrayEquals(db.getRateSeries(eur, start, end).rates(), cache.getRateSeries(eur, start, end).rates());
+
+        CompressedHistoryCache.Stats stats = cache.getStats();
+        assertEquals(registry.size(), stats.currencies());
+        assertTrue(stats.points() > 0);
+        assertTrue(stats.bytesPerPoint() > 0);
+    }
+
+    @Test
+    @DisplayName("New rates drop the cached histories")
+    void invalidationTest() throws SQLException {
+        DatabaseManager db = DatabaseManagerTest.createInMemoryDbWithSchemaAndData();
+        CompressedHistoryCache cache = new CompressedHistoryCache(db);
+        int eur = db.getCurrencyRegistry().id("EUR");
+        int before = cache.getHistory(eur).size();
+
+        db.upsertRate(eur, db.getLatestDay() + 1, 0.95);
+        assertEquals(before + 1, cache.getHistory(eur).size());
+        assertEquals(0.95, cache.getRateSeries(eur, db.getLatestDay(), db.getLatestDay()).rates()[0], 0);
+    }
+}
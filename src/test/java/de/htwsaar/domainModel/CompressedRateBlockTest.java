@@ -0,0 +1,90 @@
+package de.htwsaar.domainModel;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressedRateBlockTest {
+
+    private static void assertDecodes(long[] times, double[] values, CompressedRateBlock block) {
+        assertEquals(times.length, block.size());
+        CompressedRateBlock.Cursor cursor = block.cursor();
+        for (int i = 0; i < times.length; i++) {
+            assertTrue(cursor.next(), "point " + i);
+            assertEquals(times[i], cursor.time(), "time " + i);
+            assertEquals(Double.doubleToLongBits(values[i]), Double.doubleToLongBits(cursor.value()), "value " + i);
+        }
+        assertFalse(cursor.next());
+    }
+
+    @Test
+    @DisplayName("Irregular times, random values and NaN decode exactly")
+    void roundTripTest() {
+        Random random = new Random(42);
+        int n = 5_000;
+        long[] times = new long[n];
+        double[] values = new double[n];
+        CompressedRateBlock.Encoder encoder = CompressedRateBlock.encoder();
+        long time = -1_000_000;
+        double value = 1.2345;
+        for (int i = 0; i < n; i++) {
+            int kind = random.nextInt(6);
+            time += switch (kind) {
+                case 0 -> 1;
+                case 1 -> 1 + random.nextInt(100);
+                case 2 -> 1 + random.nextInt(100_000);
+                case 3 -> 1L + random.nextInt(Integer.MAX_VALUE) * 4096L;
+                default -> 60;
+            };
+            if (kind == 4) {
+                value = random.nextDouble() * 1e6;
+            } else if (kind == 5 && random.nextInt(50) == 0) {
+                value = Double.NaN;
+            } else if (kind != 0) {
+                value = 1 + random.nextGaussian() / 100;
+            }
+            times[i] = time;
+            values[i] = value;
+            encoder.add(time, value);
+        }
+        assertDecodes(times, values, encoder.build());
+    }
+
+    @Test
+    @DisplayName("Long runs of the same value are stored once and decode exactly")
+    void runTest() {
+        // Minute rates over a weekend: the Friday close repeats for two days, then trading resumes
+        int n = 3 * 70_000;
+        long[] times = new long[n];
+        double[] values = new double[n];
+        CompressedRateBlock.Encoder encoder = CompressedRateBlock.encoder();
+        for (int i = 0; i < n; i++) {
+            times[i] = 28_000_000L + i;
+            values[i] = i < 1_000 ? 1.08 + i * 1e-5 : i < n - 1_000 ? 1.0899 : 1.0899 - (i % 7) * 1e-4;
+            encoder.add(times[i], values[i]);
+        }
+        CompressedRateBlock block = encoder.build();
+
+        assertDecodes(times, values, block);
+        assertTrue(block.bitsPerPoint() < 1, "bits per point: " + block.bitsPerPoint());
+        assertTrue(block.bytes() < n / 8);
+    }
+
+    @Test
+    @DisplayName("Series decode by day range and times must increase")
+    void seriesTest() {
+        RateSeries series = new RateSeries(new int[]{10, 11, 12, 15, 16}, new double[]{1.0, 1.1, 1.1, 1.2, 1.3});
+        CompressedRateBlock block = CompressedRateBlock.of(series);
+
+        RateSeries middle = block.toSeries(11, 15);
+        assertArrayEquals(new int[]{11, 12, 15}, middle.days());
+        assertArrayEquals(new double[]{1.1, 1.1, 1.2}, middle.rates());
+        assertEquals(10, block.firstTime());
+        assertEquals(16, block.lastTime());
+        assertEquals(0, CompressedRateBlock.encoder().build().size());
+        assertThrows(IllegalArgumentException.class, () -> CompressedRateBlock.encoder().add(5, 1).add(5, 1));
+    }
+}
@@ -1,7 +1,10 @@
 package de.htwsaar.domainModel;
 
+import com.sun.net.httpserver.HttpServer;
 import de.htwsaar.exceptions.CurrencyApiException;
+import de.htwsaar.exceptions.CurrencyRangeNotSupportedException;
 import okhttp3.*;
+import okio.Buffer;
 import org.json.JSONObject;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -13,6 +16,9 @@ import org.mockito.*;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -39,7 +45,7 @@ class CurrencyAPITest {
         when(mockClient.newCall(any(Request.class))).thenReturn(mockCall);
         when(mockCall.execute()).thenReturn(mockResponse);
         when(mockResponse.body()).thenReturn(mockBody);
-        when(mockBody.string()).thenReturn(jsonResponse);
+        when(mockBody.source()).thenReturn(new Buffer().writeUtf8(jsonResponse));
         return new CurrencyAPI("test-key", mockClient);
     }
 
@@ -161,4 +167,102 @@ class CurrencyAPITest {
         assertEquals("Euro", api.getFullNameForCode("EUR"));
         assertNull(api.getFullNameForCode("JPY"));
     }
+
+    /**
+     * Starts a local HTTP server answering time-series requests with canned JSON.
+     * Every request query is recorded in {@code queries}.
+     */
+    private static HttpServer startTimeSeriesServer(int status, String cannedBody, List<String> queries) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/time-series.json", exchange -> {
+            String query = exchange.getRequestURI().getQuery();
+            queries.add(query);
+            String body = cannedBody;
+            if (body == null) {
+                // Echo one day per requested date with a rate derived from the day of month
+                Map<String, String> params = Arrays.stream(query.split("&"))
+                        .map(p -> p.split("=", 2))
+                        .collect(Collectors.toMap(p -> p[0], p -> p[1]));
+                StringBuilder days = new StringBuilder();
+                for (LocalDate d = LocalDate.parse(params.get("start")); !d.isAfter(LocalDate.parse(params.get("end"))); d = d.plusDays(1)) {
+                    if (days.length() > 0) days.append(',');
+                    days.append('"').append(d).append("\":{\"USD\":1,\"EUR\":").append(d.getDayOfMonth()).append('}');
+                }
+                body = "{\"base\":\"USD\",\"rates\":{" + days + "}}";
+            }
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    private static CurrencyAPI createApiForServer(HttpServer server) {
+        return new CurrencyAPI("test-key", new OkHttpClient(),
+                "http://127.0.0.1:" + server.getAddress().getPort() + "/api/");
+    }
+
+    @Test
+    @DisplayName("Range fetch streams the days of a canned response")
+    void streamUsdRatesForRangeCanned() throws Exception {
+        String json = "{\"disclaimer\":\"Usage subject to terms\",\"start_date\":\"2024-01-01\"," +
+                "\"end_date\":\"2024-01-03\",\"base\":\"USD\",\"rates\":{" +
+                "\"2024-01-01\":{\"USD\":1,\"EUR\":0.9,\"JPY\":141.2}," +
+                "\"2024-01-02\":{\"USD\":1,\"EUR\":0.905}," +
+                "\"2024-01-03\":{\"USD\":1,\"EUR\":0.91}}}";
+        List<String> queries = new ArrayList<>();
+        HttpServer server = startTimeSeriesServer(200, json, queries);
+        try {
+            Map<LocalDate, Map<String, Double>> received = new LinkedHashMap<>();
+            createApiForServer(server).streamUsdRatesForRange(
+                    LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 3), received::put);
+
+            assertEquals(List.of(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 2), LocalDate.of(2024, 1, 3)),
+                    new ArrayList<>(received.keySet()));
+            assertEquals(Map.of("USD", 1.0, "EUR", 0.9, "JPY", 141.2), received.get(LocalDate.of(2024, 1, 1)));
+            assertEquals(1, queries.size());
+            assertTrue(queries.get(0).contains("start=2024-01-01") && queries.get(0).contains("end=2024-01-03"));
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    @DisplayName("Long ranges are split into several time-series requests")
+    void streamUsdRatesForRangeChunks() throws Exception {
+        List<String> queries = new ArrayList<>();
+        HttpServer server = startTimeSeriesServer(200, null, queries);
+        try {
+            List<LocalDate> received = new ArrayList<>();
+            createApiForServer(server).streamUsdRatesForRange(
+                    LocalDate.of(2024, 1, 1), LocalDate.of(2024, 3, 31), (date, rates) -> {
+                        received.add(date);
+                        assertEquals(date.getDayOfMonth(), rates.get("EUR"), 1e-12);
+                    });
+
+            assertEquals(91, received.size());
+            assertEquals(LocalDate.of(2024, 3, 31), received.get(received.size() - 1));
+            assertEquals(3, queries.size());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    @DisplayName("Plans without time-series access raise CurrencyRangeNotSupportedException")
+    void streamUsdRatesForRangeNotAllowed() throws Exception {
+        String json = "{\"error\":true,\"status\":403,\"message\":\"not_allowed\"," +
+                "\"description\":\"Time-series requests are not available on your plan.\"}";
+        HttpServer server = startTimeSeriesServer(403, json, new ArrayList<>());
+        try {
+            CurrencyAPI api = createApiForServer(server);
+            assertThrows(CurrencyRangeNotSupportedException.class, () -> api.streamUsdRatesForRange(
+                    LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 3), (date, rates) -> fail("No day expected")));
+        } finally {
+            server.stop(0);
+        }
+    }
 }
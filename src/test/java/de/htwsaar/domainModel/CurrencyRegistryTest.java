@@ -0,0 +1,59 @@
+package de.htwsaar.domainModel;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CurrencyRegistryTest {
+
+    @Test
+    @DisplayName("Codes and ids map both ways")
+    void lookupsTest() {
+        CurrencyRegistry registry = CurrencyRegistry.of(Map.of("USD", 1, "EUR", 2, "JPY", 3));
+
+        assertEquals(2, registry.id("EUR"));
+        assertEquals("JPY", registry.code(3));
+        assertEquals(-1, registry.idOf("CHF"));
+        assertEquals(List.of("EUR", "JPY", "USD"), registry.codes());
+        assertArrayEquals(new int[]{2, 3, 1}, registry.ids());
+        assertFalse(registry.contains(0));
+        assertFalse(registry.contains(4));
+        assertThrows(IllegalArgumentException.class, () -> registry.id("CHF"));
+        assertThrows(IllegalArgumentException.class, () -> registry.code(7));
+    }
+
+    @Test
+    @DisplayName("Adding a currency returns a new registry and leaves the old one unchanged")
+    void copyOnWriteTest() {
+        CurrencyRegistry registry = CurrencyRegistry.of(Map.of("USD", 1));
+        CurrencyRegistry grown = registry.with("CHF", 2);
+
+        assertFalse(registry.contains("CHF"));
+        assertEquals(2, grown.id("CHF"));
+        assertSame(grown, grown.with("CHF", 2));
+        assertThrows(IllegalArgumentException.class, () -> grown.with("CHF", 3));
+    }
+
+    @Test
+    @DisplayName("The database registry follows new currencies and the id APIs match the code APIs")
+    void databaseRegistryTest() throws SQLException {
+        DatabaseManager db = DatabaseManagerTest.createInMemoryDbWithSchemaAndData();
+        CurrencyRegistry before = db.getCurrencyRegistry();
+        int chf = db.addCurrency("CHF");
+
+        assertFalse(before.contains("CHF"));
+        assertEquals(chf, db.getCurrencyRegistry().id("CHF"));
+        assertEquals(chf, db.addCurrency("CHF"));
+
+        int usd = db.getCurrencyRegistry().id("USD");
+        db.upsertRate(chf, db.getLatestDay(), 0.8);
+        assertEquals(0.8, db.getLatestExchangeRate(usd, chf), 1e-12);
+        assertEquals(db.getValidRange("CHF"), db.getValidRange(chf));
+        assertThrows(IllegalArgumentException.class, () -> db.getValidRange(chf + 1));
+    }
+}
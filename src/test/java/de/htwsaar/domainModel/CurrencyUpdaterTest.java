@@ -1,17 +1,37 @@
 package de.htwsaar.domainModel;
 
+import de.htwsaar.exceptions.CurrencyApiException;
+import de.htwsaar.exceptions.CurrencyRangeNotSupportedException;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
 import javafx.concurrent.Task;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
 class CurrencyUpdaterTest {
     @Test
     @DisplayName("Verification if does not throw")
-    void syncDatabaseWithProgressTest(){
+    void syncDatabaseWithProgressTest(@TempDir Path dir) throws IOException {
+        // Work on a copy: the first open migrates the bundled database
+        Path copy = Files.copy(Path.of("data", "Exchange_Rates.db"), dir.resolve("Exchange_Rates.db"));
         CurrencyAPI api = new CurrencyAPI();
-        DatabaseManager db = new DatabaseManager();
+        DatabaseManager db = new DatabaseManager("jdbc:sqlite:" + copy);
         CurrencyUpdater updater = new CurrencyUpdater(api, db);
 
         Task<Void> syncTask = new Task<>() {
@@ -27,4 +47,153 @@ class CurrencyUpdaterTest {
 
         assertDoesNotThrow(syncTask::run);
     }
-}
\ No newline at end of file
+
+    /**
+     * API stub with deterministic rates, a new currency after a while and some failing days.
+     */
+    private static CurrencyAPI createFakeApi() throws CurrencyApiException {
+        CurrencyAPI api = mock(CurrencyAPI.class);
+        when(api.getAllUsdRatesForDate(any(LocalDate.class))).thenAnswer(invocation -> {
+            LocalDate date = invocation.getArgument(0);
+            long day = date.toEpochDay();
+            if (day % 17 == 0) {
+                throw new CurrencyApiException("Simulated failure", new IOException("offline"));
+            }
+            if (day % 13 == 0) {
+                return Map.of();
+            }
+            Map<String, Double> rates = new HashMap<>();
+            rates.put("USD", 1.0);
+            rates.put("EUR", 0.8 + (day % 100) / 1000.0);
+            if (date.isAfter(LocalDate.of(2025, 9, 1))) {
+                rates.put("CHF", 0.7 + (day % 50) / 1000.0);
+            }
+            return rates;
+        });
+        when(api.getFullNameForCode(any())).thenReturn("Swiss Franc");
+        return api;
+    }
+
+    private static Map<String, Map<String, Double>> dumpRates(DatabaseManager db) throws SQLException {
+        Map<String, Map<String, Double>> dump = new TreeMap<>();
+        String end = LocalDate.now().toString();
+        for (String code : db.getAllCurrencyCodes()) {
+            String start = db.getFirstValidDate(code);
+            if (start != null) {
+                dump.put(code, db.getDownsampledRates(code, start, end, Integer.MAX_VALUE));
+            }
+        }
+        return dump;
+    }
+
+    @Test
+    @DisplayName("Pipelined sync writes the same data and progress as the sequential sync")
+    void syncDatabasePipelinedMatchesSequential() throws Exception {
+        DatabaseManager sequentialDb = DatabaseManagerTest.createInMemoryDbWithSchemaAndData();
+        DatabaseManager pipelinedDb = DatabaseManagerTest.createInMemoryDbWithSchemaAndData();
+
+        List<Integer> sequentialProgress = new ArrayList<>();
+        new CurrencyUpdater(createFakeApi(), sequentialDb)
+                .syncDatabaseWithProgress((processed, total) -> sequentialProgress.add(processed), null);
+
+        List<Integer> pipelinedProgress = new ArrayList<>();
+        AtomicInteger reportedTotal = new AtomicInteger();
+        new CurrencyUpdater(createFakeApi(), pipelinedDb).syncDatabasePipelined(
+                (processed, total) -> {
+                    pipelinedProgress.add(processed);
+                    reportedTotal.set(total);
+                },
+                null,
+                new CurrencyUpdater.PipelineOptions(4, 10_000));
+
+        assertEquals(sequentialDb.getLatestDate(), pipelinedDb.getLatestDate());
+        assertEquals(sequentialProgress, pipelinedProgress);
+        assertEquals(pipelinedProgress.size(), reportedTotal.get());
+        assertEquals(dumpRates(sequentialDb), dumpRates(pipelinedDb));
+        assertTrue(pipelinedDb.getAllCurrencyCodes().contains("CHF"));
+    }
+
+    @Test
+    @DisplayName("A backfill commits and refreshes the rate store once per chunk of days, not once per day")
+    void syncCommitsInChunks() throws Exception {
+        DatabaseManager db = DatabaseManagerTest.createInMemoryDbWithSchemaAndData();
+        long firstMissing = db.getLatestDay() + 1;
+        long before = db.getDataVersion();
+        AtomicInteger refreshes = new AtomicInteger();
+        RateStore store = new RateStore() {
+            @Override
+            public synchronized void refresh(DatabaseManager database) throws SQLException {
+                refreshes.incrementAndGet();
+                super.refresh(database);
+            }
+        };
+
+        new CurrencyUpdater(createFakeApi(), db, store).syncDatabaseWithProgress(null, null);
+
+        long days = LocalDate.now().toEpochDay() + 1 - firstMissing;
+        assertTrue(db.getLatestDay() > firstMissing + 64);
+        assertTrue(db.getDataVersion() - before <= (days + 63) / 64,
+                "Expected at most one commit per 64 days, got " + (db.getDataVersion() - before));
+        assertTrue(refreshes.get() <= (days + 63) / 64,
+                "Expected at most one refresh per 64 days, got " + refreshes.get());
+        assertEquals(db.getLatestDay(), store.getLastDay());
+    }
+
+    @Test
+    @DisplayName("Invalid pipeline options are rejected")
+    void pipelineOptionsValidation() {
+        assertThrows(IllegalArgumentException.class, () -> new CurrencyUpdater.PipelineOptions(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new CurrencyUpdater.PipelineOptions(1, 0));
+    }
+
+    @Test
+    @DisplayName("Range sync writes the same data as the sequential sync")
+    void syncDatabaseByRangeMatchesSequential() throws Exception {
+        DatabaseManager sequentialDb = DatabaseManagerTest.createInMemoryDbWithSchemaAndData();
+        DatabaseManager rangeDb = DatabaseManagerTest.createInMemoryDbWithSchemaAndData();
+
+        new CurrencyUpdater(createFakeApi(), sequentialDb).syncDatabaseWithProgress(null, null);
+
+        // Range responses built from the per-day stub, without the days the stub fails or leaves empty
+        CurrencyAPI api = createFakeApi();
+        doAnswer(invocation -> {
+            LocalDate start = invocation.getArgument(0);
+            LocalDate end = invocation.getArgument(1);
+            BiConsumer<LocalDate, Map<String, Double>> sink = invocation.getArgument(2);
+            for (LocalDate date = start; !date.isAfter(end); date = date.plusDays(1)) {
+                long day = date.toEpochDay();
+                if (day % 17 != 0 && day % 13 != 0) {
+                    sink.accept(date, api.getAllUsdRatesForDate(date));
+                }
+            }
+            return null;
+        }).when(api).streamUsdRatesForRange(any(), any(), any());
+
+        List<Integer> progress = new ArrayList<>();
+        new CurrencyUpdater(api, rangeDb).syncDatabaseByRange((processed, total) -> progress.add(processed), null,
+                new CurrencyUpdater.PipelineOptions(4, 10_000));
+
+        assertEquals(dumpRates(sequentialDb), dumpRates(rangeDb));
+        assertEquals(sequentialDb.getLatestDate(), rangeDb.getLatestDate());
+        for (int i = 0; i < progress.size(); i++) {
+            assertEquals(i + 1, progress.get(i));
+        }
+    }
+
+    @Test
+    @DisplayName("Range sync falls back to daily requests when ranges are not supported")
+    void syncDatabaseByRangeFallsBack() throws Exception {
+        DatabaseManager sequentialDb = DatabaseManagerTest.createInMemoryDbWithSchemaAndData();
+        DatabaseManager rangeDb = DatabaseManagerTest.createInMemoryDbWithSchemaAndData();
+
+        new CurrencyUpdater(createFakeApi(), sequentialDb).syncDatabaseWithProgress(null, null);
+
+        CurrencyAPI api = createFakeApi();
+        doThrow(new CurrencyRangeNotSupportedException("not_allowed"))
+                .when(api).streamUsdRatesForRange(any(), any(), any());
+        new CurrencyUpdater(api, rangeDb).syncDatabaseByRange(null, null,
+                new CurrencyUpdater.PipelineOptions(4, 10_000));
+
+        assertEquals(dumpRates(sequentialDb), dumpRates(rangeDb));
+    }
+}
@@ -2,9 +2,14 @@ package de.htwsaar.domainModel;
 
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.*;
+import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.*;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -12,8 +17,14 @@ class DatabaseManagerTest {
 
     static DatabaseManager createInMemoryDbWithSchemaAndData() throws SQLException {
         DatabaseManager db = new DatabaseManager("jdbc:sqlite::memory:");
-        Connection conn = db.getConnection();
+        createLegacyTable(db.getConnection());
+        return db;
+    }
 
+    /**
+     * Creates the legacy wide rate table with test data.
+     */
+    static void createLegacyTable(Connection conn) throws SQLException {
         try (Statement stmt = conn.createStatement()) {
             // Drop table if exists
             stmt.execute("DROP TABLE IF EXISTS Exchange_Rate_Report");
@@ -47,7 +58,6 @@ class DatabaseManagerTest {
                         "('2025-06-01', 'Jun-01-2025', 1.0, 1.0, 4.0, 30.0, 100.0)"
             );
         }
-        return db;
     }
 
     @Test
@@ -161,10 +171,508 @@ class DatabaseManagerTest {
         }
     }
 
+    @Test
+    @DisplayName("Legacy wide table is migrated to the normalized rate table")
+    void legacySchemaMigrationTest() throws SQLException {
+        DatabaseManager databaseManager = createInMemoryDbWithSchemaAndData();
+        databaseManager.getAllCurrencyCodes();
+
+        Connection conn = databaseManager.getConnection();
+        try (Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery(
+                    "SELECT COUNT(*) FROM sqlite_master WHERE type = 'table' AND name = 'Exchange_Rate_Report'")) {
+                assertEquals(0, rs.getInt(1), "Legacy table should be dropped");
+            }
+            try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM Exchange_Rate")) {
+                assertEquals(15, rs.getInt(1), "Every non-null legacy cell should be copied");
+            }
+            try (ResultSet rs = stmt.executeQuery(
+                    "SELECT r.day, r.rate FROM Exchange_Rate r JOIN Currency c ON c.id = r.currency_id " +
+                    "WHERE c.code = 'PLN' ORDER BY r.day LIMIT 1")) {
+                assertEquals(LocalDate.of(1994, 1, 31).toEpochDay(), rs.getLong(1));
+                assertEquals(4.0, rs.getDouble(2), 1e-12);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("A file database is backed up before the legacy table is dropped")
+    void legacyMigrationBackupTest(@TempDir Path dir) throws SQLException {
+        Path file = dir.resolve("rates.db");
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + file)) {
+            createLegacyTable(conn);
+        }
+        try (DatabaseManager db = new DatabaseManager("jdbc:sqlite:" + file)) {
+            assertEquals(5, db.getAllCurrencyCodes().size());
+        }
+
+        try (Connection backup = DriverManager.getConnection("jdbc:sqlite:" + file + ".bak");
+             Statement stmt = backup.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*), COUNT(PLN) FROM Exchange_Rate_Report")) {
+            assertEquals(11, rs.getInt(1));
+            assertEquals(4, rs.getInt(2));
+        }
+    }
+
+    @Test
+    @DisplayName("Legacy text cells are stored as REAL and non-numeric cells are rejected")
+    void typedRateMigrationTest() throws SQLException {
+        DatabaseManager databaseManager = new DatabaseManager("jdbc:sqlite::memory:");
+        Connection conn = databaseManager.getConnection();
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("CREATE TABLE Exchange_Rate_Report (Date TEXT, iso_date TEXT, USD TEXT, EUR)");
+            stmt.executeUpdate("INSERT INTO Exchange_Rate_Report VALUES " +
+                    "('01.01.2020', '2020-01-01', '1', ' 0.9 '), " +
+                    "('02.01.2020', '2020-01-02', '1.0', 'n/a'), " +
+                    "('03.01.2020', '2020-01-03', '1e0', 0.95)");
+        }
+        assertEquals(0.95, databaseManager.getLatestExchangeRate("USD", "EUR"), 1e-12);
+
+        try (Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*), SUM(typeof(rate) = 'real') FROM Exchange_Rate")) {
+                assertEquals(5, rs.getInt(1), "The non-numeric cell should be skipped");
+                assertEquals(5, rs.getInt(2), "Every rate should be stored as REAL");
+            }
+            assertThrows(SQLException.class,
+                    () -> stmt.executeUpdate("INSERT INTO Exchange_Rate (currency_id, day, rate) VALUES (1, 1, 'abc')"));
+        }
+        assertEquals(0.9, DatabaseManager.parseRate(" 0.9 "), 1e-12);
+        assertTrue(Double.isNaN(DatabaseManager.parseRate("NaN")));
+        assertTrue(Double.isNaN(DatabaseManager.parseRate("0x1p3")));
+    }
+
+    @Test
+    @DisplayName("A rate table without the REAL check is upgraded and its derived tables rebuilt")
+    void untypedRateTableUpgradeTest() throws SQLException {
+        DatabaseManager databaseManager = new DatabaseManager("jdbc:sqlite::memory:");
+        Connection conn = databaseManager.getConnection();
+        long day = LocalDate.of(2020, 1, 1).toEpochDay();
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("CREATE TABLE Currency (id INTEGER PRIMARY KEY, code TEXT NOT NULL UNIQUE)");
+            stmt.executeUpdate("CREATE TABLE Exchange_Rate (currency_id INTEGER NOT NULL, day INTEGER NOT NULL, " +
+                    "rate REAL NOT NULL, PRIMARY KEY (currency_id, day)) WITHOUT ROWID");
+            stmt.executeUpdate("INSERT INTO Currency VALUES (1, 'USD'), (2, 'EUR')");
+            stmt.executeUpdate("INSERT INTO Exchange_Rate VALUES (1, " + day + ", 1), (1, " + (day + 1) + ", 1), " +
+                    "(2, " + day + ", 0.9), (2, " + (day + 1) + ", 'bad')");
+        }
+
+        assertEquals("2020-01-01", databaseManager.getLastValidDate("EUR"));
+        assertEquals(0.9, databaseManager.getAggregatedRates("EUR", RateTier.MONTH, "2020-01-01", "2020-01-31")
+                .get(0).mean(), 1e-12);
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*), SUM(typeof(rate) = 'real') FROM Exchange_Rate")) {
+            assertEquals(3, rs.getInt(1));
+            assertEquals(3, rs.getInt(2));
+        }
+    }
+
+    @Test
+    @DisplayName("Epoch-day APIs match the ISO date wrappers")
+    void epochDayApiTest() throws SQLException {
+        DatabaseManager databaseManager = createInMemoryDbWithSchemaAndData();
+        long latestDay = databaseManager.getLatestDay();
+        assertEquals(databaseManager.getLatestDate(), LocalDate.ofEpochDay(latestDay).toString());
+
+        long firstDay = databaseManager.getValidRange("EUR").firstDay();
+        String firstDate = LocalDate.ofEpochDay(firstDay).toString();
+        RateSeries byDay = databaseManager.getCrossRateSeries("USD", "EUR", RateTier.DAY, firstDay, latestDay);
+        RateSeries byDate = databaseManager.getCrossRateSeries("USD", "EUR", RateTier.DAY, firstDate,
+                databaseManager.getLatestDate());
+        assertArrayEquals(byDate.days(), byDay.days());
+        assertArrayEquals(byDate.rates(), byDay.rates());
+
+        RateSeries sampled = databaseManager.getDownsampledRates("EUR", firstDay, latestDay, 3);
+        Map<String, Double> sampledByDate = databaseManager.getDownsampledRates("EUR", firstDate,
+                databaseManager.getLatestDate(), 3);
+        assertEquals(sampledByDate.size(), sampled.size());
+        assertEquals(sampledByDate.get(LocalDate.ofEpochDay(sampled.days()[0]).toString()), sampled.rates()[0]);
+
+        databaseManager.addCurrency("CHF");
+        databaseManager.upsertRate("CHF", latestDay + 1, 0.8);
+        assertEquals(latestDay + 1, databaseManager.getLatestDay());
+        List<Long> scanned = new ArrayList<>();
+        databaseManager.scanRates(latestDay, List.of("CHF"), (day, rates) -> scanned.add(day));
+        assertEquals(List.of(latestDay + 1), scanned);
+    }
+
+    @Test
+    @DisplayName("Readers on other threads see committed data while a backfill is running")
+    void concurrentReadersDuringBackfillTest(@TempDir Path dir) throws Exception {
+        try (DatabaseManager db = new DatabaseManager("jdbc:sqlite:" + dir.resolve("rates.db"))) {
+            db.addCurrency("USD");
+            db.addCurrency("EUR");
+            long start = LocalDate.of(2000, 1, 1).toEpochDay();
+            db.upsertRates(start, Map.of("USD", 1.0, "EUR", 0.9));
+            try (Statement stmt = db.getConnection().createStatement();
+                 ResultSet rs = stmt.executeQuery("PRAGMA journal_mode")) {
+                assertEquals("wal", rs.getString(1));
+            }
+
+            ExecutorService pool = Executors.newFixedThreadPool(4);
+            try {
+                Future<?> writer = pool.submit(() -> {
+                    Map<LocalDate, Map<String, Double>> days = new LinkedHashMap<>();
+                    for (int i = 1; i <= 2000; i++) {
+                        days.put(LocalDate.ofEpochDay(start + i), Map.of("USD", 1.0, "EUR", 0.9 + i / 1e5));
+                    }
+                    db.upsertRates(days);
+                    return null;
+                });
+                List<Future<Integer>> readers = new ArrayList<>();
+                for (int r = 0; r < 3; r++) {
+                    readers.add(pool.submit(() -> {
+                        int reads = 0;
+                        while (!writer.isDone() || reads == 0) {
+                            long latest = db.getLatestDay();
+                            RateSeries series = db.getCrossRateSeries("USD", "EUR", RateTier.DAY, start, latest);
+                            assertEquals(latest - start + 1, series.size());
+                            assertEquals(0.91, db.getLatestExchangeRate("USD", "EUR"), 0.011);
+                            reads++;
+                        }
+                        return reads;
+                    }));
+                }
+                writer.get(60, TimeUnit.SECONDS);
+                for (Future<Integer> reader : readers) {
+                    assertTrue(reader.get(60, TimeUnit.SECONDS) > 0);
+                }
+            } finally {
+                pool.shutdownNow();
+            }
+            assertEquals(start + 2000, db.getLatestDay());
+            assertEquals(2001, db.getValidRange("EUR").count());
+        }
+    }
+
+    @Test
+    @DisplayName("The latest exchange rate uses the latest valid rate of each currency")
+    void getLatestExchangeRateSkipsInvalidRows() throws SQLException {
+        DatabaseManager databaseManager = createInMemoryDbWithSchemaAndData();
+        databaseManager.upsertRate("USD", "2025-06-02", 1.0);
+        databaseManager.upsertRate("PLN", "2025-06-02", -1);
+
+        assertEquals(4.0, databaseManager.getLatestExchangeRate("USD", "PLN"), 1e-12);
+        assertEquals(100.0, databaseManager.getLatestExchangeRate("USD", "JPY"), 1e-12);
+        databaseManager.addCurrency("CHF");
+        assertThrows(SQLException.class, () -> databaseManager.getLatestExchangeRate("USD", "CHF"));
+    }
+
+    @Test
+    @DisplayName("New currencies and rates are stored without schema changes")
+    void addCurrencyAndUpsertRateTest() throws SQLException {
+        DatabaseManager databaseManager = createInMemoryDbWithSchemaAndData();
+        databaseManager.addCurrency("CHF");
+        databaseManager.upsertRate("CHF", "2025-06-01", 0.8);
+        databaseManager.upsertRate("CHF", "2025-06-01", 0.9);
+
+        assertTrue(databaseManager.getAllCurrencyCodes().contains("CHF"));
+        assertEquals("2025-06-01", databaseManager.getFirstValidDate("CHF"));
+        assertEquals(0.9, databaseManager.getLatestExchangeRate("USD", "CHF"), 1e-12);
+    }
+
+    @Test
+    @DisplayName("Bulk upsert writes several days and rejects unknown currencies atomically")
+    void upsertRatesTest() throws SQLException {
+        DatabaseManager databaseManager = createInMemoryDbWithSchemaAndData();
+        Map<LocalDate, Map<String, Double>> days = new LinkedHashMap<>();
+        for (int i = 2; i <= 100; i++) {
+            days.put(LocalDate.of(2025, 6, 1).plusDays(i), Map.of("USD", 1.0, "EUR", 0.5 + i / 1000.0));
+        }
+        databaseManager.upsertRates(days);
+
+        assertEquals("2025-09-09", databaseManager.getLatestDate());
+        assertEquals(0.6, databaseManager.getLatestExchangeRate("USD", "EUR"), 1e-12);
+
+        Map<LocalDate, Map<String, Double>> invalid = Map.of(
+                LocalDate.of(2025, 10, 1), Map.of("USD", 1.0, "FALSE", 2.0));
+        assertThrows(IllegalArgumentException.class, () -> databaseManager.upsertRates(invalid));
+        assertEquals("2025-09-09", databaseManager.getLatestDate(), "Nothing should be written");
+
+        databaseManager.upsertRates("2025-10-02", Map.of("USD", 1.0, "EUR", 0.7));
+        assertEquals(0.7, databaseManager.getLatestExchangeRate("USD", "EUR"), 1e-12);
+    }
+
+    @Test
+    @DisplayName("Valid date ranges follow inserts, replacements and invalidations")
+    void validRangeTest() throws SQLException {
+        DatabaseManager databaseManager = createInMemoryDbWithSchemaAndData();
+        DatabaseManager.ValidRange pln = databaseManager.getValidRange("PLN");
+        assertEquals(LocalDate.of(1994, 1, 31), pln.firstDate());
+        assertEquals(LocalDate.of(2025, 6, 1), pln.lastDate());
+        assertEquals(4, pln.count());
+
+        databaseManager.upsertRates(Map.of(LocalDate.of(2025, 6, 2), Map.of("PLN", 4.1)));
+        databaseManager.upsertRate("PLN", "2025-06-02", 4.2);
+        pln = databaseManager.getValidRange("PLN");
+        assertEquals(LocalDate.of(2025, 6, 2), pln.lastDate());
+        assertEquals(5, pln.count(), "Replacing a rate should not count the day twice");
+
+        databaseManager.upsertRate("PLN", "1994-01-31", -1);
+        pln = databaseManager.getValidRange("PLN");
+        assertEquals(LocalDate.of(2012, 7, 2), pln.firstDate());
+        assertEquals(4, pln.count());
+        assertEquals("2012-07-02", databaseManager.getFirstValidDate("PLN"));
+
+        databaseManager.upsertRate("PLN", "1994-01-31", 4.0);
+        assertEquals("1994-01-31", databaseManager.getFirstValidDate("PLN"));
+
+        // A zero rate is invalid like -1, as in the series and aggregates
+        databaseManager.upsertRate("PLN", "2025-06-03", 0);
+        databaseManager.upsertRate("PLN", "2025-06-02", 0);
+        pln = databaseManager.getValidRange("PLN");
+        assertEquals(LocalDate.of(2025, 6, 1), pln.lastDate());
+        assertEquals(4, pln.count());
+        databaseManager.upsertRate("PLN", "2025-06-03", 4.3);
+        assertEquals(LocalDate.of(2025, 6, 3), databaseManager.getValidRange("PLN").lastDate());
+
+        databaseManager.addCurrency("CHF");
+        assertNull(databaseManager.getValidRange("CHF"));
+        assertNull(databaseManager.getFirstValidDate("CHF"));
+    }
+
+    @Test
+    @DisplayName("A range table built by outdated triggers is rebuilt on open")
+    void outdatedRangeTriggersTest(@TempDir Path dir) throws SQLException {
+        String url = "jdbc:sqlite:" + dir.resolve("rates.db");
+        try (Connection conn = DriverManager.getConnection(url)) {
+            createLegacyTable(conn);
+        }
+        long zeroDay = LocalDate.of(2025, 6, 2).toEpochDay();
+        try (DatabaseManager db = new DatabaseManager(url)) {
+            int pln = db.getCurrencyRegistry().id("PLN");
+            try (Statement stmt = db.getConnection().createStatement()) {
+                // What the triggers that only excluded -1 left behind for a zero rate
+                stmt.executeUpdate("DROP TRIGGER Currency_Valid_Range_insert");
+                stmt.executeUpdate("INSERT INTO Exchange_Rate VALUES (" + pln + ", " + zeroDay + ", 0.0)");
+                stmt.executeUpdate("UPDATE Currency_Valid_Range SET last_day = " + zeroDay +
+                        ", valid_count = valid_count + 1 WHERE currency_id = " + pln);
+            }
+        }
+        try (DatabaseManager db = new DatabaseManager(url)) {
+            DatabaseManager.ValidRange pln = db.getValidRange("PLN");
+            assertEquals(LocalDate.of(2025, 6, 1), pln.lastDate());
+            assertEquals(4, pln.count());
+        }
+    }
+
+    @Test
+    @DisplayName("The trigger-maintained rate checksum matches the one computed from the rows")
+    void rateChecksumTest() throws SQLException {
+        DatabaseManager databaseManager = createInMemoryDbWithSchemaAndData();
+        long june = LocalDate.of(2025, 6, 1).toEpochDay();
+        long before = databaseManager.getRateChecksum(june);
+        assertEquals(computeChecksum(databaseManager, june), before);
+
+        databaseManager.upsertRate("PLN", "2025-06-02", 4.1);
+        databaseManager.upsertRate("PLN", "2025-06-02", 4.2);
+        assertEquals(before, databaseManager.getRateChecksum(june), "Later days do not change the earlier checksum");
+
+        databaseManager.upsertRate("PLN", "2012-07-02", 3.3457);
+        long corrected = databaseManager.getRateChecksum(june);
+        assertNotEquals(before, corrected, "A corrected value changes the checksum");
+        databaseManager.upsertRate("PLN", "1994-01-31", -1);
+        databaseManager.upsertRate("PLN", "2025-06-03", 0);
+        databaseManager.upsertRate("PLN", "2025-06-03", 4.3);
+        try (Statement stmt = databaseManager.getConnection().createStatement()) {
+            stmt.executeUpdate("DELETE FROM Exchange_Rate WHERE day = " + LocalDate.of(2012, 7, 25).toEpochDay());
+        }
+        for (long day : new long[]{june, june + 2, Long.MAX_VALUE}) {
+            assertEquals(computeChecksum(databaseManager, day), databaseManager.getRateChecksum(day));
+        }
+    }
+
+    private static long computeChecksum(DatabaseManager databaseManager, long untilDay) throws SQLException {
+        long checksum = 0;
+        try (Statement stmt = databaseManager.getConnection().createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT currency_id, day, rate FROM Exchange_Rate")) {
+            while (rs.next()) {
+                double rate = rs.getDouble(3);
+                if (rs.getLong(2) <= untilDay && rate != -1 && rate != 0) {
+                    checksum += DatabaseManager.checksumTerm(rs.getInt(1), rs.getLong(2), rate);
+                }
+            }
+        }
+        return checksum % DatabaseManager.CHECKSUM_MODULUS;
+    }
+
+    /**
+     * Checks every aggregate tier against buckets computed from the daily rates.
+     */
+    private static void assertPyramidMatchesDailyRates(DatabaseManager databaseManager, String currency) throws SQLException {
+        List<DatabaseManager.RateAggregate> days =
+                databaseManager.getAggregatedRates(currency, RateTier.DAY, "1900-01-01", "2100-01-01");
+        for (RateTier tier : List.of(RateTier.WEEK, RateTier.MONTH, RateTier.YEAR)) {
+            Map<Long, List<DatabaseManager.RateAggregate>> expected = new TreeMap<>();
+            for (DatabaseManager.RateAggregate day : days) {
+                expected.computeIfAbsent(tier.bucketStart(day.bucket()), k -> new ArrayList<>()).add(day);
+            }
+            List<DatabaseManager.RateAggregate> actual =
+                    databaseManager.getAggregatedRates(currency, tier, "1900-01-01", "2100-01-01");
+            assertEquals(expected.size(), actual.size(), tier + " bucket count of " + currency);
+            int i = 0;
+            for (Map.Entry<Long, List<DatabaseManager.RateAggregate>> bucket : expected.entrySet()) {
+                List<DatabaseManager.RateAggregate> members = bucket.getValue();
+                DatabaseManager.RateAggregate aggregate = actual.get(i++);
+                String context = tier + " " + aggregate.date() + " of " + currency;
+                assertEquals(bucket.getKey(), aggregate.bucket(), context);
+                assertEquals(members.get(0).open(), aggregate.open(), 1e-12, context);
+                assertEquals(members.get(members.size() - 1).close(), aggregate.close(), 1e-12, context);
+                assertEquals(members.stream().mapToDouble(DatabaseManager.RateAggregate::high).max().orElseThrow(),
+                        aggregate.high(), 1e-12, context);
+                assertEquals(members.stream().mapToDouble(DatabaseManager.RateAggregate::low).min().orElseThrow(),
+                        aggregate.low(), 1e-12, context);
+                assertEquals(members.stream().mapToDouble(DatabaseManager.RateAggregate::mean).average().orElseThrow(),
+                        aggregate.mean(), 1e-9, context);
+                assertEquals(members.size(), aggregate.count(), context);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Aggregate tiers are built once and follow out-of-order writes")
+    void ratePyramidTest() throws SQLException {
+        DatabaseManager databaseManager = createInMemoryDbWithSchemaAndData();
+        for (String code : List.of("USD", "EUR", "PLN", "RUB", "JPY")) {
+            assertPyramidMatchesDailyRates(databaseManager, code);
+        }
+
+        Random random = new Random(3);
+        LocalDate base = LocalDate.of(2023, 12, 20);
+        for (int batch = 0; batch < 20; batch++) {
+            Map<LocalDate, Map<String, Double>> days = new LinkedHashMap<>();
+            for (int i = 0; i < 30; i++) {
+                double rate = random.nextInt(10) == 0 ? -1 : 1 + random.nextDouble();
+                days.put(base.plusDays(random.nextInt(500)), Map.of("EUR", rate, "PLN", 4 * rate));
+            }
+            databaseManager.upsertRates(days);
+        }
+        databaseManager.upsertRate("EUR", "2024-01-01", 0.5);
+
+        assertPyramidMatchesDailyRates(databaseManager, "EUR");
+        assertPyramidMatchesDailyRates(databaseManager, "PLN");
+        assertEquals(databaseManager.getValidRange("EUR").count(),
+                databaseManager.getAggregatedRates("EUR", RateTier.YEAR, "1900-01-01", "2100-01-01").stream()
+                        .mapToInt(DatabaseManager.RateAggregate::count).sum());
+    }
+
+    @Test
+    @DisplayName("The chart tier gives about the requested number of points")
+    void rateTierForSpanTest() {
+        assertEquals(RateTier.DAY, RateTier.forSpan(1, 300));
+        assertEquals(RateTier.DAY, RateTier.forSpan(366, 300));
+        assertEquals(RateTier.WEEK, RateTier.forSpan(5 * 365, 300));
+        assertEquals(RateTier.MONTH, RateTier.forSpan(31 * 365, 300));
+        assertEquals(RateTier.YEAR, RateTier.forSpan(500 * 365, 300));
+        assertEquals(LocalDate.of(2024, 1, 1).toEpochDay(), RateTier.WEEK.bucketStart(LocalDate.of(2024, 1, 7).toEpochDay()));
+        assertEquals(LocalDate.of(1969, 12, 29).toEpochDay(), RateTier.WEEK.bucketStart(LocalDate.of(1970, 1, 1).toEpochDay()));
+    }
+
+    @Test
+    @DisplayName("Cross rates of a pair are read in one scan, skipping days where either rate is invalid")
+    void crossRateSeriesTest() throws SQLException {
+        DatabaseManager databaseManager = createInMemoryDbWithSchemaAndData();
+        Map<LocalDate, Map<String, Double>> days = new LinkedHashMap<>();
+        LocalDate start = LocalDate.of(2025, 6, 2);
+        for (int i = 0; i < 60; i++) {
+            double eur = i == 10 ? -1 : 0.8 + i / 100.0;
+            double pln = i == 20 ? 0 : 4.0 + i / 10.0;
+            days.put(start.plusDays(i), i == 30 ? Map.of("EUR", eur) : Map.of("EUR", eur, "PLN", pln));
+        }
+        databaseManager.upsertRates(days);
+
+        RateSeries daily = databaseManager.getCrossRateSeries("EUR", "PLN", RateTier.DAY, "2025-06-01", "2025-07-31");
+        assertEquals(58, daily.size(), "Two days have an invalid rate, one lacks PLN, 2025-06-01 has both");
+        assertEquals(LocalDate.of(2025, 6, 1).toEpochDay(), daily.days()[0]);
+        assertEquals(4.0, daily.rates()[0], 1e-12);
+        assertEquals(LocalDate.of(2025, 6, 3).toEpochDay(), daily.days()[2]);
+        assertEquals(4.1 / 0.81, daily.rates()[2], 1e-12);
+        for (int i = 1; i < daily.size(); i++) {
+            assertTrue(daily.days()[i] > daily.days()[i - 1]);
+            assertNotEquals(LocalDate.of(2025, 6, 12).toEpochDay(), daily.days()[i]);
+        }
+
+        RateSeries monthly = databaseManager.getCrossRateSeries("EUR", "PLN", RateTier.MONTH, "2025-06-15", "2025-07-31");
+        List<DatabaseManager.RateAggregate> eurMonths =
+                databaseManager.getAggregatedRates("EUR", RateTier.MONTH, "2025-06-15", "2025-07-31");
+        List<DatabaseManager.RateAggregate> plnMonths =
+                databaseManager.getAggregatedRates("PLN", RateTier.MONTH, "2025-06-15", "2025-07-31");
+        assertEquals(2, monthly.size());
+        for (int i = 0; i < monthly.size(); i++) {
+            assertEquals(eurMonths.get(i).bucket(), monthly.days()[i]);
+            assertEquals(plnMonths.get(i).mean() / eurMonths.get(i).mean(), monthly.rates()[i], 1e-12);
+        }
+        assertThrows(IllegalArgumentException.class,
+                () -> databaseManager.getCrossRateSeries("EUR", "FALSE", RateTier.DAY, "2025-06-01", "2025-07-31"));
+    }
+
+    @Test
+    @DisplayName("Several currencies are read into one columnar block")
+    void rateBlockTest() throws SQLException {
+        DatabaseManager databaseManager = createInMemoryDbWithSchemaAndData();
+        databaseManager.upsertRate("PLN", "2012-07-25", -1);
+        RateBlock block = databaseManager.getRateBlock(List.of("PLN", "EUR", "PLN"), "2000-01-01", "2012-12-31");
+
+        assertEquals(List.of("PLN", "EUR"), block.getCodes());
+        assertArrayEquals(new int[]{
+                (int) LocalDate.of(2000, 12, 12).toEpochDay(),
+                (int) LocalDate.of(2001, 1, 26).toEpochDay(),
+                (int) LocalDate.of(2012, 7, 2).toEpochDay(),
+                (int) LocalDate.of(2012, 7, 25).toEpochDay()}, block.getDays());
+        assertArrayEquals(new double[]{Double.NaN, Double.NaN, 3.3456, Double.NaN}, block.getColumn("PLN"));
+        assertArrayEquals(new double[]{1.13869278068777, 1.08365843086259, Double.NaN, Double.NaN}, block.getColumn(1));
+        assertTrue(block.isMissing(0, 3), "-1 is masked");
+        assertFalse(block.isMissing(1, 0));
+        assertThrows(IllegalArgumentException.class, () -> block.getColumn("USD"));
+        assertThrows(IllegalArgumentException.class,
+                () -> databaseManager.getRateBlock(List.of("EUR", "FALSE"), "2000-01-01", "2012-12-31"));
+        assertEquals(0, databaseManager.getRateBlock(List.of(), "2000-01-01", "2012-12-31").getRowCount());
+    }
+
     @Test
     @DisplayName("Closing without Exception")
     void closeTest() throws SQLException {
         DatabaseManager databaseManager = createInMemoryDbWithSchemaAndData();
         assertDoesNotThrow(databaseManager::close);
     }
+
+    @Test
+    @DisplayName("Closing also closes leased reader connections and rejects later reads")
+    void closeWithLeasedReaderTest(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("rates.db");
+        DatabaseManager db = new DatabaseManager("jdbc:sqlite:" + file);
+        db.addCurrency("USD");
+        db.upsertRates(LocalDate.of(2025, 6, 1).toEpochDay(), Map.of("USD", 1.0));
+        db.upsertRates(LocalDate.of(2025, 6, 2).toEpochDay(), Map.of("USD", 1.0));
+
+        CountDownLatch leased = new CountDownLatch(1);
+        CountDownLatch closed = new CountDownLatch(1);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> reader = pool.submit(() -> {
+                db.scanRates(Long.MIN_VALUE, List.of("USD"), (day, rates) -> {
+                    leased.countDown();
+                    try {
+                        closed.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+                return null;
+            });
+            assertTrue(leased.await(10, TimeUnit.SECONDS));
+            db.close();
+            closed.countDown();
+            try {
+                reader.get(10, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                // The scan may fail on its closed connection
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertThrows(SQLException.class, db::getLatestDay);
+        // The last connection to close removes the WAL file, so none may be left open
+        assertFalse(Files.exists(dir.resolve("rates.db-wal")));
+    }
 }
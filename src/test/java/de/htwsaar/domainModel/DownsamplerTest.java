@@ -0,0 +1,96 @@
+package de.htwsaar.domainModel;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DownsamplerTest {
+
+    /**
+     * Random walk over consecutive days with one upward and one downward spike.
+     */
+    private static RateSeries createSeries(int size) {
+        Random random = new Random(11);
+        int[] days = new int[size];
+        double[] rates = new double[size];
+        double rate = 1.0;
+        for (int i = 0; i < size; i++) {
+            rate *= Math.exp(random.nextGaussian() * 0.002);
+            days[i] = 10_000 + i;
+            rates[i] = rate;
+        }
+        rates[size / 3] = 10.0;
+        rates[2 * size / 3] = 0.01;
+        return new RateSeries(days, rates);
+    }
+
+    private static void assertValidSample(RateSeries original, RateSeries sample, int maxPoints) {
+        assertTrue(sample.size() <= maxPoints, "At most maxPoints points");
+        assertEquals(original.days()[0], sample.days()[0], "First point kept");
+        assertEquals(original.days()[original.size() - 1], sample.days()[sample.size() - 1], "Last point kept");
+        for (int i = 1; i < sample.size(); i++) {
+            assertTrue(sample.days()[i] > sample.days()[i - 1], "Days ascending");
+            int index = Arrays.binarySearch(original.days(), sample.days()[i]);
+            assertEquals(original.rates()[index], sample.rates()[i], "Points are taken from the original series");
+        }
+    }
+
+    @Test
+    @DisplayName("LTTB keeps the end points and the spikes")
+    void lttbTest() {
+        RateSeries series = createSeries(20_000);
+        RateSeries sample = new LttbDownsampler().downsample(series, 300);
+
+        assertEquals(300, sample.size());
+        assertValidSample(series, sample, 300);
+        double[] sorted = sample.rates().clone();
+        Arrays.sort(sorted);
+        assertEquals(0.01, sorted[0]);
+        assertEquals(10.0, sorted[sorted.length - 1]);
+    }
+
+    @Test
+    @DisplayName("Min/max keeps the extremes of every bucket")
+    void minMaxTest() {
+        RateSeries series = createSeries(20_000);
+        RateSeries sample = new MinMaxDownsampler().downsample(series, 300);
+
+        assertValidSample(series, sample, 300);
+        assertTrue(sample.size() >= 290);
+        assertEquals(0.01, Arrays.stream(sample.rates()).min().orElseThrow());
+        assertEquals(10.0, Arrays.stream(sample.rates()).max().orElseThrow());
+    }
+
+    @Test
+    @DisplayName("Short series are returned unchanged")
+    void shortSeriesTest() {
+        RateSeries series = createSeries(100);
+        assertSame(series, new LttbDownsampler().downsample(series, 300));
+        assertSame(series, new MinMaxDownsampler().downsample(series, 100));
+        assertThrows(IllegalArgumentException.class, () -> new RateSeries(new int[2], new double[3]));
+    }
+
+    @Test
+    @DisplayName("Budgets too small for a bucket keep the end points and never exceed maxPoints")
+    void smallBudgetTest() {
+        RateSeries series = createSeries(100);
+        for (Downsampler downsampler : new Downsampler[]{new LttbDownsampler(), new MinMaxDownsampler()}) {
+            RateSeries first = downsampler.downsample(series, 1);
+            assertEquals(1, first.size());
+            assertEquals(series.days()[0], first.days()[0]);
+            assertEquals(series.rates()[0], first.rates()[0]);
+            assertEquals(2, downsampler.downsample(series, 2).size());
+            for (int maxPoints = 2; maxPoints <= 4; maxPoints++) {
+                assertValidSample(series, downsampler.downsample(series, maxPoints), maxPoints);
+            }
+            assertThrows(IllegalArgumentException.class, () -> downsampler.downsample(series, 0));
+            assertThrows(IllegalArgumentException.class, () -> downsampler.downsample(series, -1));
+            RateSeries single = new RateSeries(new int[]{1}, new double[]{2.0});
+            assertSame(single, downsampler.downsample(single, 1));
+        }
+    }
+}
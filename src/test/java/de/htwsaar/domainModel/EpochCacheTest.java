@@ -0,0 +1,34 @@
+package de.htwsaar.domainModel;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EpochCacheTest {
+
+    @Test
+    @DisplayName("Values are loaded once per currency and dropped after a commit")
+    void loadsOncePerEpoch() throws SQLException {
+        DatabaseManager db = DatabaseManagerTest.createInMemoryDbWithSchemaAndData();
+        EpochCache<String> cache = new EpochCache<>(db);
+        AtomicInteger loads = new AtomicInteger();
+        EpochCache.Loader<String> loader = id -> id + "@" + loads.incrementAndGet();
+
+        assertEquals("1@1", cache.get(1, loader));
+        assertEquals("1@1", cache.get(1, loader));
+        assertEquals("2@2", cache.get(2, loader));
+        assertEquals(2, cache.values().size());
+
+        db.upsertRate("PLN", "2025-06-02", 4.1);
+        assertEquals("1@3", cache.get(1, loader));
+        assertEquals(1, cache.values().size());
+        assertThrows(SQLException.class, () -> cache.get(3, id -> {
+            throw new SQLException("offline");
+        }));
+        assertEquals(1, cache.values().size(), "Failed loads are not stored");
+    }
+}
@@ -0,0 +1,69 @@
+package de.htwsaar.domainModel;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HistoricalConverterTest {
+
+    @Test
+    @DisplayName("Each side uses its last valid rate on or before the date")
+    void asOfTest() throws SQLException {
+        DatabaseManager db = DatabaseManagerTest.createInMemoryDbWithSchemaAndData();
+        HistoricalConverter converter = new HistoricalConverter(db);
+
+        // USD 1.0 since 1994-01-03, PLN 3.3456 on 2012-07-02 and 3.4719 on 2012-07-25
+        assertEquals(3.3456, converter.getRate("USD", "PLN", LocalDate.of(2012, 7, 2)), 1e-12);
+        assertEquals(3.3456, converter.getRate("USD", "PLN", LocalDate.of(2012, 7, 24)), 1e-12);
+        assertEquals(3.4719, converter.getRate("USD", "PLN", LocalDate.of(2012, 7, 25)), 1e-12);
+        assertEquals(4.0 * 1_000, converter.convert(1_000, "USD", "PLN", LocalDate.of(2000, 1, 1)), 1e-9);
+        assertEquals(1.08365843086259 / 4.0, converter.getRate("PLN", "EUR", LocalDate.of(2008, 9, 15)), 1e-12);
+        assertTrue(Double.isNaN(converter.getRate("USD", "EUR", LocalDate.of(1998, 10, 29))));
+        assertThrows(IllegalArgumentException.class, () -> converter.getRate("USD", "FALSE", LocalDate.of(2000, 1, 1)));
+    }
+
+    @Test
+    @DisplayName("Invalid rates are skipped and new rates are seen after a commit")
+    void invalidRatesAndRefreshTest() throws SQLException {
+        DatabaseManager db = DatabaseManagerTest.createInMemoryDbWithSchemaAndData();
+        HistoricalConverter converter = new HistoricalConverter(db);
+        LocalDate date = LocalDate.of(2025, 6, 5);
+        assertEquals(100.0, converter.getRate("USD", "JPY", date), 1e-12);
+
+        db.upsertRate("JPY", "2025-06-03", 150.0);
+        db.upsertRate("JPY", "2025-06-04", -1);
+        assertEquals(150.0, converter.getRate("USD", "JPY", date), 1e-12);
+        assertEquals(100.0, converter.getRate("USD", "JPY", LocalDate.of(2025, 6, 2)), 1e-12);
+    }
+
+    @Test
+    @DisplayName("Bulk conversion matches single lookups for unsorted dates")
+    void bulkTest() throws SQLException {
+        DatabaseManager db = DatabaseManagerTest.createInMemoryDbWithSchemaAndData();
+        HistoricalConverter converter = new HistoricalConverter(db);
+        CurrencyRegistry registry = db.getCurrencyRegistry();
+        int eur = registry.id("EUR");
+        int pln = registry.id("PLN");
+        long[] days = {
+                LocalDate.of(2025, 6, 1).toEpochDay(),
+                LocalDate.of(1990, 1, 1).toEpochDay(),
+                LocalDate.of(2012, 7, 10).toEpochDay(),
+                LocalDate.of(2001, 1, 1).toEpochDay(),
+                Long.MAX_VALUE
+        };
+        double[] amounts = {1, 2, 3, 4, 5};
+
+        double[] converted = converter.convert(eur, pln, days, amounts);
+        for (int i = 0; i < days.length; i++) {
+            double expected = amounts[i] * converter.getRate(eur, pln, days[i]);
+            assertEquals(expected, converted[i], 1e-12, "day " + days[i]);
+        }
+        assertTrue(Double.isNaN(converted[1]));
+        assertEquals(5 * 4.0, converted[4], 1e-12);
+        assertThrows(IllegalArgumentException.class, () -> converter.convert(eur, pln, days, new double[1]));
+    }
+}
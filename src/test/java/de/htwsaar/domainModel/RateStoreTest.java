@@ -0,0 +1,228 @@
+package de.htwsaar.domainModel;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateStoreTest {
+
+    @Test
+    @DisplayName("Lookups match the database after the initial load")
+    void refreshLoadsFullHistory() throws SQLException {
+        DatabaseManager db = DatabaseManagerTest.createInMemoryDbWithSchemaAndData();
+        RateStore store = new RateStore();
+        store.refresh(db);
+
+        assertEquals(LocalDate.of(2025, 6, 1), store.getLastDate());
+        assertEquals(db.getLatestExchangeRate("USD", "PLN"), store.getLatestRate("USD", "PLN"), 1e-12);
+        assertEquals(100.0, store.getRate("USD", "JPY", LocalDate.of(2025, 6, 1)), 1e-12);
+        assertEquals(1.0, store.getRate("EUR", "EUR", LocalDate.of(2001, 1, 26)), 1e-12);
+    }
+
+    @Test
+    @DisplayName("Missing days and missing values return NaN")
+    void missingValuesAreNaN() throws SQLException {
+        DatabaseManager db = DatabaseManagerTest.createInMemoryDbWithSchemaAndData();
+        RateStore store = new RateStore();
+        store.refresh(db);
+
+        assertTrue(Double.isNaN(store.getRate("USD", "EUR", LocalDate.of(2000, 12, 12))));
+        assertTrue(Double.isNaN(store.getRate("USD", "EUR", LocalDate.of(2010, 1, 1))));
+        assertTrue(Double.isNaN(store.getRate("USD", "EUR", LocalDate.of(1990, 1, 1))));
+        assertTrue(Double.isNaN(store.getRate("USD", "EUR", LocalDate.of(2030, 1, 1))));
+    }
+
+    @Test
+    @DisplayName("Refresh picks up new days and new currencies incrementally")
+    void refreshIsIncremental() throws SQLException {
+        DatabaseManager db = DatabaseManagerTest.createInMemoryDbWithSchemaAndData();
+        RateStore store = new RateStore();
+        store.refresh(db);
+
+        db.addCurrency("CHF");
+        db.upsertRate("USD", "2025-06-03", 1.0);
+        db.upsertRate("CHF", "2025-06-03", 0.8);
+        store.refresh(db);
+
+        assertTrue(store.contains("CHF"));
+        assertEquals(LocalDate.of(2025, 6, 3), store.getLastDate());
+        assertEquals(0.8, store.getLatestRate("USD", "CHF"), 1e-12);
+        assertTrue(Double.isNaN(store.getRate("USD", "CHF", LocalDate.of(2025, 6, 2))));
+        assertEquals(4.0, store.getRate("USD", "PLN", LocalDate.of(2025, 6, 1)), 1e-12);
+    }
+
+    @Test
+    @DisplayName("Unknown currency throws")
+    void unknownCurrencyThrows() throws SQLException {
+        DatabaseManager db = DatabaseManagerTest.createInMemoryDbWithSchemaAndData();
+        RateStore store = new RateStore();
+        store.refresh(db);
+        assertThrows(IllegalArgumentException.class, () -> store.getLatestRate("USD", "FALSE"));
+    }
+
+    @Test
+    @DisplayName("A snapshot serves the same rates without the database and refresh then adds only newer days")
+    void snapshotRoundTrip(@TempDir Path dir) throws SQLException, IOException {
+        DatabaseManager db = DatabaseManagerTest.createInMemoryDbWithSchemaAndData();
+        RateStore written = new RateStore();
+        written.refresh(db);
+        Path file = dir.resolve("rates.snapshot");
+        written.writeSnapshot(file);
+        assertFalse(written.hasUnsavedDays());
+
+        RateStore store = new RateStore();
+        assertTrue(store.loadSnapshot(file));
+        assertFalse(store.hasUnsavedDays());
+        assertEquals(LocalDate.of(2025, 6, 1), store.getLastDate());
+        assertEquals(written.getLatestRate("USD", "PLN"), store.getLatestRate("USD", "PLN"), 0);
+        assertEquals(100.0, store.getRate("USD", "JPY", LocalDate.of(2025, 6, 1)), 1e-12);
+        assertTrue(Double.isNaN(store.getRate("USD", "EUR", LocalDate.of(2010, 1, 1))));
+
+        db.upsertRate("USD", "2025-06-03", 1.0);
+        db.upsertRate("PLN", "2025-06-03", 4.2);
+        store.refresh(db);
+        assertTrue(store.hasUnsavedDays());
+        assertEquals(4.2, store.getLatestRate("USD", "PLN"), 1e-12);
+        assertEquals(4.0, store.getRate("USD", "PLN", LocalDate.of(2025, 6, 1)), 1e-12);
+    }
+
+    @Test
+    @DisplayName("Corrupt, truncated or foreign-version snapshots are ignored")
+    void invalidSnapshotIsIgnored(@TempDir Path dir) throws SQLException, IOException {
+        DatabaseManager db = DatabaseManagerTest.createInMemoryDbWithSchemaAndData();
+        RateStore written = new RateStore();
+        written.refresh(db);
+        Path file = dir.resolve("rates.snapshot");
+        written.writeSnapshot(file);
+        byte[] valid = Files.readAllBytes(file);
+
+        byte[] flipped = valid.clone();
+        flipped[flipped.length - 3] ^= 0x10;
+        Files.write(file, flipped);
+        assertFalse(new RateStore().loadSnapshot(file));
+
+        Files.write(file, Arrays.copyOf(valid, valid.length - 8));
+        assertFalse(new RateStore().loadSnapshot(file));
+
+        byte[] version = valid.clone();
+        version[4] = (byte) (RateSnapshotFile.VERSION + 1);
+        Files.write(file, version);
+        assertFalse(new RateStore().loadSnapshot(file));
+
+        assertFalse(new RateStore().loadSnapshot(dir.resolve("missing.snapshot")));
+
+        RateStore fallback = new RateStore();
+        fallback.refresh(db);
+        assertEquals(LocalDate.of(2025, 6, 1), fallback.getLastDate());
+    }
+
+    @Test
+    @DisplayName("A snapshot whose currency ids differ from the database is replaced on refresh")
+    void foreignSnapshotIsReloaded(@TempDir Path dir) throws SQLException, IOException {
+        DatabaseManager db = DatabaseManagerTest.createInMemoryDbWithSchemaAndData();
+        CurrencyRegistry registry = db.getCurrencyRegistry();
+        int usd = registry.id("USD");
+        int pln = registry.id("PLN");
+        double[][] columns = new double[registry.idLimit()][];
+        columns[usd] = new double[]{1.0};
+        columns[pln] = new double[]{9.0};
+        Path file = dir.resolve("rates.snapshot");
+        // USD and PLN swapped, as if written from another database
+        RateSnapshotFile.write(file, new RateSnapshotFile.Contents(LocalDate.of(2025, 6, 1).toEpochDay(), 1,
+                CurrencyRegistry.of(Map.of("USD", pln, "PLN", usd)), columns, 0));
+
+        RateStore store = new RateStore();
+        assertTrue(store.loadSnapshot(file));
+        store.refresh(db);
+
+        assertEquals(db.getLatestExchangeRate("USD", "PLN"), store.getLatestRate("USD", "PLN"), 1e-12);
+        assertEquals(1.0, store.getRate("EUR", "EUR", LocalDate.of(2001, 1, 26)), 1e-12); // Full history reloaded
+    }
+
+    @Test
+    @DisplayName("A snapshot with other rates up to its last day than the database is replaced on refresh")
+    void staleSnapshotIsReloaded(@TempDir Path dir) throws SQLException, IOException {
+        DatabaseManager db = DatabaseManagerTest.createInMemoryDbWithSchemaAndData();
+        RateStore written = new RateStore();
+        written.refresh(db);
+        Path file = dir.resolve("rates.snapshot");
+        written.writeSnapshot(file);
+
+        RateStore unchanged = new RateStore();
+        assertTrue(unchanged.loadSnapshot(file));
+        unchanged.refresh(db);
+        assertFalse(unchanged.hasUnsavedDays());
+
+        // Same currencies, but a day inside the snapshot was filled in after it was written
+        db.upsertRate("USD", "2012-07-10", 1.0);
+        db.upsertRate("PLN", "2012-07-10", 4.1);
+        RateStore store = new RateStore();
+        assertTrue(store.loadSnapshot(file));
+        assertTrue(Double.isNaN(store.getRate("USD", "PLN", LocalDate.of(2012, 7, 10))));
+        store.refresh(db);
+
+        assertEquals(4.1, store.getRate("USD", "PLN", LocalDate.of(2012, 7, 10)), 1e-12);
+        assertTrue(store.hasUnsavedDays(), "The reloaded history replaces the stale file");
+    }
+
+    @Test
+    @DisplayName("A snapshot with the same number of rates but corrected values is replaced on refresh")
+    void correctedSnapshotIsReloaded(@TempDir Path dir) throws SQLException, IOException {
+        DatabaseManager db = DatabaseManagerTest.createInMemoryDbWithSchemaAndData();
+        RateStore written = new RateStore();
+        written.refresh(db);
+        Path file = dir.resolve("rates.snapshot");
+        written.writeSnapshot(file);
+        double latest = written.getLatestRate("USD", "PLN");
+
+        // Corrections of existing days, one in the middle and one on the last day
+        db.upsertRate("PLN", "2012-07-02", 3.5);
+        db.upsertRate("PLN", "2025-06-01", 4.5);
+        RateStore store = new RateStore();
+        assertTrue(store.loadSnapshot(file));
+        assertEquals(latest, store.getLatestRate("USD", "PLN"), 1e-12);
+        store.refresh(db);
+
+        assertEquals(db.getLatestExchangeRate("USD", "PLN"), store.getLatestRate("USD", "PLN"), 1e-12);
+        assertEquals(4.5, store.getRate("USD", "PLN", LocalDate.of(2025, 6, 1)), 1e-12);
+        assertTrue(store.hasUnsavedDays(), "The reloaded history replaces the stale file");
+    }
+
+    @Test
+    @DisplayName("Latest rates skip invalid newest rows and the cross matrix is replaced as a whole on refresh")
+    void latestRatesTest() throws SQLException {
+        DatabaseManager db = DatabaseManagerTest.createInMemoryDbWithSchemaAndData();
+        RateStore store = new RateStore();
+        store.refresh(db);
+        LatestRates before = store.getLatestRates();
+        CurrencyRegistry registry = before.getRegistry();
+        int usd = registry.id("USD");
+        int pln = registry.id("PLN");
+        int jpy = registry.id("JPY");
+
+        db.upsertRate("USD", "2025-06-03", 1.0);
+        db.upsertRate("PLN", "2025-06-03", -1);
+        db.upsertRate("JPY", "2025-06-03", 150.0);
+        store.refresh(db);
+        LatestRates after = store.getLatestRates();
+
+        assertTrue(Double.isNaN(store.getLatestRate(usd, pln)), "The last day has no valid PLN rate");
+        assertEquals(4.0, after.crossRate(usd, pln), 1e-12);
+        assertEquals(LocalDate.of(2025, 6, 1), after.date(pln));
+        assertEquals(LocalDate.of(2025, 6, 3), after.date(usd));
+        assertEquals(150.0 / 4.0, after.crossRate(pln, jpy), 1e-12);
+        assertEquals(1.0, after.crossRate(pln, pln), 0);
+        assertEquals(100.0, before.crossRate(usd, jpy), 1e-12, "Published instances never change");
+        assertThrows(IllegalArgumentException.class, () -> after.crossRate(usd, registry.idLimit()));
+    }
+}
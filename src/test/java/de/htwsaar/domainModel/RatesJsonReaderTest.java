@@ -0,0 +1,128 @@
+package de.htwsaar.domainModel;
+
+import okio.Buffer;
+import org.json.JSONObject;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RatesJsonReaderTest {
+
+    private static RatesJsonReader reader(String json) {
+        return new RatesJsonReader(new Buffer().writeUtf8(json));
+    }
+
+    @Test
+    @DisplayName("Rates are read and unrelated members are skipped")
+    void readRatesSkipsOtherMembers() throws IOException {
+        String json = "{\n  \"disclaimer\": \"Usage subject to terms: https://openexchangerates.org/terms\",\n" +
+                "  \"timestamp\": 1577836800, \"flags\": [true, false, null, {\"a\": [1, 2]}],\n" +
+                "  \"base\": \"USD\",\n  \"rates\": {\"USD\": 1, \"EUR\": 0.891, \"JPY\": 108.6, \"VND\": 23172.5}\n}";
+        Map<String, Double> rates = new HashMap<>();
+        assertTrue(reader(json).readRates(rates::put));
+        assertEquals(Map.of("USD", 1.0, "EUR", 0.891, "JPY", 108.6, "VND", 23172.5), rates);
+    }
+
+    @Test
+    @DisplayName("Numbers are parsed exactly like Double.parseDouble")
+    void readRatesNumberPrecision() throws IOException {
+        String[] numbers = {"0.000012345678901234", "1.13869278068777", "3.3456", "-2.5", "1e-7", "6.02E23",
+                "123456789012345678", "0.1", "0.30000000000000004", "7", "0", "1.0000000000000002"};
+        StringBuilder json = new StringBuilder("{\"rates\":{");
+        for (int i = 0; i < numbers.length; i++) {
+            json.append(i == 0 ? "" : ",").append("\"C").append(i).append("\":").append(numbers[i]);
+        }
+        json.append("}}");
+
+        Map<String, Double> rates = new HashMap<>();
+        assertTrue(reader(json.toString()).readRates(rates::put));
+        for (int i = 0; i < numbers.length; i++) {
+            assertEquals(Double.parseDouble(numbers[i]), rates.get("C" + i), 0.0, numbers[i]);
+        }
+    }
+
+    @Test
+    @DisplayName("Escapes and non-ASCII names are decoded")
+    void readRatesEscapes() throws IOException {
+        String json = "{\"note\":\"a \\\"quoted\\\" \\u00e9 \\\\ text\",\"rates\":{\"X\\u0041B\":2.0,\"ÄÖ\":3.0}}";
+        Map<String, Double> rates = new HashMap<>();
+        assertTrue(reader(json).readRates(rates::put));
+        assertEquals(Map.of("XAB", 2.0, "ÄÖ", 3.0), rates);
+    }
+
+    @Test
+    @DisplayName("Responses without rates report the API message")
+    void readRatesMessage() throws IOException {
+        RatesJsonReader reader = reader("{\"error\":true,\"status\":401,\"message\":\"invalid_app_id\"}");
+        assertTrue(reader.isJsonObject());
+        assertFalse(reader.readRates((code, rate) -> fail("No rate expected")));
+        assertEquals("invalid_app_id", reader.getMessage());
+
+        assertFalse(reader("not json").isJsonObject());
+    }
+
+    @Test
+    @DisplayName("Time-series days are framed and match the JSONObject result")
+    void readRatesByDay() throws IOException {
+        String json = "{\"base\":\"USD\",\"rates\":{" +
+                "\"2024-01-01\":{\"USD\":1,\"EUR\":0.9,\"JPY\":141.2}," +
+                "\"2024-01-02\":{}," +
+                "\"2024-01-03\":{\"USD\":1,\"EUR\":0.91}}}";
+        Map<LocalDate, Map<String, Double>> days = new LinkedHashMap<>();
+        boolean found = reader(json).readRatesByDay(new RateSink() {
+            private Map<String, Double> current;
+
+            @Override
+            public void beginDay(LocalDate date) {
+                current = new HashMap<>();
+            }
+
+            @Override
+            public void rate(String currency, double rate) {
+                current.put(currency, rate);
+            }
+
+            @Override
+            public void endDay(LocalDate date) {
+                days.put(date, current);
+            }
+        });
+
+        assertTrue(found);
+        JSONObject expected = new JSONObject(json).getJSONObject("rates");
+        assertEquals(expected.length(), days.size());
+        for (Map.Entry<LocalDate, Map<String, Double>> day : days.entrySet()) {
+            JSONObject rates = expected.getJSONObject(day.getKey().toString());
+            assertEquals(rates.keySet(), day.getValue().keySet());
+            for (String code : rates.keySet()) {
+                assertEquals(rates.getDouble(code), day.getValue().get(code), 0.0);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Malformed input throws IOException")
+    void readRatesMalformed() {
+        assertThrows(IOException.class, () -> reader("{\"rates\":{\"EUR\":0.9").readRates((c, r) -> { }));
+        assertThrows(IOException.class, () -> reader("{\"rates\":{\"EUR\" 0.9}}").readRates((c, r) -> { }));
+        assertThrows(IOException.class, () -> reader("{\"rates\":{\"EUR\":\"x\"}}").readRates((c, r) -> { }));
+        assertThrows(IOException.class, () -> reader("{\"rates\":{\"EUR\":1.2.3}}").readRates((c, r) -> { }));
+        assertThrows(IOException.class, () -> reader("{\"rates\":{\"EUR").readRates((c, r) -> { }));
+    }
+
+    @Test
+    @DisplayName("Numbers outside the JSON grammar are rejected instead of read as 0")
+    void readRatesMalformedNumbers() {
+        for (String number : new String[]{"-", ".", "-.", "1.", ".5", "+1", "01", "-01", "1e", "1e+", "1.e5", "1-"}) {
+            String json = "{\"rates\":{\"EUR\":" + number + "}}";
+            IOException e = assertThrows(IOException.class, () -> reader(json).readRates((c, r) -> { }), number);
+            assertTrue(e.getMessage().contains("expected number"), e.getMessage());
+        }
+        assertDoesNotThrow(() -> reader("{\"rates\":{\"A\":-0,\"B\":0.5e-3,\"C\":10E+2}}").readRates((c, r) -> { }));
+    }
+}
@@ -0,0 +1,70 @@
+package de.htwsaar.domainModel;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StatementCacheTest {
+
+    @Test
+    @DisplayName("Statements are reused per SQL text and the least recently used one is closed on eviction")
+    void evictionTest() throws SQLException {
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite::memory:");
+             StatementCache cache = new StatementCache(conn, 2)) {
+            PreparedStatement one = cache.prepare("SELECT 1");
+            PreparedStatement two = cache.prepare("SELECT 2");
+            assertSame(one, cache.prepare("SELECT 1"));
+
+            cache.prepare("SELECT 3"); // "SELECT 2" is the least recently used
+            assertTrue(two.isClosed());
+            assertFalse(one.isClosed());
+            assertEquals(2, cache.size());
+            assertEquals(1, cache.hits());
+            assertEquals(3, cache.misses());
+            assertEquals(1, cache.evictions());
+
+            assertNotSame(two, cache.prepare("SELECT 2"));
+            assertTrue(one.isClosed());
+        }
+    }
+
+    @Test
+    @DisplayName("Closing the cache closes its statements but not the connection")
+    void closeTest() throws SQLException {
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite::memory:")) {
+            StatementCache cache = new StatementCache(conn, 4);
+            PreparedStatement statement = cache.prepare("SELECT 1");
+            cache.close();
+
+            assertTrue(statement.isClosed());
+            assertFalse(conn.isClosed());
+            assertEquals(0, cache.size());
+        }
+    }
+
+    @Test
+    @DisplayName("Repeated lookups and upserts reuse their statements")
+    void databaseReuseTest() throws SQLException {
+        DatabaseManager db = DatabaseManagerTest.createInMemoryDbWithSchemaAndData();
+        long day = db.getLatestDay();
+        db.getLatestExchangeRate("USD", "EUR");
+        db.upsertRate("EUR", day, 0.9);
+        DatabaseManager.StatementCacheStats before = db.getStatementCacheStats();
+
+        for (int i = 0; i < 10; i++) {
+            db.getLatestExchangeRate("USD", "EUR");
+            db.upsertRate("EUR", day, 0.9 + i / 100.0);
+        }
+        DatabaseManager.StatementCacheStats after = db.getStatementCacheStats();
+
+        assertEquals(before.misses(), after.misses());
+        assertTrue(after.hits() - before.hits() >= 20);
+        assertEquals(0.99, db.getLatestExchangeRate("USD", "EUR"), 1e-12);
+    }
+}
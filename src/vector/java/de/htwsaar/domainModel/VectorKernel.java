@@ -0,0 +1,53 @@
+package de.htwsaar.domainModel;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link BulkConverter} loops on the JDK Vector API, with the preferred vector width of the CPU.
+ * Only compiled by the {@code benchmarks} profile, which adds the {@code jdk.incubator.vector} module, and loaded
+ * by name when the module is present at runtime; tails run scalar.
+ */
+final class VectorKernel implements BulkConverter.Kernel {
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Long> LONGS = VectorSpecies.of(long.class, DOUBLES.vectorShape());
+
+    @Override
+    public void convert(double[] amounts, double rate, double[] out) {
+        int bound = DOUBLES.loopBound(amounts.length);
+        int i = 0;
+        for (; i < bound; i += DOUBLES.length()) {
+            DoubleVector.fromArray(DOUBLES, amounts, i).mul(rate).intoArray(out, i);
+        }
+        for (; i < amounts.length; i++) {
+            out[i] = amounts[i] * rate;
+        }
+    }
+
+    @Override
+    public void convert(long[] amounts, double rate, long[] out) {
+        int bound = LONGS.loopBound(amounts.length);
+        int i = 0;
+        for (; i < bound; i += LONGS.length()) {
+            DoubleVector converted = ((DoubleVector) LongVector.fromArray(LONGS, amounts, i)
+                    .convertShape(VectorOperators.L2D, DOUBLES, 0))
+                    .mul(rate);
+            VectorMask<Long> negative = converted.compare(VectorOperators.LT, 0).cast(LONGS);
+            // Same as BulkConverter.round: truncate |x| + 0.5, then restore the sign
+            ((LongVector) converted.abs().add(0.5).convertShape(VectorOperators.D2L, LONGS, 0))
+                    .lanewise(VectorOperators.NEG, negative)
+                    .intoArray(out, i);
+        }
+        for (; i < amounts.length; i++) {
+            out[i] = BulkConverter.round(amounts[i] * rate);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return DOUBLES.toString();
+    }
+}